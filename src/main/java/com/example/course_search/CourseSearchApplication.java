@@ -1,9 +1,14 @@
 package com.example.course_search;
 
+import com.example.course_search.config.CourseSearchRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(CourseSearchRuntimeHints.class)
 public class CourseSearchApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,238 @@
+package com.example.course_search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Tunables of the course search service, bound from {@code course-search.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "course-search")
+public class CourseSearchProperties {
+
+    private final Http http = new Http();
+    private final Breaker breaker = new Breaker();
+    private final StaleCache staleCache = new StaleCache();
+    private final Limiter limiter = new Limiter();
+    private final Deadline deadline = new Deadline();
+    private final SlowLog slowLog = new SlowLog();
+    private final Warmup warmup = new Warmup();
+    private final Suggest suggest = new Suggest();
+    private final Clicks clicks = new Clicks();
+    private final Catalog catalog = new Catalog();
+    private final BulkLoad bulkLoad = new BulkLoad();
+    private final Archive archive = new Archive();
+    private final Routing routing = new Routing();
+    private final IndexSort indexSort = new IndexSort();
+    private final Ingest ingest = new Ingest();
+    private final Reindex reindex = new Reindex();
+    private final LoadLease loadLease = new LoadLease();
+
+    @Data
+    public static class Http {
+        /** max-age sent in Cache-Control for search results. */
+        private Duration cacheMaxAge = Duration.ofSeconds(30);
+        /** How often the index generation behind ETags and caches is read back from the cluster. */
+        private Duration generationPollInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Breaker {
+        /** Consecutive backend failures (or slow calls) that open the circuit. */
+        private int failureThreshold = 5;
+        /** How long the circuit stays open before a trial call is let through. */
+        private Duration openDuration = Duration.ofSeconds(10);
+        /** Calls slower than this count as failures. */
+        private Duration slowCallThreshold = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class StaleCache {
+        /** Last known good results kept for stale fallback, by canonical query. */
+        private int maxEntries = 1_000;
+    }
+
+    @Data
+    public static class Limiter {
+        /** Concurrent Elasticsearch calls allowed before any latency has been observed. */
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 200;
+        /** Latency increase over the long-term average tolerated before the limit shrinks. */
+        private double rttTolerance = 1.5;
+        /** Weight of each new limit estimate, 0..1. */
+        private double smoothing = 0.2;
+        /** Number of samples the long-term latency average spans. */
+        private int longWindow = 600;
+        /** Retry-After sent with rejected requests. */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Deadline {
+        /** Default latency budget of /api/search. */
+        private Duration search = Duration.ofSeconds(2);
+        /** Default latency budget of /api/allCourses. */
+        private Duration allCourses = Duration.ofSeconds(1);
+        /** Default latency budget of /api/search/suggest. */
+        private Duration suggest = Duration.ofMillis(300);
+        /** Upper bound for budgets requested by clients. */
+        private Duration max = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class SlowLog {
+        /** Requests taking at least this long are logged. */
+        private Duration threshold = Duration.ofMillis(500);
+        /** Fraction of slow requests re-run with profile: true, 0..1. */
+        private double profileSampleRate = 0.1;
+        /** Most recent slow requests kept for the admin endpoint. */
+        private int capacity = 100;
+    }
+
+    @Data
+    public static class Warmup {
+        /** Replay the corpus after indexing, before the application reports ready. */
+        private boolean enabled = true;
+        /** One canonical query per line, e.g. the output of /admin/top-queries. */
+        private Resource corpus = new ClassPathResource("warmup-queries.txt");
+        /** Queries replayed concurrently. */
+        private int parallelism = 4;
+        /** Times the corpus is replayed; later rounds mostly exercise the JIT. */
+        private int rounds = 3;
+        /** Warmup is abandoned after this long and startup continues. */
+        private Duration timeout = Duration.ofSeconds(60);
+        /** Distinct queries counted for /admin/top-queries. */
+        private int trackedQueries = 10_000;
+    }
+
+    @Data
+    public static class Suggest {
+        /** Prefixes whose suggestion titles are kept for reuse by longer prefixes. */
+        private int cacheMaxEntries = 10_000;
+        /** How long a prefix without matches keeps short-circuiting its extensions. */
+        private Duration negativeTtl = Duration.ofSeconds(30);
+        /** How long concurrent suggestion queries are collected into one _msearch; 0 disables batching. */
+        private Duration batchWindow = Duration.ofMillis(2);
+        /** A batch is sent as soon as this many distinct queries are waiting. */
+        private int maxBatchSize = 32;
+        /** Threads sending batches whose window expired, apart from the window timer. */
+        private int batchThreads = 2;
+    }
+
+    @Data
+    public static class Clicks {
+        /** How often accumulated clicks are written to the index. */
+        private Duration flushInterval = Duration.ofSeconds(10);
+        /** Distinct courses and suggestion titles counted between flushes; further ones are dropped. */
+        private int maxPending = 100_000;
+        /** Courses looked up and updated per flush request; a larger flush is sent in several. */
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class Catalog {
+        /** Changes sent per _bulk request. */
+        private int batchSize = 500;
+        /** _bulk requests in flight per stream; reading the body pauses while all are busy. */
+        private int maxInFlight = 4;
+        /** When applied changes become visible to search, unless the request asks otherwise. */
+        private Refresh refresh = Refresh.WAIT_FOR;
+
+        public enum Refresh {
+            /** Visible after the next periodic refresh (1 s by default). */
+            NONE,
+            /** Each _bulk request returns once its changes are visible. */
+            WAIT_FOR,
+            /** Each _bulk request forces a refresh; expensive under a steady stream. */
+            IMMEDIATE
+        }
+    }
+
+    @Data
+    public static class BulkLoad {
+        /** Relax refresh, replicas and translog flushing while the catalog is (re)loaded at startup. */
+        private boolean enabled = true;
+        /** Courses per _bulk request. */
+        private int batchSize = 1_000;
+        /** index.translog.flush_threshold_size during the load. */
+        private String translogFlushThreshold = "10gb";
+        /** Segments per shard left by the force merge after the load. */
+        private int maxSegments = 1;
+        /** match_all searches timed after the load to report query latency; 0 disables. */
+        private int latencyProbes = 20;
+        /** Catalog file loaded instead of the bundled sample; .ndjson/.jsonl and .csv files are parsed in parallel. */
+        private Path source;
+        /** Threads parsing a large catalog file; 0 uses every core. */
+        private int parallelism = 0;
+        /** Size of the file chunks parsed by one thread each. */
+        private DataSize chunkSize = DataSize.ofMegabytes(16);
+        /** Index courses in file order; when off, chunks are indexed as soon as they are parsed. */
+        private boolean ordered = true;
+    }
+
+    @Data
+    public static class Archive {
+        /** Move courses whose next session has passed from the active index to the archive. */
+        private boolean enabled = false;
+        /** How often expired courses are looked for. */
+        private Duration interval = Duration.ofHours(1);
+        /** How long after its next session a course stays searchable by default. */
+        private Duration grace = Duration.ZERO;
+        /** Courses moved per _bulk request. */
+        private int batchSize = 1_000;
+    }
+
+    @Data
+    public static class Routing {
+        /** Route courses to shards by category, so single-category searches hit one shard. */
+        private boolean enabled = false;
+        /** Primary shards of each course index; routing only pays off with more than one. */
+        private int shards = 1;
+    }
+
+    @Data
+    public static class IndexSort {
+        /**
+         * Count hits only up to one page past the requested one in index sort order, so the search can stop
+         * early; {@code total} is then a lower bound, flagged with {@code "totalRelation": "gte"}.
+         */
+        private boolean earlyTermination = false;
+    }
+
+    @Data
+    public static class Ingest {
+        /** Watch a directory for catalog files and apply their changes; the startup load then only seeds an empty index. */
+        private boolean enabled = false;
+        /** Directory watched for .json, .ndjson/.jsonl and .csv files. */
+        private Path directory = Path.of("catalog-inbox");
+        /** A file is read once it has had no new events for this long. */
+        private Duration debounce = Duration.ofSeconds(2);
+        /** Record of ingested files; defaults to .ingested.json in the watched directory. */
+        private Path checkpoint;
+        /** When ingested changes become visible to search. */
+        private Catalog.Refresh refresh = Catalog.Refresh.NONE;
+    }
+
+    @Data
+    public static class Reindex {
+        /** Documents per second a reindex job writes at most, unless it is started with a rate; 0 is unthrottled. */
+        private double rate = 0;
+    }
+
+    @Data
+    public static class LoadLease {
+        /** Let one instance load each catalog version while the others wait, through a lease in Elasticsearch. */
+        private boolean enabled = true;
+        /** A lease its holder stopped renewing is taken over after this long. */
+        private Duration ttl = Duration.ofSeconds(30);
+        /** How often a waiting instance checks whether the load has finished. */
+        private Duration pollInterval = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.course_search.config;
+
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.CatalogChange;
+import com.example.course_search.dto.CatalogChangeResult;
+import com.example.course_search.dto.ClickRequest;
+import com.example.course_search.dto.ReindexStatus;
+import com.example.course_search.dto.SearchExplanation;
+import com.example.course_search.dto.SearchResponse;
+import com.example.course_search.dto.SlowQueryEntry;
+import com.example.course_search.dto.SuggestionResponse;
+import com.example.course_search.services.LeaseStore;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a native image needs beyond what Spring's AOT processing finds on
+ * its own. Jackson binds these types by reflection when they are read
+ * from files, NDJSON streams or Elasticsearch, or written outside a
+ * controller return value; the bundled catalog and warmup corpus are read
+ * from the classpath.
+ */
+public class CourseSearchRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> BOUND_TYPES = List.of(
+            CourseDocument.class,
+            CatalogChange.class,
+            CatalogChangeResult.class,
+            ClickRequest.class,
+            ReindexStatus.class,
+            SearchExplanation.class,
+            SearchResponse.class,
+            SlowQueryEntry.class,
+            SuggestionResponse.class,
+            LeaseStore.Lease.class);
+
+    // Package-private, so named rather than referenced
+    private static final String FILE_STAMP = "com.example.course_search.services.CatalogDirectoryWatcher$FileStamp";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        List<Type> types = new ArrayList<>(BOUND_TYPES);
+        types.add(ClassUtils.resolveClassName(FILE_STAMP, classLoader));
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), types.toArray(Type[]::new));
+        hints.resources()
+                .registerPattern("sample-courses.json")
+                .registerPattern("warmup-queries.txt");
+    }
+}
@@ -1,10 +1,18 @@
 package com.example.course_search.config;
 
+import com.example.course_search.services.CourseJsonCache;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 
 @Configuration
 @RequiredArgsConstructor
@@ -17,4 +25,22 @@ public class JacksonConfig {
     public void setUp() {
         objectMapper.registerModule(new JavaTimeModule());
     }
+
+    // static: the ObjectMapper this class depends on is built from Module beans
+    @Bean
+    public static Module preEncodedCourseModule(CourseJsonCache courseJsonCache) {
+        return new PreEncodedCourseModule(courseJsonCache);
+    }
+
+    // Binary encodings for service-to-service callers (Accept: application/x-jackson-smile or application/cbor).
+    // Built from Boot's builder so they share the JSON mapper's modules and settings.
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
 }
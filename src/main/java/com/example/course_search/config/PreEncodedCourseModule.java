@@ -0,0 +1,100 @@
+package com.example.course_search.config;
+
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.services.CourseJsonCache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Writes {@link CourseDocument}s from {@link CourseJsonCache} as raw JSON
+ * instead of walking their properties again. Misses are serialized once with
+ * the regular bean serializer and stored for the rest of the index generation.
+ */
+public class PreEncodedCourseModule extends SimpleModule {
+
+    public PreEncodedCourseModule(CourseJsonCache cache) {
+        super("PreEncodedCourseModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config,
+                                                      BeanDescription beanDesc,
+                                                      JsonSerializer<?> serializer) {
+                if (beanDesc.getBeanClass() == CourseDocument.class) {
+                    return new PreEncodedCourseSerializer(cache, (JsonSerializer<Object>) serializer);
+                }
+                return serializer;
+            }
+        });
+    }
+
+    static class PreEncodedCourseSerializer extends JsonSerializer<CourseDocument>
+            implements ContextualSerializer, ResolvableSerializer {
+
+        private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+        private final CourseJsonCache cache;
+        private final JsonSerializer<Object> delegate;
+
+        PreEncodedCourseSerializer(CourseJsonCache cache, JsonSerializer<Object> delegate) {
+            this.cache = cache;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void serialize(CourseDocument course, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            // Raw bytes are only valid for compact JSON output; binary formats and pretty printing go the slow way
+            if (!(gen instanceof JsonGeneratorImpl) || gen.getPrettyPrinter() != null) {
+                delegate.serialize(course, gen, provider);
+                return;
+            }
+
+            SerializableString json = cache.get(course);
+            if (json == null) {
+                StringWriter writer = new StringWriter(512);
+                try (JsonGenerator encoder = JSON_FACTORY.createGenerator(writer)) {
+                    delegate.serialize(course, encoder, provider);
+                }
+                json = cache.put(course, writer.toString());
+            }
+            gen.writeRawValue(json);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+            if (delegate instanceof ContextualSerializer contextual) {
+                @SuppressWarnings("unchecked")
+                JsonSerializer<Object> contextualized = (JsonSerializer<Object>) contextual.createContextual(provider, property);
+                return new PreEncodedCourseSerializer(cache, contextualized);
+            }
+            return this;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer resolvable) {
+                resolvable.resolve(provider);
+            }
+        }
+
+        @Override
+        public Class<CourseDocument> handledType() {
+            return CourseDocument.class;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.course_search.controllers;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.dto.ReindexStatus;
+import com.example.course_search.dto.SlowQueryEntry;
+import com.example.course_search.services.CatalogLoadCoordinator;
+import com.example.course_search.services.CatalogWriter;
+import com.example.course_search.services.ReindexJobs;
+import com.example.course_search.services.SlowQueryLog;
+import com.example.course_search.services.TopQueries;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+    private static final String NDJSON = MediaType.APPLICATION_NDJSON_VALUE;
+
+    private final SlowQueryLog slowQueryLog;
+    private final TopQueries topQueries;
+    private final CatalogWriter catalogWriter;
+    private final ReindexJobs reindexJobs;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final CourseSearchProperties properties;
+
+    // Most recent slow requests, newest first, with profiles for the sampled ones
+    @GetMapping("/slow-queries")
+    public List<SlowQueryEntry> getSlowQueries() {
+        return slowQueryLog.recent();
+    }
+
+    // Most frequent canonical queries, one per line; save as course-search.warmup.corpus
+    @GetMapping(value = "/top-queries", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String getTopQueries(@RequestParam(required = false, defaultValue = "200") Integer limit) {
+        return String.join("\n", topQueries.top(limit)) + "\n";
+    }
+
+    // NDJSON changes in, one NDJSON result per change out, streamed while the body is still being read;
+    // 409 while any instance is loading the catalog, which would not have the changes
+    @PostMapping(value = "/courses", consumes = NDJSON, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> applyCatalogChanges(
+            @RequestParam(required = false) String refresh, HttpServletRequest request) {
+        CourseSearchProperties.Catalog.Refresh policy = refresh(refresh);
+        boolean loading;
+        try {
+            loading = catalogLoadCoordinator.isLoading();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search backend unavailable", e);
+        }
+        if (loading) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A reindex is running; retry once it has finished");
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> catalogWriter.apply(request.getInputStream(), out, policy));
+    }
+
+    // Starts reloading the catalog into a staging index; 409 while a job is running
+    @PostMapping("/reindex")
+    public ResponseEntity<ReindexStatus> startReindex(@RequestParam(required = false) Double rate) {
+        if (rate != null && rate < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "rate must not be negative");
+        }
+        try {
+            return ResponseEntity.accepted().body(reindexJobs.start(rate));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    // Progress of the running job, or the outcome of the last one
+    @GetMapping("/reindex")
+    public ReindexStatus getReindex() {
+        return reindexJobs.status()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No reindex job has run"));
+    }
+
+    // Cancels the running job; its staging index is deleted and the current catalog stays
+    @DeleteMapping("/reindex")
+    public ResponseEntity<ReindexStatus> cancelReindex() {
+        return reindexJobs.cancel()
+                .map(status -> ResponseEntity.accepted().body(status))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No reindex job is running"));
+    }
+
+    private CourseSearchProperties.Catalog.Refresh refresh(String refresh) {
+        if (refresh == null || refresh.isBlank()) {
+            return properties.getCatalog().getRefresh();
+        }
+        try {
+            return CourseSearchProperties.Catalog.Refresh.valueOf(refresh.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "refresh must be one of none, wait_for, immediate", e);
+        }
+    }
+}
@@ -1,18 +1,44 @@
 package com.example.course_search.controllers;
 
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.dto.ClickRequest;
 import com.example.course_search.dto.SearchResponse;
 import com.example.course_search.dto.SuggestionResponse;
+import com.example.course_search.services.CanonicalQuery;
+import com.example.course_search.services.ClickCounter;
 import com.example.course_search.services.CourseSearchService;
+import com.example.course_search.services.FieldProjection;
+import com.example.course_search.services.IndexGeneration;
+import com.example.course_search.services.SearchContext;
 import com.example.course_search.services.SuggestionService;
+import io.micrometer.common.KeyValue;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
-
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 
 @RestController
@@ -21,9 +47,17 @@ import java.time.OffsetDateTime;
 public class CourseSearchController {
     private final CourseSearchService courseSearchService;
     private final SuggestionService suggestionService;
+    private final IndexGeneration indexGeneration;
+    private final CourseSearchProperties properties;
+    private final ClickCounter clickCounter;
+    private final ContentNegotiationManager contentNegotiationManager;
+
+    // Response encodings, in the order the converters are tried for a wildcard Accept
+    private static final List<MediaType> ENCODINGS = List.of(MediaType.APPLICATION_JSON,
+            MediaType.valueOf("application/x-jackson-smile"), MediaType.APPLICATION_CBOR);
 
     @GetMapping("/search")
-    public SearchResponse searchCourses(
+    public ResponseEntity<SearchResponse> searchCourses(
             @RequestParam(required = false) String q,
             @RequestParam(required = false) Integer minAge,
             @RequestParam(required = false) Integer maxAge,
@@ -35,18 +69,46 @@ public class CourseSearchController {
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime nextSessionDate,
             @RequestParam(required = false, defaultValue = "upcoming") String sort,
             @RequestParam(required = false, defaultValue = "0") Integer page,
-            @RequestParam(required = false, defaultValue = "10") Integer size
+            @RequestParam(required = false, defaultValue = "10") Integer size,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false, defaultValue = "false") boolean explain,
+            @RequestParam(required = false, defaultValue = "false") boolean historical,
+            WebRequest request
     ) {
-        return courseSearchService.searchCoursesWithFuzzy(q, minAge, maxAge,
+        FieldProjection projection = projection(fields);
+        historical(historical);
+        String etag = etag(CanonicalQuery.search(q, minAge, maxAge, minPrice, maxPrice,
+                category, type, nextSessionDate, sort, page, size, projection, historical), request);
+        if (explain) {
+            explain();
+        } else if (request.checkNotModified(etag)) {
+            // Results only change on reindex, so a matching ETag is answered without touching Elasticsearch
+            notModified(request);
+            return null;
+        }
+        return cacheable(etag, courseSearchService.searchCoursesWithFuzzy(q, minAge, maxAge,
                                                     minPrice, maxPrice, category,
                                                         type, nextSessionDate, sort,
-                                                            page, size);
+                                                            page, size, projection));
     }
     @GetMapping("/allCourses")
-    public SearchResponse getAllCourses(@RequestParam(required = false, defaultValue = "upcoming") String sort,
+    public ResponseEntity<SearchResponse> getAllCourses(@RequestParam(required = false, defaultValue = "upcoming") String sort,
                                               @RequestParam(required = false, defaultValue = "0") Integer page,
-                                              @RequestParam(required = false, defaultValue = "10") Integer size) {
-        return courseSearchService.findAllCourses(sort, page, size);
+                                              @RequestParam(required = false, defaultValue = "10") Integer size,
+                                              @RequestParam(required = false) String fields,
+                                              @RequestParam(required = false, defaultValue = "false") boolean explain,
+                                              @RequestParam(required = false, defaultValue = "false") boolean historical,
+                                              WebRequest request) {
+        FieldProjection projection = projection(fields);
+        historical(historical);
+        String etag = etag(CanonicalQuery.allCourses(sort, page, size, projection, historical), request);
+        if (explain) {
+            explain();
+        } else if (request.checkNotModified(etag)) {
+            notModified(request);
+            return null;
+        }
+        return cacheable(etag, courseSearchService.findAllCourses(sort, page, size, projection));
     }
 
     @GetMapping("/search/suggest")
@@ -55,4 +117,99 @@ public class CourseSearchController {
             @RequestParam(required = false, defaultValue = "10") Integer size) {
         return suggestionService.getSuggestions(q, size);
     }
+
+    // Only counted here; the counts reach the index on the next flush
+    @PostMapping("/clicks")
+    public ResponseEntity<Void> recordClick(@RequestBody ClickRequest click) {
+        boolean result = click.getCourseId() != null && !click.getCourseId().isBlank();
+        boolean suggestion = click.getSuggestion() != null && !click.getSuggestion().isBlank();
+        if (result == suggestion) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exactly one of courseId or suggestion is required");
+        }
+        if (result) {
+            clickCounter.recordResultClick(click.getCourseId());
+        } else {
+            clickCounter.recordSuggestionClick(click.getSuggestion());
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    private String etag(String canonicalQuery, WebRequest request) {
+        // JSON, Smile and CBOR bodies of the same result are different representations; the Accept
+        // header itself varies by client for the same one, so only the encoding chosen counts
+        String representation = canonicalQuery + "|" + representation(request);
+        String digest = DigestUtils.md5DigestAsHex(representation.getBytes(StandardCharsets.UTF_8));
+        // Weak: the same result gzip-compressed or not is one representation, and Tomcat does not compress
+        // responses with a strong ETag
+        return "W/\"" + indexGeneration.current() + "-" + digest + "\"";
+    }
+
+    // The encoding the message converters will pick, as they do: most specific accepted type first
+    private MediaType representation(WebRequest request) {
+        if (request instanceof NativeWebRequest nativeRequest) {
+            try {
+                List<MediaType> accepted = new ArrayList<>(contentNegotiationManager.resolveMediaTypes(nativeRequest));
+                MimeTypeUtils.sortBySpecificity(accepted);
+                for (MediaType acceptable : accepted) {
+                    for (MediaType encoding : ENCODINGS) {
+                        if (acceptable.isCompatibleWith(encoding)) {
+                            return encoding;
+                        }
+                    }
+                }
+            } catch (HttpMediaTypeNotAcceptableException e) {
+                // Answered with 406 by the converters anyway
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // Explain output is for debugging and never cached, so it skips revalidation as well
+    private void explain() {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setExplain(true);
+        }
+    }
+
+    // Archived courses are only searched when asked for; the services pick the index from the context
+    private void historical(boolean historical) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setHistorical(historical);
+        }
+    }
+
+    // Records the 304 on the request's context and server span (high-cardinality, so the http.server.requests metric keeps its tags)
+    private void notModified(WebRequest request) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setCacheOutcome("not_modified");
+        }
+        if (request instanceof NativeWebRequest nativeRequest
+                && nativeRequest.getNativeRequest() instanceof HttpServletRequest servletRequest) {
+            ServerHttpObservationFilter.findObservationContext(servletRequest)
+                    .ifPresent(observation -> observation.addHighCardinalityKeyValue(KeyValue.of("cache.outcome", "not_modified")));
+        }
+    }
+
+    private ResponseEntity<SearchResponse> cacheable(String etag, SearchResponse body) {
+        if (body.isStale() || body.isPartial() || body.getExplain() != null) {
+            // A fallback, incomplete or explained answer must not be stored (and later revalidated) under the current generation's tag
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(body);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.maxAge(properties.getHttp().getCacheMaxAge()).cachePublic())
+                .body(body);
+    }
+
+    private FieldProjection projection(String fields) {
+        try {
+            return FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
 }
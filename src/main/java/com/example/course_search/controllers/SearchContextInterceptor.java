@@ -0,0 +1,79 @@
+package com.example.course_search.controllers;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.services.SearchContext;
+import com.example.course_search.services.SlowQueryLog;
+import com.example.course_search.services.TopQueries;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Opens a {@link SearchContext} for every {@code /api} request. The latency
+ * budget comes from the {@value #BUDGET_HEADER} header (milliseconds,
+ * capped at {@code course-search.deadline.max}) or the endpoint's default.
+ * Once the response is written the request is handed to the slow-query log
+ * and counted in {@link TopQueries}; the context is then left as a request
+ * attribute for {@link ServerTimingFilter}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchContextInterceptor implements HandlerInterceptor {
+
+    public static final String BUDGET_HEADER = "X-Search-Budget-Ms";
+
+    /** Request attribute holding the finished context, for filters that run after the handler. */
+    public static final String CONTEXT_ATTRIBUTE = SearchContext.class.getName();
+
+    private final CourseSearchProperties properties;
+    private final SlowQueryLog slowQueryLog;
+    private final TopQueries topQueries;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SearchContext.open(budget(request));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.lap("serialization");
+            slowQueryLog.record(request.getRequestURI(), context);
+            if (context.getCanonicalQuery() != null && ex == null) {
+                topQueries.record(context.getCanonicalQuery());
+            }
+            request.setAttribute(CONTEXT_ATTRIBUTE, context);
+            context.close();
+        }
+    }
+
+    private Duration budget(HttpServletRequest request) {
+        CourseSearchProperties.Deadline deadline = properties.getDeadline();
+        String header = request.getHeader(BUDGET_HEADER);
+        if (header != null) {
+            try {
+                Duration requested = Duration.ofMillis(Long.parseLong(header.trim()));
+                if (!requested.isNegative() && !requested.isZero()) {
+                    return requested.compareTo(deadline.getMax()) < 0 ? requested : deadline.getMax();
+                }
+            } catch (NumberFormatException ignored) {
+                // fall back to the endpoint default
+            }
+        }
+
+        String path = request.getRequestURI();
+        if (path.endsWith("/search/suggest")) {
+            return deadline.getSuggest();
+        }
+        if (path.endsWith("/allCourses")) {
+            return deadline.getAllCourses();
+        }
+        return deadline.getSearch();
+    }
+}
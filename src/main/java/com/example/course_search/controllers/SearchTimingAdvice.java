@@ -0,0 +1,59 @@
+package com.example.course_search.controllers;
+
+import com.example.course_search.services.SearchContext;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Starts the serialization lap of the request's {@link SearchContext} right
+ * before the body is handed to the message converter; the interceptor closes
+ * it once the response is written. The {@code Server-Timing} header goes out
+ * here with the phases so far and an estimate of the serialize phase, and the
+ * body streams to the client unbuffered. Clients that send
+ * {@code TE: trailers} also get the measured serialize phase in a
+ * {@code Server-Timing} trailer.
+ */
+@ControllerAdvice
+public class SearchTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            response.getHeaders().set(ServerTimingFilter.SERVER_TIMING, ServerTimingFilter.serverTiming(context, request.getURI().getPath()));
+            if (acceptsTrailers(request) && response instanceof ServletServerHttpResponse servletResponse) {
+                response.getHeaders().set(HttpHeaders.TRAILER, ServerTimingFilter.SERVER_TIMING);
+                HttpServletResponse servlet = servletResponse.getServletResponse();
+                servlet.setTrailerFields(() -> {
+                    String timing = ServerTimingFilter.serializeTiming(context);
+                    return timing == null ? Map.of() : Map.of(ServerTimingFilter.SERVER_TIMING, timing);
+                });
+            }
+            context.mark();
+        }
+        return body;
+    }
+
+    private static boolean acceptsTrailers(ServerHttpRequest request) {
+        return request.getHeaders().getOrEmpty(HttpHeaders.TE).stream()
+                .anyMatch(te -> te.toLowerCase(Locale.ROOT).contains("trailers"));
+    }
+}
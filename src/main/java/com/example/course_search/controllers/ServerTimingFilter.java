@@ -0,0 +1,116 @@
+package com.example.course_search.controllers;
+
+import com.example.course_search.services.SearchContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds a {@code Server-Timing} header to {@code /api} responses with the
+ * query-build, backend, mapping and serialize phases of the request's
+ * {@link SearchContext}, its cache outcome and the total. Responses with a
+ * body get it from {@link SearchTimingAdvice} just before the body is
+ * streamed, so their serialize phase is not measured yet: the header carries
+ * a running average of earlier serializations of the same endpoint, marked
+ * {@code desc=estimate}, and the measured time follows as a trailer. This
+ * filter covers bodiless responses such as {@code 304 Not Modified} and keeps
+ * the averages up to date.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    // request path -> moving average of its serialize phase, in milliseconds
+    private static final Map<String, Double> SERIALIZE_ESTIMATES = new ConcurrentHashMap<>();
+
+    // SearchContext stage -> Server-Timing metric name
+    private static final Map<String, String> PHASES = new LinkedHashMap<>();
+
+    static {
+        PHASES.put("build", "build");
+        PHASES.put("elasticsearch", "backend");
+        PHASES.put("mapping", "mapping");
+        PHASES.put("serialization", "serialize");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+        if (!(request.getAttribute(SearchContextInterceptor.CONTEXT_ATTRIBUTE) instanceof SearchContext context)) {
+            return;
+        }
+        if (response.containsHeader(SERVER_TIMING)) {
+            recordSerialize(request.getRequestURI(), context);
+        } else if (!response.isCommitted()) {
+            response.setHeader(SERVER_TIMING, serverTiming(context));
+        }
+    }
+
+    /** Folds the measured serialize phase of a response with a body into the estimate for its path. */
+    static void recordSerialize(String path, SearchContext context) {
+        Duration duration = context.getStages().get("serialization");
+        if (duration != null) {
+            SERIALIZE_ESTIMATES.merge(path, duration.toNanos() / 1_000_000.0,
+                    (average, latest) -> average + (latest - average) / 5);
+        }
+    }
+
+    /**
+     * Header for a response whose body is about to be written, with the
+     * serialize phase estimated from earlier responses of the same path.
+     */
+    static String serverTiming(SearchContext context, String path) {
+        String timing = serverTiming(context);
+        Double estimate = SERIALIZE_ESTIMATES.get(path);
+        if (estimate == null) {
+            return timing;
+        }
+        return PHASES.get("serialization") + ";dur=" + String.format(Locale.ROOT, "%.2f", estimate)
+                + ";desc=estimate, " + timing;
+    }
+
+    /** Trailer with the serialize phase, which ends after the header has gone out with the body. */
+    static String serializeTiming(SearchContext context) {
+        Duration duration = context.getStages().get("serialization");
+        return duration == null ? null : PHASES.get("serialization") + ";dur=" + millis(duration);
+    }
+
+    static String serverTiming(SearchContext context) {
+        Map<String, Duration> stages = context.getStages();
+        List<String> metrics = new ArrayList<>();
+        PHASES.forEach((stage, metric) -> {
+            Duration duration = stages.get(stage);
+            if (duration != null) {
+                metrics.add(metric + ";dur=" + millis(duration));
+            }
+        });
+        if (context.getCacheOutcome() != null) {
+            metrics.add("cache;desc=" + context.getCacheOutcome());
+        }
+        metrics.add("total;dur=" + millis(context.elapsed()));
+        return String.join(", ", metrics);
+    }
+
+    private static String millis(Duration duration) {
+        return String.format(Locale.ROOT, "%.2f", duration.toNanos() / 1_000_000.0);
+    }
+}
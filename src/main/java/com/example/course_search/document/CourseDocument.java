@@ -1,9 +1,12 @@
 package com.example.course_search.document;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.*;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
 
 import java.time.Instant;
 
@@ -11,7 +14,11 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Document(indexName = "courses")
+// An alias over the active index; CourseIndexLayout creates the indices behind it
+@Document(indexName = "courses", createIndex = false)
+// Segments are kept in "upcoming" order, so match-all and filter-only queries with that sort stop early
+@Setting(sortFields = "nextSessionDate", sortOrders = Setting.SortOrder.asc, sortMissingValues = Setting.SortMissing._last)
+@JsonInclude(JsonInclude.Include.NON_NULL) // fields left out by a projection are omitted, not sent as null
 public class CourseDocument {
 
     @Id
@@ -51,11 +58,20 @@ public class CourseDocument {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'", timezone = "UTC")
     private Instant nextSessionDate;
 
+    // Click count, maintained in place by ClickCounter; orders suggestions
+    @Field(type = FieldType.Long)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long popularity;
+
+    // The title as completion input, weighted by popularity
     @CompletionField(maxInputLength = 100)
-    private String suggest;
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Completion suggest;
 
     public void setSuggestFromTitle() {
         if (this.title != null)
-            this.suggest = this.title;
+            this.suggest = new Completion(new String[]{this.title});
     }
 }
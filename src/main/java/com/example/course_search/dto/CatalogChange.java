@@ -0,0 +1,35 @@
+package com.example.course_search.dto;
+
+import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * One line of a catalog change stream: {@code upsert} with a full
+ * {@code course}, {@code update} of some {@code fields} of course {@code id},
+ * or {@code delete} of course {@code id}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogChange {
+
+    @JsonProperty("op")
+    private String op;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("course")
+    private CourseDocument course;
+
+    @JsonProperty("fields")
+    private Map<String, Object> fields;
+
+}
@@ -0,0 +1,39 @@
+package com.example.course_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one line of a catalog change stream. {@code status} is the
+ * HTTP-style status Elasticsearch reported for the item (201 created,
+ * 200 updated or deleted, 404 not found), or 400 for a line that could not be
+ * parsed, 503 when the backend could not be reached and 500 when its batch
+ * failed unexpectedly.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogChangeResult {
+
+    @JsonProperty("line")
+    private int line;
+
+    @JsonProperty("op")
+    private String op;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("status")
+    private int status;
+
+    @JsonProperty("error")
+    private String error;
+
+}
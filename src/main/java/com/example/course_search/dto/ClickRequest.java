@@ -0,0 +1,26 @@
+package com.example.course_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A click on a search result ({@code courseId}) or on an autocomplete
+ * suggestion ({@code suggestion}, the title as returned by the suggest
+ * endpoint).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClickRequest {
+
+    @JsonProperty("courseId")
+    private String courseId;
+
+    @JsonProperty("suggestion")
+    private String suggestion;
+
+}
@@ -0,0 +1,60 @@
+package com.example.course_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of a reindex job. {@code bytes} counts how much of the catalog
+ * file has been indexed, out of {@code totalBytes}; {@code etaSeconds} is
+ * estimated from the byte rate so far and left out once the job has ended.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReindexStatus {
+
+    public enum State { RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    @JsonProperty("state")
+    private State state;
+
+    // The staging index the catalog is loaded into; the active index once completed
+    @JsonProperty("index")
+    private String index;
+
+    @JsonProperty("startedAt")
+    private Instant startedAt;
+
+    @JsonProperty("finishedAt")
+    private Instant finishedAt;
+
+    @JsonProperty("documents")
+    private long documents;
+
+    @JsonProperty("bytes")
+    private long bytes;
+
+    @JsonProperty("totalBytes")
+    private long totalBytes;
+
+    @JsonProperty("documentsPerSecond")
+    private double documentsPerSecond;
+
+    @JsonProperty("etaSeconds")
+    private Long etaSeconds;
+
+    // Throttle in documents per second; absent when unthrottled
+    @JsonProperty("rate")
+    private Double rate;
+
+    @JsonProperty("error")
+    private String error;
+}
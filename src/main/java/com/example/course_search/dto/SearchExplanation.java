@@ -0,0 +1,40 @@
+package com.example.course_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a search was executed, returned with the results when
+ * {@code explain=true} is requested.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchExplanation {
+
+    // Strategy that produced the results: criteria, match_all, fuzzy or stale
+    @JsonProperty("tier")
+    private String tier;
+
+    // JSON array of the query DSL sent to Elasticsearch, in order
+    @JsonProperty("queries")
+    @JsonRawValue
+    private String queries;
+
+    // Page, size and sort of the final query, after clamping
+    @JsonProperty("page")
+    private Integer page;
+
+    @JsonProperty("size")
+    private Integer size;
+
+    @JsonProperty("sort")
+    private String sort;
+}
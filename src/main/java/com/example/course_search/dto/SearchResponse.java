@@ -1,6 +1,7 @@
 package com.example.course_search.dto;
 
 import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,7 +13,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class SearchResponse {
 
     @JsonProperty("total")
@@ -20,4 +21,25 @@ public class SearchResponse {
 
     @JsonProperty("courses")
     private List<CourseDocument> courses;
+
+    // "gte" when counting stopped early and total is only a lower bound (course-search.index-sort.early-termination);
+    // absent when total is exact
+    @JsonProperty("totalRelation")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String totalRelation;
+
+    // Served from the last good result while Elasticsearch is unavailable
+    @JsonProperty("stale")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;
+
+    // The request deadline ran out (or shards failed) before every hit was collected
+    @JsonProperty("partial")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean partial;
+
+    // Only present when the request asked for explain=true
+    @JsonProperty("explain")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchExplanation explain;
 }
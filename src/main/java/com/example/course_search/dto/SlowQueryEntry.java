@@ -0,0 +1,53 @@
+package com.example.course_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SlowQueryEntry {
+
+    @JsonProperty("timestamp")
+    private Instant timestamp;
+
+    @JsonProperty("endpoint")
+    private String endpoint;
+
+    @JsonProperty("canonicalQuery")
+    private String canonicalQuery;
+
+    // Strategy that produced the answer: criteria, match_all, fuzzy, prefix or stale
+    @JsonProperty("tier")
+    private String tier;
+
+    @JsonProperty("totalMs")
+    private double totalMs;
+
+    // took as reported by Elasticsearch, summed over the request's searches
+    @JsonProperty("tookMs")
+    private double tookMs;
+
+    @JsonProperty("stagesMs")
+    private Map<String, Double> stagesMs;
+
+    // JSON array of the query DSL sent, in order
+    @JsonProperty("queries")
+    @JsonRawValue
+    private String queries;
+
+    // Elasticsearch profile of the last query, filled in for sampled entries
+    @JsonProperty("profile")
+    @JsonRawValue
+    private volatile String profile;
+}
@@ -0,0 +1,211 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Moves courses whose {@code nextSessionDate} has passed (plus
+ * {@code course-search.archive.grace}) from the active index to the archive,
+ * in batches of {@code course-search.archive.batch-size}: each batch is
+ * copied with one bulk request and then deleted from the active index with
+ * another. Only courses the archive accepted are deleted, so a failure
+ * leaves a course searchable rather than lost, and deletes are conditional
+ * on the version that was copied: a course updated in the meantime stays
+ * active and its archive copy is dropped. Copies keep the course's
+ * {@code _routing}, so category routing carries over to the archive.
+ * <p>
+ * Runs every {@code course-search.archive.interval} on its own thread when
+ * {@code course-search.archive.enabled} is set, except while any instance
+ * loads the catalog into a staging index, which the moves would not reach.
+ * Of several instances, the one that {@link CatalogLoadCoordinator#claim
+ * claims} the {@value #LEASE} lease for the interval runs; the others would
+ * only race it for the same courses.
+ */
+@Component
+public class ArchiveMover {
+
+    static final String LEASE = "archive-move";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final IndexGeneration indexGeneration;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final CourseSearchProperties.Archive config;
+    private final Clock clock;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ArchiveMover(ElasticsearchClient elasticsearchClient, IndexGeneration indexGeneration,
+                        CatalogLoadCoordinator catalogLoadCoordinator, CourseSearchProperties properties) {
+        this(elasticsearchClient, indexGeneration, catalogLoadCoordinator, properties, Clock.systemUTC());
+    }
+
+    ArchiveMover(ElasticsearchClient elasticsearchClient, IndexGeneration indexGeneration,
+                 CatalogLoadCoordinator catalogLoadCoordinator, CourseSearchProperties properties, Clock clock) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexGeneration = indexGeneration;
+        this.catalogLoadCoordinator = catalogLoadCoordinator;
+        this.config = properties.getArchive();
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archive-mover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // A scheduled run, on whichever instance claims it
+    void run() {
+        try {
+            if (!catalogLoadCoordinator.claim(LEASE, config.getInterval())) {
+                return;
+            }
+            int moved = moveExpired();
+            if (moved > 0) {
+                System.out.println("Archived " + moved + " expired courses");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Archive move failed, retrying on next run: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** Moves every course that has expired by now; returns how many were moved. */
+    public synchronized int moveExpired() throws IOException {
+        if (catalogLoadCoordinator.isLoading()) {
+            return 0;
+        }
+        String cutoff = Instant.now(clock).minus(config.getGrace()).toString();
+        int batchSize = Math.max(1, config.getBatchSize());
+        // Through the alias, which follows the active index when a reindex job replaces it
+        SearchRequest expired = SearchRequest.of(s -> s
+                .index(CourseIndexLayout.ALIAS)
+                .size(batchSize)
+                .seqNoPrimaryTerm(true)
+                .query(q -> q.range(r -> r.date(d -> d.field("nextSessionDate").lt(cutoff)))));
+
+        int moved = 0;
+        try {
+            while (true) {
+                List<Hit<JsonData>> hits = elasticsearchClient.search(expired, JsonData.class).hits().hits();
+                if (hits.isEmpty()) {
+                    break;
+                }
+                int batchMoved = moveBatch(hits);
+                moved += batchMoved;
+                // A full batch that moved nothing would be found again forever
+                if (batchMoved == 0 || hits.size() < batchSize) {
+                    break;
+                }
+            }
+        } finally {
+            if (moved > 0) {
+                indexGeneration.advance();
+            }
+        }
+        return moved;
+    }
+
+    private int moveBatch(List<Hit<JsonData>> hits) throws IOException {
+        Map<String, Hit<JsonData>> byId = hits.stream()
+                .collect(Collectors.toMap(Hit::id, Function.identity(), (first, second) -> first));
+
+        BulkResponse copied = elasticsearchClient.bulk(BulkRequest.of(b -> b
+                .index(CourseIndexLayout.ARCHIVE)
+                .operations(hits.stream()
+                        .map(hit -> BulkOperation.of(op -> op.index(i -> i
+                                .id(hit.id())
+                                .routing(hit.routing())
+                                .document(hit.source()))))
+                        .toList())));
+        Set<String> inArchive = succeeded(copied);
+        if (inArchive.isEmpty()) {
+            System.err.println("Archive rejected all " + hits.size() + " expired courses: " + firstError(copied));
+            return 0;
+        }
+
+        // Wait for the deletes to be visible, so the next batch does not find these courses again
+        BulkResponse deleted = elasticsearchClient.bulk(BulkRequest.of(b -> b
+                .index(CourseIndexLayout.ALIAS)
+                .refresh(Refresh.WaitFor)
+                .operations(inArchive.stream()
+                        .map(byId::get)
+                        .map(hit -> BulkOperation.of(op -> op.delete(d -> d
+                                .id(hit.id())
+                                .routing(hit.routing())
+                                .ifSeqNo(hit.seqNo())
+                                .ifPrimaryTerm(hit.primaryTerm()))))
+                        .toList())));
+        Set<String> moved = succeeded(deleted);
+
+        List<String> changed = new ArrayList<>();
+        for (BulkResponseItem item : deleted.items()) {
+            if (item.status() == 409) {
+                changed.add(item.id());
+            }
+        }
+        if (!changed.isEmpty()) {
+            // Updated after the copy was taken; the active copy wins
+            elasticsearchClient.bulk(BulkRequest.of(b -> b
+                    .index(CourseIndexLayout.ARCHIVE)
+                    .operations(changed.stream()
+                            .map(id -> BulkOperation.of(op -> op.delete(d -> d.id(id).routing(byId.get(id).routing()))))
+                            .toList())));
+        }
+        return moved.size();
+    }
+
+    private static Set<String> succeeded(BulkResponse response) {
+        return response.items().stream()
+                .filter(item -> item.error() == null)
+                .map(BulkResponseItem::id)
+                .collect(Collectors.toSet());
+    }
+
+    private static String firstError(BulkResponse response) {
+        return response.items().stream()
+                .filter(item -> item.error() != null)
+                .map(item -> item.error().type() + ": " + item.error().reason())
+                .findFirst()
+                .orElse("no error reported");
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.indices.ForcemergeRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.RefreshRequest;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Index settings for a full catalog load into an index that is not searched
+ * yet, such as a staging index. {@link #begin} turns off periodic refreshes
+ * and replicas and raises the translog flush threshold, so the load does not
+ * pay for segments nobody searches yet; {@link #finish} puts the previous
+ * settings back, force-merges to {@code course-search.bulk-load.max-segments}
+ * and refreshes once.
+ */
+@Component
+public class BulkLoadTuning {
+
+    // The alias of the active index, which latency probes search
+    private static final String INDEX = CourseDocument.class.getAnnotation(Document.class).indexName();
+
+    // Elasticsearch defaults, for settings the index does not report
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    private static final String DEFAULT_REPLICAS = "1";
+    private static final String DEFAULT_FLUSH_THRESHOLD = "512mb";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final CourseSearchProperties.BulkLoad config;
+
+    public BulkLoadTuning(ElasticsearchClient elasticsearchClient, CourseSearchProperties properties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.config = properties.getBulkLoad();
+    }
+
+    /** Switches {@code index} to load settings and returns the ones it had. */
+    public Saved begin(String index) throws IOException {
+        IndexState state = elasticsearchClient.indices()
+                .getSettings(GetIndicesSettingsRequest.of(g -> g.index(index).includeDefaults(true)))
+                .result().values().stream().findFirst().orElse(null);
+        Saved saved = new Saved(
+                setting(state, settings -> time(settings.refreshInterval()), DEFAULT_REFRESH_INTERVAL),
+                setting(state, IndexSettings::numberOfReplicas, DEFAULT_REPLICAS),
+                setting(state, settings -> settings.translog() == null ? null : settings.translog().flushThresholdSize(),
+                        DEFAULT_FLUSH_THRESHOLD));
+        putSettings(index, "-1", "0", config.getTranslogFlushThreshold());
+        return saved;
+    }
+
+    /** Restores {@code saved} on {@code index}, then force-merges and refreshes; returns how long each step took. */
+    public Steps finish(String index, Saved saved) throws IOException {
+        long start = System.nanoTime();
+        putSettings(index, saved.refreshInterval(), saved.replicas(), saved.flushThresholdSize());
+        long restored = System.nanoTime();
+        elasticsearchClient.indices().forcemerge(ForcemergeRequest.of(f -> f
+                .index(index)
+                .maxNumSegments((long) config.getMaxSegments())
+                .flush(true)));
+        long merged = System.nanoTime();
+        elasticsearchClient.indices().refresh(RefreshRequest.of(r -> r.index(index)));
+        long refreshed = System.nanoTime();
+        return new Steps(Duration.ofNanos(restored - start), Duration.ofNanos(merged - restored),
+                Duration.ofNanos(refreshed - merged));
+    }
+
+    /**
+     * Puts {@code saved} back on {@code index} without merging, for a load
+     * that failed half way. Never throws, so it can run from a
+     * {@code finally} block.
+     */
+    public void restore(String index, Saved saved) {
+        try {
+            putSettings(index, saved.refreshInterval(), saved.replicas(), saved.flushThresholdSize());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not restore index settings after the load: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Times {@code course-search.bulk-load.latency-probes} match_all searches
+     * against the freshly loaded index; empty when probing is disabled.
+     */
+    public List<Duration> probeLatency() throws IOException {
+        List<Duration> samples = new ArrayList<>(config.getLatencyProbes());
+        SearchRequest probe = SearchRequest.of(s -> s.index(INDEX).size(10).query(q -> q.matchAll(m -> m)));
+        for (int i = 0; i < config.getLatencyProbes(); i++) {
+            long start = System.nanoTime();
+            elasticsearchClient.search(probe, JsonData.class);
+            samples.add(Duration.ofNanos(System.nanoTime() - start));
+        }
+        Collections.sort(samples);
+        return samples;
+    }
+
+    private void putSettings(String index, String refreshInterval, String replicas, String flushThresholdSize)
+            throws IOException {
+        elasticsearchClient.indices().putSettings(PutIndicesSettingsRequest.of(p -> p
+                .index(index)
+                .settings(s -> s
+                        .refreshInterval(Time.of(t -> t.time(refreshInterval)))
+                        .numberOfReplicas(replicas)
+                        .translog(t -> t.flushThresholdSize(flushThresholdSize)))));
+    }
+
+    // The index's own setting, else the cluster default reported with it, else the documented default
+    private static String setting(IndexState state, Function<IndexSettings, String> read, String fallback) {
+        if (state != null) {
+            String value = read(state.settings(), read);
+            if (value == null) {
+                value = read(state.defaults(), read);
+            }
+            if (value != null) {
+                return value;
+            }
+        }
+        return fallback;
+    }
+
+    private static String read(IndexSettings settings, Function<IndexSettings, String> read) {
+        if (settings == null) {
+            return null;
+        }
+        // Settings come back nested under "index"
+        IndexSettings index = settings.index() != null ? settings.index() : settings;
+        return read.apply(index);
+    }
+
+    private static String time(Time time) {
+        if (time == null) {
+            return null;
+        }
+        return time.isTime() ? time.time() : String.valueOf(time.offset());
+    }
+
+    /** Index settings from before the load. */
+    public record Saved(String refreshInterval, String replicas, String flushThresholdSize) {
+    }
+
+    /** Duration of each post-load step. */
+    public record Steps(Duration restoreSettings, Duration forceMerge, Duration refresh) {
+    }
+}
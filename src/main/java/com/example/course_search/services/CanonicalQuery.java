@@ -0,0 +1,108 @@
+package com.example.course_search.services;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Stable string form of a request's search parameters: parameters are
+ * sorted, blanks dropped and values normalized, so equivalent requests map
+ * to the same key. Names and values are URL-encoded, so a value containing
+ * {@code &} or {@code =} cannot pass for another parameter. Used for ETags
+ * and result caches, and replayed by {@link WarmupRunner}.
+ */
+public final class CanonicalQuery {
+
+    private CanonicalQuery() {
+    }
+
+    public static String search(String q,
+                                Integer minAge,
+                                Integer maxAge,
+                                Double minPrice,
+                                Double maxPrice,
+                                String category,
+                                String type,
+                                OffsetDateTime nextSessionDate,
+                                String sort,
+                                Integer page,
+                                Integer size,
+                                FieldProjection projection) {
+        return search(q, minAge, maxAge, minPrice, maxPrice, category, type, nextSessionDate,
+                sort, page, size, projection, false);
+    }
+
+    public static String search(String q,
+                                Integer minAge,
+                                Integer maxAge,
+                                Double minPrice,
+                                Double maxPrice,
+                                String category,
+                                String type,
+                                OffsetDateTime nextSessionDate,
+                                String sort,
+                                Integer page,
+                                Integer size,
+                                FieldProjection projection,
+                                boolean historical) {
+        Map<String, Object> params = new TreeMap<>();
+        put(params, "q", q == null ? null : q.trim());
+        put(params, "minAge", minAge);
+        put(params, "maxAge", maxAge);
+        put(params, "minPrice", minPrice);
+        put(params, "maxPrice", maxPrice);
+        put(params, "category", category);
+        put(params, "type", type);
+        put(params, "nextSessionDate", nextSessionDate == null ? null : nextSessionDate.toInstant());
+        putPaging(params, sort, page, size, projection, historical);
+        return format("search", params);
+    }
+
+    public static String allCourses(String sort, Integer page, Integer size, FieldProjection projection) {
+        return allCourses(sort, page, size, projection, false);
+    }
+
+    public static String allCourses(String sort, Integer page, Integer size, FieldProjection projection,
+                                    boolean historical) {
+        Map<String, Object> params = new TreeMap<>();
+        putPaging(params, sort, page, size, projection, historical);
+        return format("allCourses", params);
+    }
+
+    public static String suggest(String prefix, int size) {
+        Map<String, Object> params = new TreeMap<>();
+        put(params, "q", prefix);
+        put(params, "size", size);
+        return format("suggest", params);
+    }
+
+    private static void putPaging(Map<String, Object> params, String sort, Integer page, Integer size,
+                                  FieldProjection projection, boolean historical) {
+        put(params, "sort", sort == null || sort.isBlank() ? "upcoming" : sort.toLowerCase(Locale.ROOT));
+        put(params, "page", page);
+        put(params, "size", size);
+        put(params, "fields", projection);
+        // Only present when set, so active-only keys are unchanged
+        put(params, "historical", historical ? true : null);
+    }
+
+    private static void put(Map<String, Object> params, String name, Object value) {
+        if (value != null && !(value instanceof String s && s.isBlank())) {
+            params.put(name, value);
+        }
+    }
+
+    private static String format(String endpoint, Map<String, Object> params) {
+        return params.entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(String.valueOf(e.getValue())))
+                .collect(Collectors.joining("&", endpoint + "?", ""));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
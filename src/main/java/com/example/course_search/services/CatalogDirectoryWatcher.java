@@ -0,0 +1,306 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.CatalogChangeResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ingests catalog files dropped into {@code course-search.ingest.directory},
+ * when {@code course-search.ingest.enabled} is set. A {@link WatchService}
+ * reports new and changed files; a file is read once it has been quiet for
+ * {@code debounce}, so one still being copied is not read half way.
+ * <p>
+ * Files hold full courses: a JSON array ({@code .json}), one course per line
+ * ({@code .ndjson}, {@code .jsonl}) or CSV with a header row of field names
+ * ({@code .csv}). They are read as a stream, one batch at a time; each batch
+ * is compared with the indexed courses, archived ones included, and only new
+ * or changed ones are sent to {@link CatalogWriter}. Size and modification time of every ingested
+ * file are kept in a checkpoint file, so a restart does not read unchanged
+ * files again. A file is retried after another {@code debounce} when
+ * Elasticsearch could not be reached or a reindex was running.
+ */
+@Component
+@Order(DataIndexer.ORDER + 2)
+public class CatalogDirectoryWatcher implements ApplicationRunner {
+
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CatalogWriter catalogWriter;
+    private final CourseSearchProperties.Ingest config;
+    private final int batchSize;
+    private final Path checkpointFile;
+
+    private final Map<String, FileStamp> checkpoint = new ConcurrentHashMap<>();
+    // Files with events, by the System.nanoTime() of their latest one
+    private final Map<Path, Long> pending = new HashMap<>();
+    private Thread watcher;
+
+    public CatalogDirectoryWatcher(ObjectMapper objectMapper, ElasticsearchOperations elasticsearchOperations,
+                                   CatalogWriter catalogWriter, CourseSearchProperties properties) {
+        this.objectMapper = objectMapper;
+        this.csvMapper = ParallelCatalogParser.csvMapper();
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.catalogWriter = catalogWriter;
+        this.config = properties.getIngest();
+        this.batchSize = Math.max(1, properties.getCatalog().getBatchSize());
+        this.checkpointFile = config.getCheckpoint() != null
+                ? config.getCheckpoint() : config.getDirectory().resolve(".ingested.json");
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(config.getDirectory());
+        loadCheckpoint();
+        watcher = new Thread(this::watch, "catalog-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("Watching " + config.getDirectory().toAbsolutePath() + " for catalog files");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * Forgets every ingested file, so all of them are read again; called when
+     * the index is reloaded from scratch.
+     */
+    public void resetCheckpoint() {
+        checkpoint.clear();
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            System.err.println("Could not delete ingest checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        Path directory = config.getDirectory();
+        long debounce = config.getDebounce().toNanos();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            // Files dropped while the service was down; unchanged ones are skipped by the checkpoint
+            scan(directory);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(Math.max(1, config.getDebounce().toMillis()), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan(directory);
+                        } else if (event.context() instanceof Path name) {
+                            Path file = directory.resolve(name);
+                            if (isCatalogFile(file)) {
+                                pending.put(file, System.nanoTime());
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+                ingestSettled(debounce);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Catalog directory watch stopped: " + e.getMessage());
+        }
+    }
+
+    private void scan(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(CatalogDirectoryWatcher::isCatalogFile).forEach(file -> pending.put(file, System.nanoTime()));
+        }
+    }
+
+    private void ingestSettled(long debounceNanos) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> files = pending.entrySet().iterator();
+        List<Path> retry = new ArrayList<>();
+        while (files.hasNext()) {
+            Map.Entry<Path, Long> file = files.next();
+            if (now - file.getValue() < debounceNanos) {
+                continue;
+            }
+            files.remove();
+            try {
+                if (!ingest(file.getKey())) {
+                    retry.add(file.getKey());
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not ingest " + file.getKey().getFileName() + ", retrying: " + e.getMessage());
+                retry.add(file.getKey());
+            }
+        }
+        retry.forEach(file -> pending.put(file, System.nanoTime()));
+    }
+
+    /**
+     * Applies the changes in one file unless the checkpoint says it was
+     * ingested already. Returns {@code false} when it should be retried.
+     */
+    boolean ingest(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return true;
+        }
+        String name = file.getFileName().toString();
+        FileStamp stamp = new FileStamp(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        if (stamp.equals(checkpoint.get(name))) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        int read = 0;
+        int changed = 0;
+        int rejected = 0;
+        try (InputStream in = Files.newInputStream(file); MappingIterator<CourseDocument> courses = open(name, in)) {
+            List<CourseDocument> batch = new ArrayList<>(batchSize);
+            while (courses.hasNextValue()) {
+                batch.add(courses.nextValue());
+                read++;
+                if (batch.size() == batchSize || !courses.hasNextValue()) {
+                    List<CourseDocument> changes = diff(batch);
+                    List<CatalogChangeResult> results = catalogWriter.upsertAll(changes, config.getRefresh());
+                    if (results.stream().anyMatch(result -> result.getStatus() == 503)) {
+                        System.err.println("Search backend unavailable while ingesting " + name + ", retrying");
+                        return false;
+                    }
+                    if (results.stream().anyMatch(result -> result.getStatus() == 409)) {
+                        System.out.println("Reindex running while ingesting " + name + ", retrying");
+                        return false;
+                    }
+                    changed += changes.size();
+                    rejected += (int) results.stream().filter(result -> result.getError() != null).count();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Malformed until the file changes again; retrying the same bytes would not help
+            System.err.println("Skipping " + name + " after " + read + " courses: " + e.getOriginalMessage());
+        }
+
+        checkpoint.put(name, stamp);
+        saveCheckpoint();
+        System.out.println("Ingested " + name + ": " + read + " courses read, " + (changed - rejected) + " changed, "
+                + rejected + " rejected in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return true;
+    }
+
+    private MappingIterator<CourseDocument> open(String name, InputStream in) throws IOException {
+        if (name.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return csvMapper.readerFor(CourseDocument.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(in);
+        }
+        // Reads both a top-level array and whitespace-separated values
+        return objectMapper.readerFor(CourseDocument.class).readValues(in);
+    }
+
+    // The courses of batch that are new or differ from the indexed version; the last one wins for repeated ids
+    private List<CourseDocument> diff(List<CourseDocument> batch) {
+        Map<String, CourseDocument> byId = new LinkedHashMap<>();
+        List<CourseDocument> withoutId = new ArrayList<>();
+        for (CourseDocument course : batch) {
+            if (course.getId() == null || course.getId().isBlank()) {
+                // Sent anyway, so the writer reports it
+                withoutId.add(course);
+            } else {
+                byId.put(course.getId(), course);
+            }
+        }
+        Map<String, CourseDocument> current = new HashMap<>();
+        if (!byId.isEmpty()) {
+            // A file still listing past courses must not bring them back from the archive unchanged
+            List<String> ids = List.copyOf(byId.keySet());
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(q -> q.ids(i -> i.values(ids)))
+                    .withPageable(PageRequest.of(0, 2 * ids.size()))
+                    .build();
+            elasticsearchOperations.search(query, CourseDocument.class, IndexCoordinates.of(CourseIndexLayout.HISTORICAL))
+                    .getSearchHits()
+                    .forEach(hit -> {
+                        // Briefly in both while being archived; the active copy is the current one
+                        if (!CourseIndexLayout.ARCHIVE.equals(hit.getIndex()) || !current.containsKey(hit.getId())) {
+                            current.put(hit.getId(), hit.getContent());
+                        }
+                    });
+        }
+        // Equality leaves out click popularity and suggestion weight, which only the index maintains
+        List<CourseDocument> changes = byId.values().stream()
+                .filter(course -> !Objects.equals(course, current.get(course.getId())))
+                .collect(Collectors.toCollection(ArrayList::new));
+        changes.addAll(withoutId);
+        return changes;
+    }
+
+    private void loadCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return;
+        }
+        try {
+            checkpoint.putAll(objectMapper.readValue(checkpointFile.toFile(), new TypeReference<Map<String, FileStamp>>() {}));
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable ingest checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    // Written to a temporary file and moved, so a crash never leaves a truncated checkpoint
+    private void saveCheckpoint() throws IOException {
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        objectMapper.writeValue(temporary.toFile(), new HashMap<>(checkpoint));
+        Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isCatalogFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return !name.startsWith(".")
+                && (name.endsWith(".json") || name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".csv"));
+    }
+
+    /** What identifies an ingested version of a file. */
+    record FileStamp(long size, long lastModified) {
+    }
+}
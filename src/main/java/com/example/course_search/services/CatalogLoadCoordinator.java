@@ -0,0 +1,285 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Makes sure one instance of the service loads a catalog version while the
+ * others wait for it, through the {@value #LEASE} lease in a
+ * {@link LeaseStore}. The holder renews the lease every third of
+ * {@code course-search.load-lease.ttl}; a holder that dies stops renewing,
+ * and once its lease expires another instance takes over. Instances that
+ * find the version they would load already loaded skip the load, so a
+ * rolling deploy loads each catalog version once. Within an instance, the
+ * startup load and a reindex job never hold the lease at the same time
+ * either, whether or not the lease is enabled. Periodic maintenance that
+ * one instance should do for all of them {@link #claim claims} a lease of
+ * its own in the same store.
+ * <p>
+ * Expiry compares wall clocks of different hosts, so the TTL has to be
+ * well above their skew. With {@code course-search.load-lease.enabled}
+ * off, every instance loads.
+ */
+@Component
+public class CatalogLoadCoordinator {
+
+    static final String LEASE = "catalog-load";
+
+    private final LeaseStore leaseStore;
+    private final CourseSearchProperties.LoadLease config;
+    private final Clock clock;
+    private final String owner;
+    // Set while this instance loads, from acquiring the lease until it is ended
+    private final AtomicBoolean held = new AtomicBoolean();
+    private ScheduledExecutorService renewer;
+
+    @Autowired
+    public CatalogLoadCoordinator(LeaseStore leaseStore, CourseSearchProperties properties) {
+        this(leaseStore, properties, Clock.systemUTC(),
+                ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    CatalogLoadCoordinator(LeaseStore leaseStore, CourseSearchProperties properties, Clock clock, String owner) {
+        this.leaseStore = leaseStore;
+        this.config = properties.getLoadLease();
+        this.clock = clock;
+        this.owner = owner;
+    }
+
+    public enum Decision {
+        /** This instance holds the lease and loads; {@link #loaded} or {@link #release} it afterwards. */
+        LOAD,
+        /** The version is loaded already. */
+        SKIP
+    }
+
+    /**
+     * Waits while another instance loads, then takes the lease unless
+     * {@code catalogVersion} has been loaded in the meantime and
+     * {@code inPlace} confirms that the load is still there.
+     */
+    public Decision acquire(String catalogVersion, BooleanSupplier inPlace) throws IOException, InterruptedException {
+        while (!held.compareAndSet(false, true)) {
+            Thread.sleep(config.getPollInterval().toMillis());
+        }
+        if (!config.isEnabled()) {
+            return Decision.LOAD;
+        }
+        boolean taken = false;
+        try {
+            boolean announced = false;
+            while (true) {
+                Optional<LeaseStore.Versioned> current = leaseStore.read(LEASE);
+                if (current.isPresent()) {
+                    LeaseStore.Lease lease = current.get().lease();
+                    if (lease.state() == LeaseStore.State.LOADED && catalogVersion.equals(lease.catalogVersion())
+                            && inPlace.getAsBoolean()) {
+                        return Decision.SKIP;
+                    }
+                    if (isHeld(lease)) {
+                        if (!announced) {
+                            System.out.println("Waiting for " + lease.owner() + " to load the catalog");
+                            announced = true;
+                        }
+                        Thread.sleep(config.getPollInterval().toMillis());
+                        continue;
+                    }
+                }
+                if (take(current, catalogVersion)) {
+                    taken = true;
+                    return Decision.LOAD;
+                }
+                // Another instance wrote first; look again
+            }
+        } finally {
+            if (!taken) {
+                held.set(false);
+            }
+        }
+    }
+
+    /**
+     * Takes the lease to load {@code catalogVersion} whatever was loaded
+     * before, without waiting: {@code false} while any instance, this one
+     * included, holds it.
+     */
+    public boolean tryAcquire(String catalogVersion) throws IOException {
+        if (!held.compareAndSet(false, true)) {
+            return false;
+        }
+        if (!config.isEnabled()) {
+            return true;
+        }
+        boolean taken = false;
+        try {
+            while (true) {
+                Optional<LeaseStore.Versioned> current = leaseStore.read(LEASE);
+                if (current.isPresent() && isHeld(current.get().lease())) {
+                    return false;
+                }
+                if (take(current, catalogVersion)) {
+                    taken = true;
+                    return true;
+                }
+            }
+        } finally {
+            if (!taken) {
+                held.set(false);
+            }
+        }
+    }
+
+    /**
+     * Whether a catalog load or reindex job is running on any instance.
+     * Catalog changes written to the active index meanwhile would miss the
+     * staging index it loads; with the lease disabled, only this instance's
+     * loads are known.
+     */
+    public boolean isLoading() throws IOException {
+        if (held.get()) {
+            return true;
+        }
+        if (!config.isEnabled()) {
+            return false;
+        }
+        return leaseStore.read(LEASE).map(current -> isHeld(current.lease())).orElse(false);
+    }
+
+    /**
+     * Claims the {@code name} lease for {@code period}, so that of several
+     * instances running a task every {@code period}, one runs it each time:
+     * {@code false} while another instance's claim has not expired. The
+     * claim is not renewed or given up; it simply lapses.
+     */
+    public boolean claim(String name, Duration period) throws IOException {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        while (true) {
+            Optional<LeaseStore.Versioned> current = leaseStore.read(name);
+            if (current.isPresent() && !owner.equals(current.get().lease().owner())
+                    && current.get().lease().expiresAt() > clock.millis()) {
+                return false;
+            }
+            LeaseStore.Lease lease = new LeaseStore.Lease(owner, null, LeaseStore.State.LOADING,
+                    clock.millis() + period.toMillis());
+            boolean taken = current.isPresent()
+                    ? leaseStore.replace(name, lease, current.get().version())
+                    : leaseStore.create(name, lease);
+            if (taken) {
+                return true;
+            }
+            // Another instance wrote first; look again
+        }
+    }
+
+    /** Records {@code catalogVersion} as loaded and gives up the lease. */
+    public void loaded(String catalogVersion) throws IOException {
+        end(catalogVersion, LeaseStore.State.LOADED);
+    }
+
+    /**
+     * Gives up the lease after a load that did not finish, so a waiting
+     * instance loads instead. Never throws, so it can run from a
+     * {@code finally} block; an unreleased lease still expires.
+     */
+    public void release() {
+        try {
+            end(null, LeaseStore.State.RELEASED);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not release the catalog load lease: " + e.getMessage());
+        }
+    }
+
+    // Also when this instance is the owner: its lease is only unheld once ended or expired
+    private boolean isHeld(LeaseStore.Lease lease) {
+        return lease.state() == LeaseStore.State.LOADING && lease.expiresAt() > clock.millis();
+    }
+
+    private boolean take(Optional<LeaseStore.Versioned> current, String catalogVersion) throws IOException {
+        LeaseStore.Lease lease = new LeaseStore.Lease(owner, catalogVersion, LeaseStore.State.LOADING, expiry());
+        boolean taken = current.isPresent()
+                ? leaseStore.replace(LEASE, lease, current.get().version())
+                : leaseStore.create(LEASE, lease);
+        if (taken) {
+            startRenewing();
+        }
+        return taken;
+    }
+
+    private synchronized void end(String catalogVersion, LeaseStore.State state) throws IOException {
+        try {
+            if (config.isEnabled()) {
+                endLease(catalogVersion, state);
+            }
+        } finally {
+            held.set(false);
+        }
+    }
+
+    private void endLease(String catalogVersion, LeaseStore.State state) throws IOException {
+        stopRenewing();
+        Optional<LeaseStore.Versioned> current = leaseStore.read(LEASE);
+        if (current.isEmpty() || !owner.equals(current.get().lease().owner())
+                || current.get().lease().state() != LeaseStore.State.LOADING) {
+            System.err.println("The catalog load lease was taken over before the load ended");
+            return;
+        }
+        String version = catalogVersion != null ? catalogVersion : current.get().lease().catalogVersion();
+        if (!leaseStore.replace(LEASE, new LeaseStore.Lease(owner, version, state, clock.millis()),
+                current.get().version())) {
+            System.err.println("The catalog load lease was taken over before the load ended");
+        }
+    }
+
+    private synchronized void startRenewing() {
+        stopRenewing();
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, config.getTtl().toMillis() / 3);
+        renewer.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopRenewing() {
+        if (renewer != null) {
+            renewer.shutdownNow();
+            renewer = null;
+        }
+    }
+
+    private synchronized void renew() {
+        try {
+            Optional<LeaseStore.Versioned> current = leaseStore.read(LEASE);
+            if (current.isEmpty() || !owner.equals(current.get().lease().owner())
+                    || current.get().lease().state() != LeaseStore.State.LOADING) {
+                return;
+            }
+            LeaseStore.Lease lease = current.get().lease();
+            leaseStore.replace(LEASE, new LeaseStore.Lease(owner, lease.catalogVersion(), lease.state(), expiry()),
+                    current.get().version());
+        } catch (IOException | RuntimeException e) {
+            // Retried on the next period; the lease only lapses after a whole TTL without renewal
+            System.err.println("Could not renew the catalog load lease: " + e.getMessage());
+        }
+    }
+
+    private long expiry() {
+        return clock.millis() + config.getTtl().toMillis();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * The full catalog loaded at startup and by reindex jobs: the bundled
+ * {@code sample-courses.json}, or the file set as
+ * {@code course-search.bulk-load.source}. JSON arrays are read when the
+ * source is opened, so a malformed file fails before any index is touched;
+ * NDJSON and CSV files are streamed through {@link ParallelCatalogParser}.
+ */
+@Component
+public class CatalogSource {
+
+    private final ObjectMapper objectMapper;
+    private final ParallelCatalogParser parallelCatalogParser;
+    private final CourseSearchProperties.BulkLoad config;
+
+    public CatalogSource(ObjectMapper objectMapper, ParallelCatalogParser parallelCatalogParser,
+                         CourseSearchProperties properties) {
+        this.objectMapper = objectMapper;
+        this.parallelCatalogParser = parallelCatalogParser;
+        this.config = properties.getBulkLoad();
+    }
+
+    public Loader open() throws IOException {
+        Path source = config.getSource();
+        if (source != null && ParallelCatalogParser.isSplittable(source)) {
+            // Hashing a multi-gigabyte file would take about as long as parsing it
+            long size = Files.size(source);
+            String version = source.toAbsolutePath() + ":" + size + ":" + Files.getLastModifiedTime(source).toMillis();
+            return new Loader(source, size, null, version);
+        }
+        Resource resource = source != null
+                ? new FileSystemResource(source) : new ClassPathResource("sample-courses.json");
+        // A JSON array is held in memory in full anyway
+        byte[] content;
+        try (InputStream inputStream = resource.getInputStream()) {
+            content = inputStream.readAllBytes();
+        }
+        List<CourseDocument> courses = objectMapper.readValue(content, new TypeReference<>() {});
+        String version = "sha256:" + HexFormat.of().formatHex(sha256().digest(content));
+        return new Loader(source, content.length, courses, version);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** An opened catalog; {@link #load} hands its courses out in batches. */
+    public final class Loader {
+
+        private final Path file;
+        private final long bytes;
+        private final List<CourseDocument> courses;
+        private final String version;
+
+        private Loader(Path file, long bytes, List<CourseDocument> courses, String version) {
+            this.file = file;
+            this.bytes = bytes;
+            this.courses = courses;
+            this.version = version;
+        }
+
+        /**
+         * Identifies this catalog across instances: a content hash of JSON
+         * arrays, path, size and modification time of streamed files.
+         */
+        public String version() {
+            return version;
+        }
+
+        /** Size of the catalog file. */
+        public long bytes() {
+            return bytes;
+        }
+
+        /**
+         * Passes every course, with its suggestion filled in, to {@code sink}
+         * in batches of at most {@code batchSize}, and the bytes each batch
+         * accounts for to {@code progress}. Returns the number of courses.
+         */
+        public long load(int batchSize, Consumer<List<CourseDocument>> sink, LongConsumer progress) throws IOException {
+            Consumer<List<CourseDocument>> withSuggestions = batch -> {
+                batch.forEach(CourseDocument::setSuggestFromTitle);
+                sink.accept(batch);
+            };
+            if (courses == null) {
+                ParallelCatalogParser.Report report = parallelCatalogParser.parse(file, batchSize, withSuggestions, progress);
+                System.out.println("Parsed " + file.getFileName() + " in " + report.chunks() + " chunks: "
+                        + report.courses() + " courses, " + report.rejected() + " lines rejected");
+                return report.courses();
+            }
+            // A JSON array has no chunks; bytes are accounted for in proportion to the courses delivered
+            for (int from = 0; from < courses.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, courses.size());
+                withSuggestions.accept(courses.subList(from, to));
+                progress.accept(bytes * to / courses.size() - bytes * from / courses.size());
+            }
+            return courses.size();
+        }
+    }
+}
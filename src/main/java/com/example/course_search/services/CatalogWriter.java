@@ -0,0 +1,484 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.CatalogChange;
+import com.example.course_search.dto.CatalogChangeResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a stream of catalog changes (NDJSON, one {@link CatalogChange} per
+ * line) to the {@code courses} index. Lines are grouped into {@code _bulk}
+ * requests of {@code course-search.catalog.batch-size}; up to
+ * {@code max-in-flight} of them run at once and reading the input waits while
+ * all are busy. One {@link CatalogChangeResult} per line is written back, in
+ * input order, as soon as its batch is done.
+ * <p>
+ * An upsert replaces the course but keeps its click popularity. Partial
+ * updates may change any field except {@code id} and {@code title}, which
+ * feeds the suggestions and is changed with an upsert; they cannot set a
+ * field to null, which an upsert without it does.
+ * <p>
+ * With routing by category on, each batch first looks up where its courses
+ * currently live and their popularity; an upsert that changes a course's
+ * category also deletes the copy on the old shard and carries its
+ * popularity over to the new one, and partial updates may not change the
+ * category.
+ * <p>
+ * Upserts and deletes also remove the course's copy in the archive, which
+ * {@code courses-all} would otherwise still find; an upsert of an archived
+ * course brings it back into the active index with its popularity. Partial
+ * updates only reach active courses and answer 404 for archived ones.
+ * <p>
+ * While any instance loads the catalog into a staging index, changes are
+ * rejected with status 409: the staging index would not have them.
+ */
+@Component
+public class CatalogWriter {
+
+    private static final String INDEX = CourseDocument.class.getAnnotation(Document.class).indexName();
+
+    static final String UPSERT_SCRIPT = """
+            def popularity = ctx._source.popularity;
+            if (popularity == null) {
+                popularity = params.popularity;
+            }
+            ctx._source.clear();
+            ctx._source.putAll(params.doc);
+            if (popularity != null) {
+                ctx._source.popularity = popularity;
+                if (ctx._source.suggest instanceof Map) {
+                    ctx._source.suggest.weight = (int) Math.min(((Number) popularity).longValue(), Integer.MAX_VALUE);
+                }
+            }
+            """;
+
+    static final Set<String> UPDATABLE_FIELDS = FieldProjection.FIELDS.stream()
+            .filter(field -> !field.equals("id") && !field.equals("title"))
+            .collect(Collectors.toUnmodifiableSet());
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchConverter elasticsearchConverter;
+    private final ObjectMapper objectMapper;
+    private final IndexGeneration indexGeneration;
+    private final CourseRouting courseRouting;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final CourseSearchProperties.Catalog config;
+    private final ExecutorService bulkExecutor;
+
+    public CatalogWriter(ElasticsearchClient elasticsearchClient, ElasticsearchConverter elasticsearchConverter,
+                         ObjectMapper objectMapper, IndexGeneration indexGeneration,
+                         CourseRouting courseRouting, CatalogLoadCoordinator catalogLoadCoordinator,
+                         CourseSearchProperties properties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchConverter = elasticsearchConverter;
+        this.objectMapper = objectMapper;
+        this.indexGeneration = indexGeneration;
+        this.courseRouting = courseRouting;
+        this.catalogLoadCoordinator = catalogLoadCoordinator;
+        this.config = properties.getCatalog();
+        AtomicInteger threads = new AtomicInteger();
+        this.bulkExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-bulk-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Applies every change in {@code changes} and writes one result line per
+     * non-blank input line to {@code results}. Returns the number of changes
+     * that failed.
+     */
+    public int apply(InputStream changes, OutputStream results, CourseSearchProperties.Catalog.Refresh refresh)
+            throws IOException {
+        Semaphore permits = new Semaphore(Math.max(1, config.getMaxInFlight()));
+        Deque<InFlight> inFlight = new ArrayDeque<>();
+        int batchSize = Math.max(1, config.getBatchSize());
+        int failed = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(changes, StandardCharsets.UTF_8));
+        List<Item> batch = new ArrayList<>(batchSize);
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(parse(lineNumber, line));
+                if (batch.size() == batchSize) {
+                    submit(batch, refresh, permits, inFlight);
+                    batch = new ArrayList<>(batchSize);
+                    failed += writeCompleted(inFlight, results, false);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch, refresh, permits, inFlight);
+            }
+            failed += writeCompleted(inFlight, results, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inFlight.forEach(pending -> pending.results().cancel(true));
+            throw new IOException("Interrupted while applying catalog changes", e);
+        }
+        return failed;
+    }
+
+    /**
+     * Upserts already parsed courses on the calling thread, in batches of
+     * {@code course-search.catalog.batch-size}, exactly as upsert lines of a
+     * change stream. Returns one result per course; {@code line} is its
+     * position in {@code courses}, from 1.
+     */
+    public List<CatalogChangeResult> upsertAll(List<CourseDocument> courses,
+                                               CourseSearchProperties.Catalog.Refresh refresh) {
+        int batchSize = Math.max(1, config.getBatchSize());
+        List<CatalogChangeResult> results = new ArrayList<>(courses.size());
+        List<Item> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < courses.size(); i++) {
+            CourseDocument course = courses.get(i);
+            int line = i + 1;
+            if (course.getId() == null || course.getId().isBlank()) {
+                batch.add(invalid(line, "upsert", null, "Missing course id"));
+            } else {
+                try {
+                    batch.add(upsert(line, course.getId(), course));
+                } catch (IllegalArgumentException e) {
+                    batch.add(invalid(line, "upsert", course.getId(), e.getMessage()));
+                }
+            }
+            if (batch.size() == batchSize || i == courses.size() - 1) {
+                results.addAll(send(batch, refresh));
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bulkExecutor.shutdownNow();
+    }
+
+    private void submit(List<Item> batch, CourseSearchProperties.Catalog.Refresh refresh, Semaphore permits,
+                        Deque<InFlight> inFlight) throws InterruptedException {
+        permits.acquire();
+        try {
+            inFlight.add(new InFlight(batch, bulkExecutor.submit(() -> {
+                try {
+                    return send(batch, refresh);
+                } finally {
+                    permits.release();
+                }
+            })));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Writes the results of finished batches at the head of the queue; all of them when waitForAll
+    private int writeCompleted(Deque<InFlight> inFlight, OutputStream results,
+                               boolean waitForAll) throws IOException, InterruptedException {
+        int failed = 0;
+        while (!inFlight.isEmpty() && (waitForAll || inFlight.peek().results().isDone())) {
+            InFlight batch = inFlight.poll();
+            List<CatalogChangeResult> batchResults;
+            try {
+                batchResults = batch.results().get();
+            } catch (ExecutionException e) {
+                // Earlier results are already streamed; fail this batch line by line rather than the response
+                System.err.println("Catalog batch failed unexpectedly: " + e.getCause());
+                batchResults = batch.items().stream()
+                        .map(item -> item.operation() == null ? item.result()
+                                : failure(item, 500, "Catalog batch failed unexpectedly: " + e.getCause()))
+                        .toList();
+                // The bulk request may have gone through before the failure
+                indexGeneration.advance();
+            }
+            for (CatalogChangeResult result : batchResults) {
+                if (result.getError() != null) {
+                    failed++;
+                }
+                results.write(objectMapper.writeValueAsBytes(result));
+                results.write('\n');
+            }
+            results.flush();
+        }
+        return failed;
+    }
+
+    private List<CatalogChangeResult> send(List<Item> batch, CourseSearchProperties.Catalog.Refresh refresh) {
+        List<Item> valid = batch.stream().filter(item -> item.operation() != null).toList();
+        List<CatalogChangeResult> results = new ArrayList<>(batch.size());
+        if (valid.isEmpty()) {
+            batch.forEach(item -> results.add(item.result()));
+            return results;
+        }
+        boolean loading;
+        try {
+            loading = catalogLoadCoordinator.isLoading();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read the catalog load lease: " + e.getMessage());
+            batch.forEach(item -> results.add(item.operation() == null ? item.result()
+                    : failure(item, 503, "Search backend unavailable: " + e.getMessage())));
+            return results;
+        }
+        if (loading) {
+            batch.forEach(item -> results.add(item.operation() == null ? item.result()
+                    : failure(item, 409, "A reindex is running; retry once it has finished")));
+            return results;
+        }
+
+        BulkRequest.Builder request = new BulkRequest.Builder().index(INDEX);
+        if (refresh == CourseSearchProperties.Catalog.Refresh.WAIT_FOR) {
+            request.refresh(Refresh.WaitFor);
+        } else if (refresh == CourseSearchProperties.Catalog.Refresh.IMMEDIATE) {
+            request.refresh(Refresh.True);
+        }
+
+        List<BulkResponseItem> responseItems;
+        // Position of each valid item's operation; a category change adds a delete before it
+        int[] positions = new int[valid.size()];
+        // Position of the delete of each valid item's archived copy, -1 without one
+        int[] archivePositions = new int[valid.size()];
+        try {
+            Map<String, CourseRouting.Location> located = courseRouting.isEnabled()
+                    ? courseRouting.locate(valid.stream().map(Item::id).collect(Collectors.toSet()), List.of("popularity"))
+                    : Map.of();
+            Map<String, CourseRouting.Location> archived = courseRouting.locate(CourseIndexLayout.ARCHIVE,
+                    valid.stream().filter(item -> !item.op().equals("update")).map(Item::id).collect(Collectors.toSet()),
+                    List.of("popularity"));
+            List<BulkOperation> operations = new ArrayList<>(valid.size());
+            for (int i = 0; i < valid.size(); i++) {
+                Item item = valid.get(i);
+                CourseRouting.Location location = located.get(item.id());
+                String current = location == null ? null : location.routing();
+                String routing = item.op().equals("upsert") ? courseRouting.of(item.category()) : current;
+                Object carried = null;
+                if (location != null && !Objects.equals(current, routing)) {
+                    // Moving to another category's shard; the old copy would otherwise stay searchable
+                    operations.add(BulkOperation.of(b -> b.delete(d -> d.id(item.id()).routing(current))));
+                    carried = location.source().get("popularity");
+                }
+                CourseRouting.Location archivedCopy = archived.get(item.id());
+                if (location == null && archivedCopy != null) {
+                    carried = archivedCopy.source().get("popularity");
+                }
+                positions[i] = operations.size();
+                operations.add(item.operation().apply(routing, carried));
+                archivePositions[i] = -1;
+                if (archivedCopy != null) {
+                    // After the change itself, so a failed upsert leaves the archived course rather than none
+                    archivePositions[i] = operations.size();
+                    operations.add(BulkOperation.of(b -> b.delete(d -> d
+                            .index(CourseIndexLayout.ARCHIVE).id(item.id()).routing(archivedCopy.routing()))));
+                }
+            }
+            BulkResponse response = elasticsearchClient.bulk(request.operations(operations).build());
+            responseItems = response.items();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Catalog bulk request failed: " + e.getMessage());
+            batch.forEach(item -> results.add(item.operation() == null ? item.result()
+                    : failure(item, 503, "Search backend unavailable: " + e.getMessage())));
+            return results;
+        }
+
+        boolean changed = false;
+        int next = 0;
+        for (Item item : batch) {
+            if (item.operation() == null) {
+                results.add(item.result());
+                continue;
+            }
+            BulkResponseItem responseItem = responseItems.get(positions[next]);
+            BulkResponseItem archiveItem = archivePositions[next] < 0 ? null : responseItems.get(archivePositions[next]);
+            next++;
+            ErrorCause error = responseItem.error();
+            if (error == null && archiveItem != null && archiveItem.error() != null) {
+                // The change is applied, but courses-all still finds the archived copy; a retry removes it
+                error = archiveItem.error();
+                responseItem = archiveItem;
+                changed = true;
+            }
+            if (error != null) {
+                results.add(failure(item, responseItem.status(), error.type() + ": " + error.reason()));
+            } else {
+                changed = true;
+                // A delete of a course that was only in the archive
+                int status = responseItem.status() == 404 && archiveItem != null
+                        ? archiveItem.status() : responseItem.status();
+                results.add(CatalogChangeResult.builder()
+                        .line(item.line())
+                        .op(item.op())
+                        .id(item.id())
+                        .status(status)
+                        .build());
+            }
+        }
+        // Cached results and ETags of the previous catalog are no longer valid
+        if (changed) {
+            indexGeneration.advance();
+        }
+        return results;
+    }
+
+    private Item parse(int line, String json) {
+        CatalogChange change;
+        try {
+            change = objectMapper.readValue(json, CatalogChange.class);
+        } catch (JsonProcessingException e) {
+            return invalid(line, null, null, "Malformed change: " + e.getOriginalMessage());
+        }
+
+        String op = change.getOp();
+        String id = change.getId() != null ? change.getId()
+                : change.getCourse() != null ? change.getCourse().getId() : null;
+        if (id == null || id.isBlank()) {
+            return invalid(line, op, null, "Missing course id");
+        }
+        if (op == null) {
+            return invalid(line, null, id, "Missing op; expected upsert, update or delete");
+        }
+
+        try {
+            return switch (op) {
+                case "upsert" -> upsert(line, id, change.getCourse());
+                case "update" -> update(line, id, change.getFields());
+                case "delete" -> new Item(line, op, id, null,
+                        (routing, popularity) -> BulkOperation.of(b -> b.delete(d -> d.id(id).routing(routing))), null);
+                default -> invalid(line, op, id, "Unknown op '" + op + "'; expected upsert, update or delete");
+            };
+        } catch (IllegalArgumentException e) {
+            return invalid(line, op, id, e.getMessage());
+        }
+    }
+
+    private Item upsert(int line, String id, CourseDocument course) {
+        if (course == null) {
+            throw new IllegalArgumentException("An upsert needs the full course");
+        }
+        if (course.getId() != null && !course.getId().equals(id)) {
+            throw new IllegalArgumentException("Course id '" + course.getId() + "' does not match '" + id + "'");
+        }
+        course.setId(id);
+        course.setPopularity(null);
+        course.setSuggestFromTitle();
+        Map<String, Object> document = toSource(course);
+        BiFunction<String, Object, BulkOperation> operation = (routing, popularity) ->
+                BulkOperation.of(b -> b.update(u -> u
+                        .id(id)
+                        .routing(routing)
+                        .retryOnConflict(3)
+                        .action(a -> a
+                                .script(s -> {
+                                    s.source(UPSERT_SCRIPT).lang("painless").params("doc", JsonData.of(document));
+                                    // Popularity of the copy on the old shard, when the category moves the course
+                                    return popularity == null ? s : s.params("popularity", JsonData.of(popularity));
+                                })
+                                .scriptedUpsert(true)
+                                .upsert(Map.of()))));
+        return new Item(line, "upsert", id, course.getCategory(), operation, null);
+    }
+
+    private Item update(int line, String id, Map<String, Object> fields) {
+        if (fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("An update needs at least one field");
+        }
+        Set<String> rejected = new HashSet<>(fields.keySet());
+        rejected.removeAll(UPDATABLE_FIELDS);
+        if (!rejected.isEmpty()) {
+            throw new IllegalArgumentException("Fields cannot be updated: " + rejected.stream().sorted().toList());
+        }
+        List<String> nulls = fields.entrySet().stream()
+                .filter(field -> field.getValue() == null)
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        if (!nulls.isEmpty()) {
+            throw new IllegalArgumentException("Fields cannot be set to null: " + nulls
+                    + "; upsert the course without them instead");
+        }
+        if (courseRouting.isEnabled() && fields.containsKey("category")) {
+            throw new IllegalArgumentException("The category decides the shard of a course; change it with an upsert");
+        }
+        // Bind through the document class so values are validated and stored in the indexed format
+        Map<String, Object> source = toSource(objectMapper.convertValue(fields, CourseDocument.class));
+        source.keySet().retainAll(fields.keySet());
+        BiFunction<String, Object, BulkOperation> operation = (routing, popularity) ->
+                BulkOperation.of(b -> b.update(u -> u
+                        .id(id)
+                        .routing(routing)
+                        .retryOnConflict(3)
+                        .action(a -> a.doc(source))));
+        return new Item(line, "update", id, null, operation, null);
+    }
+
+    private Map<String, Object> toSource(CourseDocument course) {
+        org.springframework.data.elasticsearch.core.document.Document document =
+                org.springframework.data.elasticsearch.core.document.Document.create();
+        elasticsearchConverter.write(course, document);
+        return document;
+    }
+
+    private static Item invalid(int line, String op, String id, String error) {
+        return new Item(line, op, id, null, null, CatalogChangeResult.builder()
+                .line(line).op(op).id(id).status(400).error(error).build());
+    }
+
+    private static CatalogChangeResult failure(Item item, int status, String error) {
+        return CatalogChangeResult.builder()
+                .line(item.line()).op(item.op()).id(item.id()).status(status).error(error).build();
+    }
+
+    /**
+     * A parsed line: the bulk operation to send for a given routing and
+     * carried-over popularity, or the result of a line that was rejected.
+     * {@code category} is the one an upsert routes to.
+     */
+    private record Item(int line, String op, String id, String category,
+                        BiFunction<String, Object, BulkOperation> operation, CatalogChangeResult result) {
+    }
+
+    /** A submitted batch and its pending results. */
+    private record InFlight(List<Item> items, Future<List<CatalogChangeResult>> results) {
+    }
+}
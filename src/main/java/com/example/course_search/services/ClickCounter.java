@@ -0,0 +1,330 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.ScriptType;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts clicks on search results (by course id) and on suggestions (by
+ * title) in {@link LongAdder}s, so recording one is a lock-free increment on
+ * the request thread. Every {@code course-search.clicks.flush-interval} the
+ * counts are drained and added to each course's {@code popularity} and
+ * {@code suggest} weight with one scripted bulk update; the documents are
+ * changed in place, nothing is reindexed; a flush of more than
+ * {@code batch-size} courses is sent in several lookups and bulk updates.
+ * Suggestion titles are resolved to course ids at flush time. Only the cached
+ * suggestion prefixes of the courses whose popularity changed are dropped.
+ * <p>
+ * If Elasticsearch cannot be reached the drained counts are put back for the
+ * next flush. Clicks on courses that no longer exist are dropped. While any
+ * instance loads the catalog into a staging index nothing is flushed;
+ * {@link #copyPopularity} then carries the popularity over to it before it is
+ * promoted.
+ */
+@Component
+public class ClickCounter {
+
+    static final String SCRIPT = """
+            long popularity = (ctx._source.popularity == null ? 0L : ((Number) ctx._source.popularity).longValue())
+                    + ((Number) params.clicks).longValue();
+            ctx._source.popularity = popularity;
+            int weight = (int) Math.min(popularity, Integer.MAX_VALUE);
+            if (ctx._source.suggest instanceof Map) {
+                ctx._source.suggest.weight = weight;
+            } else if (ctx._source.title != null) {
+                ctx._source.suggest = ['input': [ctx._source.title], 'weight': weight];
+            }
+            """;
+
+    static final String COPY_SCRIPT = """
+            ctx._source.popularity = params.popularity;
+            if (ctx._source.suggest instanceof Map) {
+                ctx._source.suggest.weight = (int) Math.min(((Number) params.popularity).longValue(), Integer.MAX_VALUE);
+            }
+            """;
+
+    /** Courses looked up per clicked suggestion title; more with the exact same title is unusual. */
+    private static final int TITLE_MATCHES = 10;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final SuggestionPrefixCache prefixCache;
+    private final CourseRouting courseRouting;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final CourseSearchProperties.Clicks config;
+
+    private final Map<String, LongAdder> courseClicks = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> suggestionClicks = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public ClickCounter(ElasticsearchOperations elasticsearchOperations, SuggestionPrefixCache prefixCache,
+                        CourseRouting courseRouting, CatalogLoadCoordinator catalogLoadCoordinator,
+                        CourseSearchProperties properties) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.prefixCache = prefixCache;
+        this.courseRouting = courseRouting;
+        this.catalogLoadCoordinator = catalogLoadCoordinator;
+        this.config = properties.getClicks();
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "click-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.println("Click flush failed: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordResultClick(String courseId) {
+        increment(courseClicks, courseId);
+    }
+
+    public void recordSuggestionClick(String title) {
+        increment(suggestionClicks, title.trim().toLowerCase());
+    }
+
+    /** Clicks recorded since the last flush, by course id and by lowercase suggestion title. */
+    public long pending() {
+        return courseClicks.values().stream().mapToLong(LongAdder::sum).sum()
+                + suggestionClicks.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /** Writes the clicks counted so far to the index. */
+    public synchronized void flush() {
+        try {
+            if (catalogLoadCoordinator.isLoading()) {
+                // Counted on; written to the index that replaces the current one
+                return;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read the catalog load lease, retrying on next flush: " + e.getMessage());
+            return;
+        }
+        Map<String, Long> clicks = drain(courseClicks);
+        Map<String, Long> titleClicks = drain(suggestionClicks);
+        if (!titleClicks.isEmpty()) {
+            try {
+                resolve(titleClicks).forEach((id, count) -> clicks.merge(id, count, Long::sum));
+            } catch (RuntimeException e) {
+                System.err.println("Could not resolve clicked suggestions, retrying on next flush: " + e.getMessage());
+                restore(suggestionClicks, titleClicks);
+            }
+        }
+        List<String> ids = new ArrayList<>(clicks.keySet());
+        int batchSize = Math.max(1, config.getBatchSize());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            Map<String, Long> batch = new HashMap<>();
+            ids.subList(from, Math.min(from + batchSize, ids.size())).forEach(id -> batch.put(id, clicks.get(id)));
+            if (!flush(batch)) {
+                // Elasticsearch is unreachable; keep the rest for the next flush as well
+                ids.subList(from + batch.size(), ids.size()).forEach(id -> restore(courseClicks, id, clicks.get(id)));
+                return;
+            }
+        }
+    }
+
+    // Adds one batch of clicks; false if it could not be sent at all and was put back
+    private boolean flush(Map<String, Long> clicks) {
+        Map<String, CourseRouting.Location> courses;
+        try {
+            courses = courseRouting.locate(clicks.keySet(), List.of("title"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not look up clicked courses, retrying on next flush: " + e.getMessage());
+            restore(courseClicks, clicks);
+            return false;
+        }
+        // Not found on any shard: the course no longer exists
+        clicks.keySet().retainAll(courses.keySet());
+        if (clicks.isEmpty()) {
+            return true;
+        }
+
+        List<UpdateQuery> updates = clicks.entrySet().stream()
+                .map(entry -> UpdateQuery.builder(entry.getKey())
+                        .withRouting(courses.get(entry.getKey()).routing())
+                        .withScriptType(ScriptType.INLINE)
+                        .withScript(SCRIPT)
+                        .withLang("painless")
+                        .withParams(Map.of("clicks", entry.getValue()))
+                        .withRetryOnConflict(3)
+                        .build())
+                .toList();
+        Set<String> updated = new HashSet<>(clicks.keySet());
+        try {
+            elasticsearchOperations.bulkUpdate(updates, CourseDocument.class);
+        } catch (BulkFailureException e) {
+            updated.removeAll(e.getFailedDocuments().keySet());
+            Map<String, Long> retry = new HashMap<>();
+            e.getFailedDocuments().forEach((id, failure) -> {
+                if (failure.status() == null || failure.status() != 404) {
+                    retry.put(id, clicks.get(id));
+                }
+            });
+            System.err.println("Click flush: " + e.getFailedDocuments().size() + " of " + updates.size()
+                    + " updates failed, " + retry.size() + " kept for retry");
+            restore(courseClicks, retry);
+        } catch (RuntimeException e) {
+            System.err.println("Click flush failed, retrying on next flush: " + e.getMessage());
+            restore(courseClicks, clicks);
+            return false;
+        }
+        // Suggestion order changed for the prefixes of these titles only
+        prefixCache.invalidate(updated.stream()
+                .map(id -> courses.get(id).source().get("title"))
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .toList());
+        return true;
+    }
+
+    /**
+     * Sets the popularity of every course in {@code staging} to the one it
+     * has in the active index, for a staging index loaded from the catalog,
+     * which has none. Courses no longer in the catalog are skipped. Flushes
+     * are held off meanwhile, so every click flushed so far is copied.
+     */
+    public synchronized void copyPopularity(String staging) {
+        CriteriaQuery popular = new CriteriaQuery(new Criteria("popularity").greaterThan(0));
+        popular.addSourceFilter(new FetchSourceFilter(true, new String[]{"popularity"}, null));
+        popular.setPageable(PageRequest.of(0, Math.max(1, config.getBatchSize())));
+        IndexCoordinates target = IndexCoordinates.of(staging);
+        List<UpdateQuery> updates = new ArrayList<>();
+        try (SearchHitsIterator<CourseDocument> hits = elasticsearchOperations.searchForStream(
+                popular, CourseDocument.class, IndexCoordinates.of(CourseIndexLayout.ALIAS))) {
+            while (hits.hasNext()) {
+                SearchHit<CourseDocument> hit = hits.next();
+                updates.add(UpdateQuery.builder(hit.getId())
+                        .withRouting(hit.getRouting())
+                        .withScriptType(ScriptType.INLINE)
+                        .withScript(COPY_SCRIPT)
+                        .withLang("painless")
+                        .withParams(Map.of("popularity", hit.getContent().getPopularity()))
+                        .build());
+                if (updates.size() == popular.getPageable().getPageSize() || !hits.hasNext()) {
+                    copy(updates, target);
+                    updates = new ArrayList<>();
+                }
+            }
+        }
+    }
+
+    private void copy(List<UpdateQuery> updates, IndexCoordinates target) {
+        try {
+            elasticsearchOperations.bulkUpdate(updates, target);
+        } catch (BulkFailureException e) {
+            // 404: the course is no longer in the catalog
+            long failed = e.getFailedDocuments().values().stream()
+                    .filter(failure -> failure.status() == null || failure.status() != 404)
+                    .count();
+            if (failed > 0) {
+                throw new IllegalStateException("Could not copy the popularity of " + failed + " courses", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Final click flush failed, " + pending() + " clicks lost: " + e.getMessage());
+        }
+    }
+
+    private void increment(Map<String, LongAdder> counters, String key) {
+        LongAdder count = counters.get(key);
+        if (count == null) {
+            if (counters.size() >= config.getMaxPending()) {
+                return;
+            }
+            count = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    // Course ids of the documents whose title is exactly a clicked suggestion, with that suggestion's clicks
+    private Map<String, Long> resolve(Map<String, Long> titleClicks) {
+        List<String> titles = new ArrayList<>(titleClicks.keySet());
+        List<CriteriaQuery> queries = titles.stream()
+                .map(title -> {
+                    CriteriaQuery query = new CriteriaQuery(new Criteria("title").matchesAll(title));
+                    query.setPageable(PageRequest.of(0, TITLE_MATCHES));
+                    query.addSourceFilter(new FetchSourceFilter(true, new String[]{"title"}, null));
+                    return query;
+                })
+                .toList();
+        List<SearchHits<CourseDocument>> results = elasticsearchOperations.multiSearch(queries, CourseDocument.class);
+
+        Map<String, Long> clicks = new HashMap<>();
+        for (int i = 0; i < titles.size(); i++) {
+            String title = titles.get(i);
+            long count = titleClicks.get(title);
+            results.get(i).forEach(hit -> {
+                if (hit.getContent().getTitle() != null && hit.getContent().getTitle().equalsIgnoreCase(title)) {
+                    clicks.merge(hit.getId(), count, Long::sum);
+                }
+            });
+        }
+        return clicks;
+    }
+
+    private static Map<String, Long> drain(Map<String, LongAdder> counters) {
+        Map<String, Long> drained = new HashMap<>();
+        counters.forEach((key, count) -> {
+            long clicks = count.sumThenReset();
+            if (clicks > 0) {
+                drained.put(key, clicks);
+            } else {
+                // Idle since the last flush; a click racing with the removal may be lost, which is acceptable here
+                counters.remove(key, count);
+            }
+        });
+        return drained;
+    }
+
+    private static void restore(Map<String, LongAdder> counters, Map<String, Long> clicks) {
+        clicks.forEach((key, count) -> restore(counters, key, count));
+    }
+
+    private static void restore(Map<String, LongAdder> counters, String key, long count) {
+        counters.computeIfAbsent(key, k -> new LongAdder()).add(count);
+    }
+}
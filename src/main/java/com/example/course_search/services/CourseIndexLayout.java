@@ -0,0 +1,182 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.IndexInformation;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Physical layout of the catalog. Courses with an upcoming session live in
+ * {@value #ACTIVE}; {@link ArchiveMover} relocates expired ones to
+ * {@value #ARCHIVE}. Everything addressing {@link CourseDocument} goes
+ * through the {@value #ALIAS} alias, which points at the active index only
+ * (and is its write alias), so searches, suggestions and catalog writes
+ * never touch the archive. Historical searches use {@value #HISTORICAL},
+ * which spans both.
+ * <p>
+ * A reindex job loads the catalog into a staging index named after
+ * {@value #ACTIVE} and, once it is complete, {@link #promote promotes} it:
+ * both aliases move over in one atomic step and the previous active index
+ * is dropped, so the physical active index is whatever {@value #ALIAS}
+ * points at. While a staging index is being loaded, writes to the active
+ * index would be lost with it; writers hold off while
+ * {@link CatalogLoadCoordinator#isLoading} says a load is running on any
+ * instance.
+ */
+@Component
+public class CourseIndexLayout {
+
+    /** Same as {@link CourseDocument}'s {@code @Document} index name. */
+    public static final String ALIAS = "courses";
+    public static final String ACTIVE = "courses-active";
+    public static final String ARCHIVE = "courses-archive";
+    public static final String HISTORICAL = "courses-all";
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final int shards;
+
+    public CourseIndexLayout(ElasticsearchOperations elasticsearchOperations, CourseSearchProperties properties) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.shards = Math.max(1, properties.getRouting().getShards());
+    }
+
+    /**
+     * Creates whichever index is missing and points both aliases at them. A
+     * concrete {@value #ALIAS} index from before the split, or an index
+     * without the {@code nextSessionDate} index sort or with a different
+     * {@code course-search.routing.shards}, is dropped and rebuilt.
+     */
+    public void ensure() {
+        IndexOperations alias = indexOps(ALIAS);
+        // An alias resolves to the indices behind it; a concrete index only to itself
+        if (alias.exists() && alias.getAliasesForIndex(ALIAS).containsKey(ALIAS)) {
+            System.out.println("Replacing the courses index with active and archive indices");
+            alias.delete();
+        }
+        String active = activeIndex();
+        for (String name : List.of(active, ARCHIVE)) {
+            IndexOperations index = indexOps(name);
+            if (index.exists() && !hasCurrentSettings(index)) {
+                System.out.println("Recreating " + name + " with index sorting on nextSessionDate and "
+                        + shards + " shards");
+                index.delete();
+            }
+            if (!index.exists()) {
+                create(index);
+            }
+        }
+        // Adding an alias that is already there is a no-op
+        indexOps(active).alias(new AliasActions(
+                new AliasAction.Add(AliasActionParameters.builder()
+                        .withIndices(active).withAliases(ALIAS).withIsWriteIndex(true).build()),
+                new AliasAction.Add(AliasActionParameters.builder()
+                        .withIndices(active, ARCHIVE).withAliases(HISTORICAL).build())));
+    }
+
+    /**
+     * Whether the indices and aliases are as {@link #ensure} leaves them,
+     * checked without changing anything.
+     */
+    public boolean isCurrent() {
+        IndexOperations alias = indexOps(ALIAS);
+        if (!alias.exists() || alias.getAliasesForIndex(ALIAS).containsKey(ALIAS)) {
+            return false;
+        }
+        for (String name : List.of(activeIndex(), ARCHIVE)) {
+            IndexOperations index = indexOps(name);
+            if (!index.exists() || !hasCurrentSettings(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The index {@value #ALIAS} points at; {@value #ACTIVE} before the aliases exist. */
+    public String activeIndex() {
+        IndexOperations alias = indexOps(ALIAS);
+        if (alias.exists()) {
+            Set<String> indices = alias.getAliasesForIndex(ALIAS).keySet();
+            if (!indices.isEmpty() && !indices.contains(ALIAS)) {
+                return indices.iterator().next();
+            }
+        }
+        return ACTIVE;
+    }
+
+    /**
+     * Creates an empty staging index with the active index's settings and
+     * mapping, after dropping any left behind by an interrupted job.
+     */
+    public String createStaging() {
+        dropStaging();
+        String name = ACTIVE + "-" + System.currentTimeMillis();
+        create(indexOps(name));
+        return name;
+    }
+
+    /** Deletes every staging index that is not the active one. */
+    public void dropStaging() {
+        String active = activeIndex();
+        for (IndexInformation index : indexOps(ACTIVE + "-*").getInformation()) {
+            if (!index.getName().equals(active)) {
+                indexOps(index.getName()).delete();
+            }
+        }
+    }
+
+    /**
+     * Points both aliases at {@code staging} instead of the active index and
+     * deletes the latter, in one atomic alias update.
+     */
+    public void promote(String staging) {
+        String previous = activeIndex();
+        indexOps(staging).alias(new AliasActions(
+                new AliasAction.Add(AliasActionParameters.builder()
+                        .withIndices(staging).withAliases(ALIAS).withIsWriteIndex(true).build()),
+                new AliasAction.Add(AliasActionParameters.builder()
+                        .withIndices(staging).withAliases(HISTORICAL).build()),
+                new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(previous).build())));
+    }
+
+    /** Empties the archive, for a full catalog load that brings every course back into the active index. */
+    public void clearArchive() {
+        IndexOperations archive = indexOps(ARCHIVE);
+        if (archive.exists()) {
+            archive.delete();
+        }
+        create(archive);
+        indexOps(ARCHIVE).alias(new AliasActions(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(ARCHIVE).withAliases(HISTORICAL).build())));
+    }
+
+    // Index sorting and the shard count are fixed when an index is created
+    private boolean hasCurrentSettings(IndexOperations index) {
+        Settings current = index.getSettings().flatten();
+        return current.get("index.sort.field") != null
+                && String.valueOf(shards).equals(String.valueOf(current.get("index.number_of_shards")));
+    }
+
+    private void create(IndexOperations index) {
+        // Settings (including the index sort) and mapping come from the document class
+        IndexOperations type = elasticsearchOperations.indexOps(CourseDocument.class);
+        Settings settings = type.createSettings().flatten();
+        settings.put("index.number_of_shards", shards);
+        Document mapping = type.createMapping();
+        index.create(settings, mapping);
+    }
+
+    private IndexOperations indexOps(String name) {
+        return elasticsearchOperations.indexOps(IndexCoordinates.of(name));
+    }
+}
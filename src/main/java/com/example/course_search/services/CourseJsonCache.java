@@ -0,0 +1,66 @@
+package com.example.course_search.services;
+
+import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-encoded UTF-8 JSON of every course served during the current
+ * {@link IndexGeneration}, so unchanged documents are not re-serialized on
+ * every response. Entries are keyed by the document itself, so a course is
+ * only written from cache while it is equal to the one that was encoded, and
+ * projected variants of the same course are cached side by side.
+ */
+@Component
+@RequiredArgsConstructor
+public class CourseJsonCache {
+
+    static final int MAX_ENTRIES = 10_000;
+
+    private final IndexGeneration indexGeneration;
+
+    private final Map<CourseDocument, SerializedString> entries = new ConcurrentHashMap<>();
+    private volatile long generation = -1;
+
+    public SerializableString get(CourseDocument course) {
+        if (course.getId() == null) {
+            return null;
+        }
+        syncGeneration();
+        return entries.get(course);
+    }
+
+    public SerializableString put(CourseDocument course, String json) {
+        SerializedString encoded = new SerializedString(json);
+        if (course.getId() == null) {
+            return encoded;
+        }
+        syncGeneration();
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(course, encoded);
+        return encoded;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void syncGeneration() {
+        long current = indexGeneration.current();
+        if (current != generation) {
+            synchronized (this) {
+                if (current != generation) {
+                    entries.clear();
+                    generation = current;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.routing.RoutingResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom routing of courses by {@code category}, enabled with
+ * {@code course-search.routing.enabled}. Every course of a category lives on
+ * one shard, so a search filtered on a single category is sent to that
+ * shard only instead of fanning out to all of them. Courses without a
+ * category fall back to routing by id.
+ * <p>
+ * With routing on, anything addressing a course by id has to pass its
+ * routing as well; {@link #locate} finds the current routing of courses
+ * whose category the caller does not know. With routing off every method
+ * answers "no routing" and nothing changes.
+ */
+@Component
+public class CourseRouting {
+
+    /** Ids per lookup search, within the default {@code index.max_result_window}. */
+    static final int MAX_IDS_PER_SEARCH = 10_000;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final boolean enabled;
+    private final RoutingResolver resolver = new RoutingResolver() {
+        @Override
+        public String getRouting() {
+            return null;
+        }
+
+        @Override
+        public <T> String getRouting(T bean) {
+            return bean instanceof CourseDocument course ? of(course.getCategory()) : null;
+        }
+    };
+
+    public CourseRouting(ElasticsearchClient elasticsearchClient, CourseSearchProperties properties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.enabled = properties.getRouting().isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Routing of a course in {@code category}, or {@code null} for the default id-based routing. */
+    public String of(String category) {
+        return enabled && category != null && !category.isBlank() ? category : null;
+    }
+
+    /** {@code operations}, routing saved courses by their category. */
+    public ElasticsearchOperations routed(ElasticsearchOperations operations) {
+        return enabled ? operations.withRouting(resolver) : operations;
+    }
+
+    /**
+     * Current routing and the given {@code _source} fields of the given
+     * courses, by id, from one search across all shards per
+     * {@value #MAX_IDS_PER_SEARCH} ids. Courses that do not exist are missing
+     * from the result, courses routed by id have a {@code null} routing.
+     * Searches whether or not routing is on.
+     */
+    public Map<String, Location> locate(Collection<String> ids, List<String> fields) throws IOException {
+        return locate(CourseIndexLayout.ALIAS, ids, fields);
+    }
+
+    /** As {@link #locate(Collection, List)}, in {@code index} instead of the active index. */
+    @SuppressWarnings("unchecked")
+    public Map<String, Location> locate(String index, Collection<String> ids, List<String> fields) throws IOException {
+        Map<String, Location> located = new HashMap<>();
+        if (ids.isEmpty()) {
+            return located;
+        }
+        List<String> all = List.copyOf(ids);
+        for (int from = 0; from < all.size(); from += MAX_IDS_PER_SEARCH) {
+            List<String> values = all.subList(from, Math.min(from + MAX_IDS_PER_SEARCH, all.size()));
+            SearchRequest request = SearchRequest.of(s -> s
+                    .index(index)
+                    .size(values.size())
+                    .source(source -> fields.isEmpty()
+                            ? source.fetch(false)
+                            : source.filter(filter -> filter.includes(fields)))
+                    .query(q -> q.ids(i -> i.values(values))));
+            for (Hit<JsonData> hit : elasticsearchClient.search(request, JsonData.class).hits().hits()) {
+                Map<String, Object> source = hit.source() == null ? Map.of() : hit.source().to(Map.class);
+                located.put(hit.id(), new Location(hit.routing(), source));
+            }
+        }
+        return located;
+    }
+
+    /** Where a course lives, and the source fields asked for. */
+    public record Location(String routing, Map<String, Object> source) {
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.course_search.services;
 
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.course_search.config.CourseSearchProperties;
 import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SearchExplanation;
 import com.example.course_search.dto.SearchResponse;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -11,6 +15,8 @@ import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.stereotype.Service;
@@ -21,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import java.time.OffsetDateTime;
@@ -30,6 +37,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CourseSearchService {
     private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchCircuitBreaker circuitBreaker;
+    private final ElasticsearchConcurrencyLimiter concurrencyLimiter;
+    private final StaleResultCache staleResultCache;
+    private final ObservationRegistry observationRegistry;
+    private final CourseRouting courseRouting;
+    private final CourseSearchProperties properties;
 
     @Autowired
     private ElasticsearchClient elasticsearchClient;
@@ -45,15 +58,47 @@ public class CourseSearchService {
                                         String sort,
                                         int page,
                                         int size) {
+        return searchCourses(q, minAge, maxAge, minPrice, maxPrice, category, type,
+                nextSessionDate, sort, page, size, null);
+    }
+
+    public SearchResponse searchCourses(String q,
+                                        Integer minAge,
+                                        Integer maxAge,
+                                        Double minPrice,
+                                        Double maxPrice,
+                                        String category,
+                                        String type,
+                                        OffsetDateTime nextSessionDate,
+                                        String sort,
+                                        int page,
+                                        int size,
+                                        FieldProjection projection) {
+        return withFallback("search", "criteria:" + CanonicalQuery.search(q, minAge, maxAge, minPrice, maxPrice,
+                        category, type, nextSessionDate, sort, page, size, projection, historical()),
+                () -> doSearchCourses(q, minAge, maxAge, minPrice, maxPrice, category, type,
+                        nextSessionDate, sort, page, size, projection));
+    }
+
+    private SearchResponse doSearchCourses(String q,
+                                           Integer minAge,
+                                           Integer maxAge,
+                                           Double minPrice,
+                                           Double maxPrice,
+                                           String category,
+                                           String type,
+                                           OffsetDateTime nextSessionDate,
+                                           String sort,
+                                           int page,
+                                           int size,
+                                           FieldProjection projection) {
 
         Criteria criteria = new Criteria();
         boolean hasCriteria = false;
 
         // Keyword search in title and description
         if (q != null && !q.isBlank()) {
-            Criteria titleCriteria = new Criteria("title").matches(q);
-            Criteria descCriteria = new Criteria("description").matches(q);
-            criteria = titleCriteria.or(descCriteria);
+            criteria = keywordCriteria(q);
             hasCriteria = true;
         }
 
@@ -105,49 +150,71 @@ public class CourseSearchService {
 
         // If no criteria specified, return all courses
         if (!hasCriteria) {
-            return findAllCourses(sort, page, size);
+            return doFindAllCourses(sort, page, size, projection);
         }
 
-        // For Pagination
-        Pageable pageable=createPageable(page, size, sort);
-        CriteriaQuery query = new CriteriaQuery(criteria);
-        query.setPageable(pageable);
-        SearchHits<CourseDocument> searchHits = elasticsearchOperations.search(query, CourseDocument.class);
-
-        List<CourseDocument> courses = searchHits.stream()
-                .map(SearchHit::getContent)
-                .toList();
-        long total = searchHits.getTotalHits();
-
-        return SearchResponse.builder()
-                .total(total)
-                .courses(courses)
-                .build();
+        Criteria finalCriteria = criteria;
+        return inTier("criteria", () -> {
+            // For Pagination
+            Pageable pageable=createPageable(page, size, sort);
+            CriteriaQuery query = new CriteriaQuery(finalCriteria);
+            query.setPageable(pageable);
+            applyProjection(query, projection);
+            // Every course of the filtered category is on one shard when routing by category
+            query.setRoute(courseRouting.of(category));
+            if (q == null || q.isBlank()) {
+                limitTotalHitsForIndexSort(query, pageable);
+            }
+            SearchHits<CourseDocument> searchHits = search(query);
+
+            List<CourseDocument> courses = searchHits.stream()
+                    .map(SearchHit::getContent)
+                    .toList();
+            long total = searchHits.getTotalHits();
+
+            return SearchResponse.builder()
+                    .total(total)
+                    .totalRelation(totalRelation(searchHits))
+                    .courses(courses)
+                    .build();
+        });
     }
 
     public SearchResponse findAllCourses(String sort, Integer page, Integer size) {
-        Query matchAllQuery = Query.of(q -> q.matchAll(m -> m));
+        return findAllCourses(sort, page, size, null);
+    }
+
+    public SearchResponse findAllCourses(String sort, Integer page, Integer size, FieldProjection projection) {
+        return withFallback("all_courses", CanonicalQuery.allCourses(sort, page, size, projection, historical()),
+                () -> doFindAllCourses(sort, page, size, projection));
+    }
 
-        Pageable pageable=createPageable(page, size, sort);
+    private SearchResponse doFindAllCourses(String sort, Integer page, Integer size, FieldProjection projection) {
+        return inTier("match_all", () -> {
+            Query matchAllQuery = Query.of(q -> q.matchAll(m -> m));
 
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(matchAllQuery)
-                .withPageable(pageable)
-                .build();
+            Pageable pageable=createPageable(page, size, sort);
 
-        SearchHits<CourseDocument> searchHits =
-                elasticsearchOperations.search(query, CourseDocument.class);
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(matchAllQuery)
+                    .withPageable(pageable)
+                    .build();
+            applyProjection(query, projection);
+            limitTotalHitsForIndexSort(query, pageable);
 
-        List<CourseDocument> courses = searchHits.stream()
-                .map(SearchHit::getContent)
-                .toList();
-        long total = searchHits.getTotalHits();
+            SearchHits<CourseDocument> searchHits = search(query);
 
-        return SearchResponse.builder()
-                .total(total)
-                .courses(courses)
-                .build();
+            List<CourseDocument> courses = searchHits.stream()
+                    .map(SearchHit::getContent)
+                    .toList();
+            long total = searchHits.getTotalHits();
 
+            return SearchResponse.builder()
+                    .total(total)
+                    .totalRelation(totalRelation(searchHits))
+                    .courses(courses)
+                    .build();
+        });
     }
 
         public SearchResponse findAllCourses() {
@@ -175,6 +242,42 @@ public class CourseSearchService {
         };
     }
 
+    /**
+     * Sorted the way the index is ({@code nextSessionDate} ascending), a query
+     * can stop after the requested page on each segment, but only once it no
+     * longer counts every match. Counting up to one page past the requested
+     * one still tells clients whether there is a next page; the total is then
+     * a lower bound. Off unless {@code course-search.index-sort.early-termination}
+     * is set, as clients may rely on exact totals.
+     */
+    private void limitTotalHitsForIndexSort(org.springframework.data.elasticsearch.core.query.Query query,
+                                                   Pageable pageable) {
+        if (!properties.getIndexSort().isEarlyTermination()) {
+            return;
+        }
+        Sort.Order first = pageable.getSort().stream().findFirst().orElse(null);
+        if (first != null && first.getProperty().equals("nextSessionDate") && first.isAscending()) {
+            long upTo = pageable.getOffset() + 2L * pageable.getPageSize();
+            query.setTrackTotalHitsUpTo((int) Math.min(upTo, Integer.MAX_VALUE));
+        }
+    }
+
+    private static String totalRelation(SearchHits<?> searchHits) {
+        return searchHits.getTotalHitsRelation() == TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO ? "gte" : null;
+    }
+
+    /**
+     * Matches {@code q} in the title or the description, as one group: the
+     * filters and-ed onto it then apply to both matches. Built as a plain
+     * {@code or} chain instead, a filter would only bind to the title match
+     * and courses matching in the description alone would never be found.
+     */
+    private static Criteria keywordCriteria(String q) {
+        Criteria titleCriteria = new Criteria("title").matches(q);
+        Criteria descCriteria = new Criteria("description").matches(q);
+        return new Criteria().subCriteria(titleCriteria.or(descCriteria));
+    }
+
     private Pageable createPageable(Integer page, Integer size, String sort) {
         int validPage = (page != null && page >= 0) ? page : 0;
         int validSize = (size != null && size > 0 && size <= 100) ? size : 10; // Max 100 per page
@@ -183,6 +286,142 @@ public class CourseSearchService {
         return PageRequest.of(validPage, validSize, sortObj);
     }
 
+    private SearchHits<CourseDocument> search(org.springframework.data.elasticsearch.core.query.Query query) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.lap("build");
+            context.applyTo(query);
+        }
+        // The document's index is the alias of the active index; historical searches span the archive too
+        IndexCoordinates index = context != null && context.isHistorical()
+                ? IndexCoordinates.of(CourseIndexLayout.HISTORICAL) : null;
+        Observation observation = Observation.createNotStarted("course_search.es.search", observationRegistry);
+        SearchHits<CourseDocument> hits = observation.observe(() -> {
+            SearchHits<CourseDocument> result = concurrencyLimiter.call(() ->
+                    circuitBreaker.call(() -> index == null
+                            ? elasticsearchOperations.search(query, CourseDocument.class)
+                            : elasticsearchOperations.search(query, CourseDocument.class, index)));
+            observation.highCardinalityKeyValue("hits", String.valueOf(result.getTotalHits()));
+            if (result.getExecutionDuration() != null) {
+                observation.highCardinalityKeyValue("es.took_ms", String.valueOf(result.getExecutionDuration().toMillis()));
+            }
+            return result;
+        });
+        if (context != null) {
+            context.lap("elasticsearch");
+            context.inspect(query, hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Runs a search and remembers its result. When Elasticsearch is unavailable
+     * the last good result for the same query is returned, marked stale, and
+     * refreshed in the background; without one the failure is propagated.
+     * Results cut short by the request deadline are flagged partial and not
+     * remembered.
+     */
+    private SearchResponse withFallback(String operation, String key, Supplier<SearchResponse> search) {
+        Observation observation = Observation.createNotStarted("course_search.search", observationRegistry)
+                .lowCardinalityKeyValue("operation", operation)
+                .highCardinalityKeyValue("query", key);
+        return observation.observe(() -> {
+            SearchResponse response = searchOrLastGood(key, search, observation);
+            observation.highCardinalityKeyValue("hits", String.valueOf(response.getTotal()));
+            return explained(response);
+        });
+    }
+
+    private SearchResponse searchOrLastGood(String key, Supplier<SearchResponse> search, Observation observation) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setCanonicalQuery(key);
+            context.mark();
+        }
+        try {
+            SearchResponse response = search.get();
+            if (context != null) {
+                context.lap("mapping");
+            }
+            if (context != null && context.isPartial()) {
+                cacheOutcome(observation, context, "bypass");
+                return response.toBuilder().partial(true).build();
+            }
+            staleResultCache.put(key, response);
+            cacheOutcome(observation, context, "miss");
+            return response;
+        } catch (SearchBackendUnavailableException e) {
+            return Observation.createNotStarted("course_search.tier", observationRegistry)
+                    .lowCardinalityKeyValue("tier", "stale")
+                    .observe(() -> {
+                        SearchResponse lastGood = staleResultCache.get(key).orElseThrow(() -> e);
+                        // The key covers the index target; the refresh has to search the same indices
+                        boolean historical = context != null && context.isHistorical();
+                        staleResultCache.refreshAsync(key, () -> SearchContext.detached(historical, search));
+                        if (context != null) {
+                            context.setTier("stale");
+                        }
+                        cacheOutcome(observation, context, "stale_hit");
+                        return lastGood.toBuilder().stale(true).build();
+                    });
+        }
+    }
+
+    private static boolean historical() {
+        SearchContext context = SearchContext.current();
+        return context != null && context.isHistorical();
+    }
+
+    private void cacheOutcome(Observation observation, SearchContext context, String outcome) {
+        observation.lowCardinalityKeyValue("cache.outcome", outcome);
+        if (context != null) {
+            context.setCacheOutcome(outcome);
+        }
+    }
+
+    /**
+     * In explain mode, attaches the query DSL sent, the page and sort actually
+     * used (after {@link #createPageable} clamping) and the answering tier.
+     */
+    private SearchResponse explained(SearchResponse response) {
+        SearchContext context = SearchContext.current();
+        if (context == null || !context.isExplain()) {
+            return response;
+        }
+        List<org.springframework.data.elasticsearch.core.query.Query> queries = context.getQueries();
+        SearchExplanation.SearchExplanationBuilder explanation = SearchExplanation.builder()
+                .tier(context.getTier())
+                .queries(QueryDsl.toJsonArray(queries));
+        if (!queries.isEmpty() && queries.get(queries.size() - 1).getPageable().isPaged()) {
+            Pageable pageable = queries.get(queries.size() - 1).getPageable();
+            explanation.page(pageable.getPageNumber())
+                    .size(pageable.getPageSize())
+                    .sort(QueryDsl.toString(pageable.getSort()));
+        }
+        return response.toBuilder().explain(explanation.build()).build();
+    }
+
+    /**
+     * Runs one search strategy in its own span and records it as the answering
+     * tier; when strategies nest, the innermost one wins.
+     */
+    private <T> T inTier(String name, Supplier<T> work) {
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setTier(name);
+        }
+        return Observation.createNotStarted("course_search.tier", observationRegistry)
+                .lowCardinalityKeyValue("tier", name)
+                .observe(work);
+    }
+
+    private void applyProjection(org.springframework.data.elasticsearch.core.query.Query query,
+                                 FieldProjection projection) {
+        if (projection != null) {
+            query.addSourceFilter(projection.toSourceFilter());
+        }
+    }
+
     // From this Fuzzy Search logic started
     private boolean hasOtherFilters(Integer minAge, Integer maxAge, Double minPrice, Double maxPrice,
                                     String category, String type, OffsetDateTime nextSessionDate) {
@@ -205,6 +444,8 @@ public class CourseSearchService {
             Criteria criteria = new Criteria("title").is(q)
                     .or(new Criteria("description").is(q));
             return executeSearch(criteria, sort, page, size);
+        } catch (SearchBackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
@@ -215,6 +456,8 @@ public class CourseSearchService {
             Criteria criteria = new Criteria("title").contains(q.toLowerCase())
                     .or(new Criteria("description").contains(q.toLowerCase()));
             return executeSearch(criteria, sort, page, size);
+        } catch (SearchBackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
@@ -235,10 +478,14 @@ public class CourseSearchService {
                     Criteria criteria = new Criteria("title").expression(pattern);
                     results.addAll(executeSearch(criteria, sort, 0, size));
                     if (results.size() >= size) break;
+                } catch (SearchBackendUnavailableException e) {
+                    throw e;
                 } catch (Exception ignored) {}
             }
 
             return results;
+        } catch (SearchBackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
@@ -246,7 +493,7 @@ public class CourseSearchService {
 
     private List<CourseDocument> searchCharacterMatch(String q, String sort, int page, int size) {
         try {
-            SearchResponse allCoursesResponse = findAllCourses(sort, 0, 100);
+            SearchResponse allCoursesResponse = doFindAllCourses(sort, 0, 100, null);
             List<CourseDocument> allCourses = allCoursesResponse.getCourses();
             List<CourseDocument> matches = new ArrayList<>();
 
@@ -261,6 +508,8 @@ public class CourseSearchService {
                 }
             }
             return matches;
+        } catch (SearchBackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
@@ -286,8 +535,10 @@ public class CourseSearchService {
             CriteriaQuery query = new CriteriaQuery(criteria);
             query.setPageable(pageable);
 
-            SearchHits<CourseDocument> searchHits = elasticsearchOperations.search(query, CourseDocument.class);
+            SearchHits<CourseDocument> searchHits = search(query);
             return searchHits.stream().map(SearchHit::getContent).collect(Collectors.toList());
+        } catch (SearchBackendUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
@@ -304,19 +555,53 @@ public class CourseSearchService {
                                                  String sort,
                                                  int page,
                                                  int size) {
+        return searchCoursesWithFuzzy(q, minAge, maxAge, minPrice, maxPrice, category, type,
+                nextSessionDate, sort, page, size, null);
+    }
+
+    public SearchResponse searchCoursesWithFuzzy(String q,
+                                                 Integer minAge,
+                                                 Integer maxAge,
+                                                 Double minPrice,
+                                                 Double maxPrice,
+                                                 String category,
+                                                 String type,
+                                                 OffsetDateTime nextSessionDate,
+                                                 String sort,
+                                                 int page,
+                                                 int size,
+                                                 FieldProjection projection) {
+        return withFallback("fuzzy_search", CanonicalQuery.search(q, minAge, maxAge, minPrice, maxPrice,
+                        category, type, nextSessionDate, sort, page, size, projection, historical()),
+                () -> doSearchCoursesWithFuzzy(q, minAge, maxAge, minPrice, maxPrice, category, type,
+                        nextSessionDate, sort, page, size, projection));
+    }
+
+    private SearchResponse doSearchCoursesWithFuzzy(String q,
+                                                    Integer minAge,
+                                                    Integer maxAge,
+                                                    Double minPrice,
+                                                    Double maxPrice,
+                                                    String category,
+                                                    String type,
+                                                    OffsetDateTime nextSessionDate,
+                                                    String sort,
+                                                    int page,
+                                                    int size,
+                                                    FieldProjection projection) {
 
         // If query is blank OR any other filter is present, fall back to normal search
         if (q == null || q.isBlank() ||
                 hasOtherFilters(minAge, maxAge, minPrice, maxPrice,
                         category, type, nextSessionDate)) {
 
-            return searchCourses(q, minAge, maxAge, minPrice, maxPrice,
+            return doSearchCourses(q, minAge, maxAge, minPrice, maxPrice,
                     category, type, nextSessionDate,
-                    sort, page, size);
+                    sort, page, size, projection);
         }
 
         // --- Native fuzzy search ---
-        List<CourseDocument> courses = searchNativeFuzzy(q, sort, page, size);
+        List<CourseDocument> courses = searchNativeFuzzy(q, sort, page, size, projection);
 
         return SearchResponse.builder()
                 .total(courses.size())
@@ -331,28 +616,31 @@ public class CourseSearchService {
     private List<CourseDocument> searchNativeFuzzy(String q,
                                                    String sort,
                                                    int page,
-                                                   int size) {
-
-        Pageable pageable = createPageable(page, size, sort);
-
-        // fuzzy multi-match on title + description
-        Query fuzzyQuery = Query.of(b -> b
-                .multiMatch(mm -> mm
-                        .fields("title", "description")
-                        .query(q)
-                        .fuzziness("AUTO")      // 1–2 edits allowed automatically
-                )
-        );
-
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(fuzzyQuery)
-                .withPageable(pageable)
-                .build();
+                                                   int size,
+                                                   FieldProjection projection) {
 
-        SearchHits<CourseDocument> hits =
-                elasticsearchOperations.search(query, CourseDocument.class);
+        return inTier("fuzzy", () -> {
+            Pageable pageable = createPageable(page, size, sort);
 
-        return hits.stream().map(SearchHit::getContent).toList();
+            // fuzzy multi-match on title + description
+            Query fuzzyQuery = Query.of(b -> b
+                    .multiMatch(mm -> mm
+                            .fields("title", "description")
+                            .query(q)
+                            .fuzziness("AUTO")      // 1–2 edits allowed automatically
+                    )
+            );
+
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(fuzzyQuery)
+                    .withPageable(pageable)
+                    .build();
+            applyProjection(query, projection);
+
+            SearchHits<CourseDocument> hits = search(query);
+
+            return hits.stream().map(SearchHit::getContent).toList();
+        });
     }
 
 }
@@ -1,34 +1,136 @@
 package com.example.course_search.services;
 
+import com.example.course_search.config.CourseSearchProperties;
 import com.example.course_search.document.CourseDocument;
-import com.example.course_search.repositories.CourseRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Component;
 
-import java.io.InputStream;
+import java.time.Duration;
 import java.util.List;
 
 @Component
+@Order(DataIndexer.ORDER)
 @RequiredArgsConstructor
 public class DataIndexer implements ApplicationRunner {
-    private final ObjectMapper objectMapper;
-    private final CourseRepository courseRepository;
+    public static final int ORDER = 0;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CourseIndexLayout courseIndexLayout;
+    private final CourseRouting courseRouting;
+    private final IndexGeneration indexGeneration;
+    private final BulkLoadTuning bulkLoadTuning;
+    private final CatalogDirectoryWatcher catalogDirectoryWatcher;
+    private final CatalogSource catalogSource;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final ClickCounter clickCounter;
+    private final CourseSearchProperties properties;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
-        courseRepository.deleteAll();
+        CatalogSource.Loader catalog = catalogSource.open();
+        // Of several instances starting together, one loads each catalog version and the others keep its result,
+        // unless its indices have since gone or no longer match the configured layout
+        if (catalogLoadCoordinator.acquire(catalog.version(), courseIndexLayout::isCurrent)
+                == CatalogLoadCoordinator.Decision.SKIP) {
+            System.out.println("Catalog " + catalog.version() + " is already loaded, skipping the startup load");
+            // Caches built before that load go now rather than on the next generation poll
+            indexGeneration.sync();
+            return;
+        }
+        boolean loaded = false;
+        try {
+            load(catalog);
+            catalogLoadCoordinator.loaded(catalog.version());
+            loaded = true;
+        } finally {
+            if (!loaded) {
+                catalogLoadCoordinator.release();
+            }
+        }
+    }
+
+    private void load(CatalogSource.Loader catalog) throws Exception {
+        CourseSearchProperties.BulkLoad config = properties.getBulkLoad();
+        long start = System.nanoTime();
+        // Only under the lease, since it may drop and rebuild the indices other instances search
+        courseIndexLayout.ensure();
+        if (properties.getIngest().isEnabled()
+                && elasticsearchOperations.count(Query.findAll(), CourseDocument.class) > 0) {
+            // The watched directory keeps the catalog current; reloading the sample would undo its changes
+            System.out.println("Catalog ingestion is enabled and the index is populated, skipping the sample load");
+            return;
+        }
+        // Loaded into a staging index and promoted as a reindex job does, so searches keep the previous catalog
+        String staging = courseIndexLayout.createStaging();
+        BulkLoadTuning.Steps steps = null;
+        long indexed;
+        try {
+            BulkLoadTuning.Saved saved = config.isEnabled() ? beginBulkLoad(staging) : null;
+            int batchSize = Math.max(1, config.getBatchSize());
+            IndexCoordinates target = IndexCoordinates.of(staging);
+            // Routed by category when course-search.routing.enabled is set
+            ElasticsearchOperations writer = courseRouting.routed(elasticsearchOperations);
+            indexed = catalog.load(batchSize, batch -> writer.save(batch, target), bytes -> {});
+            // The staging index is deleted on failure, so its settings only need restoring on success
+            if (saved != null) {
+                steps = bulkLoadTuning.finish(staging, saved);
+            }
+            clickCounter.copyPopularity(staging);
+            courseIndexLayout.promote(staging);
+            staging = null;
+        } finally {
+            if (staging != null) {
+                courseIndexLayout.dropStaging();
+            }
+        }
+        // The whole catalog is back in the active index; ArchiveMover moves the expired courses again
+        courseIndexLayout.clearArchive();
+        Duration loadTime = Duration.ofNanos(System.nanoTime() - start);
+        // Files ingested into the previous catalog have to be applied again
+        catalogDirectoryWatcher.resetCheckpoint();
+        indexGeneration.advance();
+        System.out.println("Indexed " + indexed + " courses into Elasticsearch with autocomplete suggestions");
+        report(loadTime, steps);
+    }
 
-        InputStream inputStream = new ClassPathResource("sample-courses.json").getInputStream();
-        List<CourseDocument> courseDocuments = objectMapper.readValue(inputStream, new TypeReference<>() {});
+    // The load still works with default settings, only slower
+    private BulkLoadTuning.Saved beginBulkLoad(String index) {
+        try {
+            return bulkLoadTuning.begin(index);
+        } catch (Exception e) {
+            System.err.println("Loading with default index settings: " + e.getMessage());
+            return null;
+        }
+    }
 
-        courseDocuments.forEach(CourseDocument::setSuggestFromTitle);
+    private void report(Duration loadTime, BulkLoadTuning.Steps steps) {
+        StringBuilder report = new StringBuilder("Catalog load took ").append(loadTime.toMillis()).append(" ms");
+        if (steps != null) {
+            report.append(" (restore settings ").append(steps.restoreSettings().toMillis())
+                    .append(" ms, force merge ").append(steps.forceMerge().toMillis())
+                    .append(" ms, refresh ").append(steps.refresh().toMillis()).append(" ms)");
+        }
+        try {
+            List<Duration> latencies = bulkLoadTuning.probeLatency();
+            if (!latencies.isEmpty()) {
+                report.append("; post-load match_all latency p50 ")
+                        .append(millis(latencies.get(latencies.size() / 2)))
+                        .append(" ms, max ").append(millis(latencies.get(latencies.size() - 1)))
+                        .append(" ms over ").append(latencies.size()).append(" queries");
+            }
+        } catch (Exception e) {
+            report.append("; post-load latency probe failed: ").append(e.getMessage());
+        }
+        System.out.println(report);
+    }
 
-        courseRepository.saveAll(courseDocuments);
-        System.out.println("Indexed " + courseDocuments.size() + " courses into Elasticsearch with autocomplete suggestions");
+    private static String millis(Duration duration) {
+        return String.format("%.2f", duration.toNanos() / 1_000_000.0);
     }
 }
@@ -0,0 +1,117 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around Elasticsearch calls. After
+ * {@code failureThreshold} consecutive backend failures or slow calls the
+ * circuit opens and calls fail fast with
+ * {@link SearchBackendUnavailableException}. Once {@code openDuration} has
+ * passed a single trial call is let through; its outcome closes or re-opens
+ * the circuit. A trial that has not finished after another
+ * {@code openDuration} is given up on and the next caller becomes the
+ * trial, so a hung call cannot keep the circuit half-open.
+ * <p>
+ * Only availability problems count as failures (connection errors, 5xx and
+ * 429 responses); a rejected query is rethrown unchanged.
+ */
+@Component
+public class ElasticsearchCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final CourseSearchProperties.Breaker config;
+    private final LongSupplier nanoTime;
+
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long trialStartedAt;
+
+    @Autowired
+    public ElasticsearchCircuitBreaker(CourseSearchProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    ElasticsearchCircuitBreaker(CourseSearchProperties properties, LongSupplier nanoTime) {
+        this.config = properties.getBreaker();
+        this.nanoTime = nanoTime;
+    }
+
+    public <T> T call(Supplier<T> backendCall) {
+        acquirePermission();
+
+        long start = nanoTime.getAsLong();
+        T result;
+        try {
+            result = backendCall.get();
+        } catch (RuntimeException e) {
+            if (isAvailabilityFailure(e)) {
+                onFailure();
+                throw new SearchBackendUnavailableException("Elasticsearch call failed: " + e.getMessage(), e);
+            }
+            onSuccess();
+            throw e;
+        }
+
+        if (nanoTime.getAsLong() - start > config.getSlowCallThreshold().toNanos()) {
+            onFailure();
+        } else {
+            onSuccess();
+        }
+        return result;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private synchronized void acquirePermission() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        long openNanos = config.getOpenDuration().toNanos();
+        if ((state == State.OPEN && now - openedAt >= openNanos)
+                || (state == State.HALF_OPEN && now - trialStartedAt >= openNanos)) {
+            state = State.HALF_OPEN; // this caller is the trial call
+            trialStartedAt = now;
+            return;
+        }
+        throw new SearchBackendUnavailableException("Elasticsearch circuit is " + state);
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= config.getFailureThreshold()) {
+            if (state != State.OPEN) {
+                System.err.println("Elasticsearch circuit opened after " + consecutiveFailures + " failure(s)");
+            }
+            state = State.OPEN;
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+
+    private boolean isAvailabilityFailure(RuntimeException e) {
+        if (e instanceof DataAccessResourceFailureException) {
+            return true;
+        }
+        if (e instanceof UncategorizedElasticsearchException es) {
+            Integer status = es.getStatusCode();
+            return status == null || status >= 500 || status == 429;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive limit on concurrent Elasticsearch calls, in the style of the
+ * gradient algorithm: the limit follows the ratio between the long-term
+ * average latency and the latest sample. When the backend slows down the
+ * ratio drops below one and the limit shrinks; while latency is stable it
+ * grows by a small queue allowance. Calls above the limit are rejected
+ * immediately with {@link SearchOverloadedException} instead of queueing.
+ */
+@Component
+public class ElasticsearchConcurrencyLimiter implements MeterBinder {
+
+    private final CourseSearchProperties.Limiter config;
+    private final LongSupplier nanoTime;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+    private double longRttNanos;
+
+    @Autowired
+    public ElasticsearchConcurrencyLimiter(CourseSearchProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    ElasticsearchConcurrencyLimiter(CourseSearchProperties properties, LongSupplier nanoTime) {
+        this.config = properties.getLimiter();
+        this.nanoTime = nanoTime;
+        this.limit = config.getInitialLimit();
+    }
+
+    public <T> T call(Supplier<T> backendCall) {
+        if (!tryAcquire()) {
+            rejected.increment();
+            throw new SearchOverloadedException("Elasticsearch concurrency limit of " + getLimit() + " reached",
+                    config.getRetryAfter());
+        }
+
+        long start = nanoTime.getAsLong();
+        boolean completed = false;
+        try {
+            T result = backendCall.get();
+            completed = true;
+            return result;
+        } finally {
+            int concurrent = inFlight.getAndDecrement();
+            // Failed calls say nothing about queueing in the backend
+            if (completed) {
+                onSample(nanoTime.getAsLong() - start, concurrent);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("course_search.es.concurrency.limit", this, ElasticsearchConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on concurrent Elasticsearch calls")
+                .register(registry);
+        Gauge.builder("course_search.es.concurrency.in_flight", this, ElasticsearchConcurrencyLimiter::getInFlight)
+                .description("Elasticsearch calls currently in flight")
+                .register(registry);
+        FunctionCounter.builder("course_search.es.concurrency.rejected", this, ElasticsearchConcurrencyLimiter::getRejected)
+                .description("Calls shed because the concurrency limit was reached")
+                .register(registry);
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void onSample(long rttNanos, int concurrent) {
+        long rtt = Math.max(1, rttNanos);
+        if (longRttNanos == 0) {
+            longRttNanos = rtt;
+        } else {
+            longRttNanos += (rtt - longRttNanos) / config.getLongWindow();
+        }
+        // After a period of high latency let the long-term average recover quickly
+        if (longRttNanos / rtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Far below the limit there is no signal about how much more the backend can take
+        if (concurrent < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRttNanos / rtt));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - config.getSmoothing()) + estimate * config.getSmoothing();
+        limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), smoothed));
+    }
+}
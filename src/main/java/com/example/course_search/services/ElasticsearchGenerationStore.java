@@ -0,0 +1,56 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.GetRequest;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
+import co.elastic.clients.json.JsonData;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * {@link IndexGeneration.Store} backed by the {@value #ID} document in the
+ * lease index. The generation is the document's {@code _version}, which
+ * every write increments atomically; reads are real-time gets.
+ */
+@Component
+public class ElasticsearchGenerationStore implements IndexGeneration.Store {
+
+    static final String ID = "index-generation";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public ElasticsearchGenerationStore(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    @Override
+    public long read() throws IOException {
+        GetResponse<JsonData> response;
+        try {
+            response = elasticsearchClient.get(GetRequest.of(g -> g
+                    .index(ElasticsearchLeaseStore.INDEX)
+                    .id(ID)
+                    .sourceExcludes("*")), JsonData.class);
+        } catch (ElasticsearchException e) {
+            // The index is created by the first write
+            if (e.status() == 404) {
+                return 0;
+            }
+            throw e;
+        }
+        return response.found() && response.version() != null ? response.version() : 0;
+    }
+
+    @Override
+    public long advance() throws IOException {
+        return elasticsearchClient.index(IndexRequest.of(i -> i
+                .index(ElasticsearchLeaseStore.INDEX)
+                .id(ID)
+                .document(Map.of("advancedAt", Instant.now().toString())))).version();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.CreateRequest;
+import co.elastic.clients.elasticsearch.core.GetRequest;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * {@link LeaseStore} backed by one document per lease in the
+ * {@value #INDEX} index. Conditional writes use {@code op_type=create} and
+ * {@code if_seq_no}/{@code if_primary_term}, so two instances racing for a
+ * lease cannot both win; reads are real-time gets.
+ */
+@Component
+public class ElasticsearchLeaseStore implements LeaseStore {
+
+    public static final String INDEX = "course-search-leases";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public ElasticsearchLeaseStore(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    @Override
+    public Optional<Versioned> read(String name) throws IOException {
+        GetResponse<Lease> response;
+        try {
+            response = elasticsearchClient.get(GetRequest.of(g -> g.index(INDEX).id(name)), Lease.class);
+        } catch (ElasticsearchException e) {
+            // The index is created by the first write
+            if (e.status() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+        if (!response.found() || response.source() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Versioned(response.source(), new Version(response.seqNo(), response.primaryTerm())));
+    }
+
+    @Override
+    public boolean create(String name, Lease lease) throws IOException {
+        return conflictAsFalse(() -> elasticsearchClient.create(CreateRequest.of(c -> c
+                .index(INDEX)
+                .id(name)
+                .document(lease))));
+    }
+
+    @Override
+    public boolean replace(String name, Lease lease, Version version) throws IOException {
+        return conflictAsFalse(() -> elasticsearchClient.index(IndexRequest.of(i -> i
+                .index(INDEX)
+                .id(name)
+                .ifSeqNo(version.seqNo())
+                .ifPrimaryTerm(version.primaryTerm())
+                .document(lease))));
+    }
+
+    private static boolean conflictAsFalse(Write write) throws IOException {
+        try {
+            write.run();
+            return true;
+        } catch (ElasticsearchException e) {
+            if (e.status() == 409) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+}
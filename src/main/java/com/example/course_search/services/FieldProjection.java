@@ -0,0 +1,85 @@
+package com.example.course_search.services;
+
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The subset of {@code CourseDocument} fields a caller asked for with
+ * {@code fields=}. It is sent to Elasticsearch as {@code _source} includes,
+ * so unrequested fields are neither fetched nor written to the response.
+ */
+public final class FieldProjection {
+
+    static final Set<String> FIELDS = Set.of(
+            "id", "title", "description", "category", "type", "gradeRange",
+            "minAge", "maxAge", "minPrice", "maxPrice", "language", "nextSessionDate");
+
+    /** Preset for list views: {@code fields=summary}. */
+    public static final FieldProjection SUMMARY =
+            of("id", "title", "category", "minPrice", "nextSessionDate");
+
+    private final String[] includes;
+
+    private FieldProjection(String[] includes) {
+        this.includes = includes;
+    }
+
+    /**
+     * Parses a comma separated field list. Returns {@code null} (full documents)
+     * for a blank value and rejects unknown field names.
+     */
+    public static FieldProjection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        if ("summary".equalsIgnoreCase(fields.trim())) {
+            return SUMMARY;
+        }
+
+        Set<String> requested = new TreeSet<>();
+        requested.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown field '" + name + "', expected one of " + FIELDS);
+            }
+            requested.add(name);
+        }
+        return new FieldProjection(requested.toArray(String[]::new));
+    }
+
+    public static FieldProjection of(String... fields) {
+        return new FieldProjection(new TreeSet<>(Arrays.asList(fields)).toArray(String[]::new));
+    }
+
+    public String[] includes() {
+        return includes.clone();
+    }
+
+    public SourceFilter toSourceFilter() {
+        return new FetchSourceFilter(true, includes(), null);
+    }
+
+    /** Canonical form used in cache keys and ETags. */
+    @Override
+    public String toString() {
+        return String.join(",", includes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FieldProjection other && Arrays.equals(includes, other.includes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(includes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter of the data currently held in the {@code courses} index.
+ * It is advanced every time the catalog is (re)loaded or changed, so
+ * anything derived from indexed documents can be keyed on it and dropped
+ * when it moves.
+ * <p>
+ * The counter is shared by every instance through a {@link Store}: an
+ * advance is written there, and each instance reads it back every
+ * {@code course-search.http.generation-poll-interval}, so a change made on
+ * one instance moves the ETags and caches of all of them, and equal
+ * generations on different instances stand for the same data. An advance
+ * that could not be written counts locally and is written on the next poll.
+ */
+@Component
+public class IndexGeneration {
+
+    /** Where the generation is shared between instances. */
+    public interface Store {
+
+        /** The shared generation; 0 before the first advance. */
+        long read() throws IOException;
+
+        /** Advances the shared generation and returns the new one. */
+        long advance() throws IOException;
+    }
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Store store;
+    private final Duration pollInterval;
+    private volatile boolean unpublished;
+    private boolean failing;
+    private ScheduledExecutorService poller;
+
+    /** A generation of this instance only. */
+    public IndexGeneration() {
+        this(null, Duration.ZERO);
+    }
+
+    @Autowired
+    public IndexGeneration(Store store, CourseSearchProperties properties) {
+        this(store, properties.getHttp().getGenerationPollInterval());
+    }
+
+    IndexGeneration(Store store, Duration pollInterval) {
+        this.store = store;
+        this.pollInterval = pollInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        if (store == null || pollInterval.isZero() || pollInterval.isNegative()) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::poll, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    public long advance() {
+        long next = generation.incrementAndGet();
+        if (store == null) {
+            return next;
+        }
+        try {
+            return generation.accumulateAndGet(store.advance(), Math::max);
+        } catch (IOException | RuntimeException e) {
+            unpublished = true;
+            System.err.println("Could not share the index generation, retrying on the next poll: " + e.getMessage());
+            return next;
+        }
+    }
+
+    /**
+     * Catches up with the shared generation now, for instance after another
+     * instance loaded the catalog; advances locally when it cannot be read.
+     */
+    public void sync() {
+        if (store == null) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read the index generation, advancing locally: " + e.getMessage());
+            generation.incrementAndGet();
+        }
+    }
+
+    private synchronized void poll() {
+        try {
+            catchUp();
+            failing = false;
+        } catch (IOException | RuntimeException e) {
+            // Logged once per outage rather than on every poll
+            if (!failing) {
+                System.err.println("Could not read the index generation: " + e.getMessage());
+                failing = true;
+            }
+        }
+    }
+
+    private void catchUp() throws IOException {
+        long shared;
+        if (unpublished) {
+            shared = store.advance();
+            unpublished = false;
+        } else {
+            shared = store.read();
+        }
+        generation.accumulateAndGet(shared, Math::max);
+    }
+}
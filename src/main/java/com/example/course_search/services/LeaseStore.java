@@ -0,0 +1,46 @@
+package com.example.course_search.services;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Leases shared by every instance of the service, with compare-and-set
+ * writes: a write states the version of the lease it replaces and fails
+ * when another instance has written in between. {@link ElasticsearchLeaseStore}
+ * keeps them in the cluster; tests use an in-memory stand-in.
+ */
+public interface LeaseStore {
+
+    /** The lease called {@code name} with its current version, if one was ever written. */
+    Optional<Versioned> read(String name) throws IOException;
+
+    /** Writes the first version of a lease; {@code false} when it already exists. */
+    boolean create(String name, Lease lease) throws IOException;
+
+    /** Replaces the lease if it is still at {@code version}; {@code false} when it has moved on. */
+    boolean replace(String name, Lease lease, Version version) throws IOException;
+
+    /**
+     * Who holds a lease and what for. {@code expiresAt} is in epoch
+     * milliseconds; a holder renews it while it works, so a lease that has
+     * expired belongs to an instance that stopped.
+     */
+    record Lease(String owner, String catalogVersion, State state, long expiresAt) {
+    }
+
+    enum State {
+        /** {@code owner} is loading {@code catalogVersion}. */
+        LOADING,
+        /** {@code catalogVersion} is loaded; nobody holds the lease. */
+        LOADED,
+        /** The last load did not finish; nobody holds the lease. */
+        RELEASED
+    }
+
+    /** Elasticsearch's {@code _seq_no} and {@code _primary_term} of a lease document. */
+    record Version(long seqNo, long primaryTerm) {
+    }
+
+    record Versioned(Lease lease, Version version) {
+    }
+}
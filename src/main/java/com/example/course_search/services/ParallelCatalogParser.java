@@ -0,0 +1,279 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Parses large NDJSON ({@code .ndjson}, {@code .jsonl}) and CSV catalog
+ * files on all cores. The file is memory-mapped and split into chunks of
+ * about {@code course-search.bulk-load.chunk-size} that end at line
+ * boundaries; each chunk is parsed on its own thread, one course per line,
+ * and handed to the caller in batches. Batches are delivered on the calling
+ * thread, in file order when {@code ordered} is set, otherwise as soon as
+ * their chunk is parsed. At most two chunks per thread are held in memory.
+ * <p>
+ * A line that cannot be parsed is reported with its chunk and byte offset
+ * and skipped; the rest of the chunk is still loaded. CSV records must not
+ * span lines (no line breaks inside quoted fields).
+ */
+@Component
+public class ParallelCatalogParser {
+
+    // Lines of a chunk reported individually; further rejections are only counted
+    private static final int ERRORS_PER_CHUNK = 10;
+
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper = csvMapper();
+    private final CourseSearchProperties.BulkLoad config;
+
+    public ParallelCatalogParser(ObjectMapper objectMapper, CourseSearchProperties properties) {
+        this.objectMapper = objectMapper;
+        this.config = properties.getBulkLoad();
+    }
+
+    /** The mapper catalog CSV files are read with: header names as fields, empty cells as null. */
+    static CsvMapper csvMapper() {
+        return CsvMapper.builder()
+                .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .findAndAddModules()
+                .build();
+    }
+
+    /** Whether {@link #parse} can split this file: NDJSON or CSV, not a JSON array. */
+    public static boolean isSplittable(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".csv");
+    }
+
+    /**
+     * Parses {@code file} and passes its courses to {@code sink} in batches
+     * of at most {@code batchSize}. Returns once every chunk was delivered;
+     * an exception thrown by the sink stops the parse.
+     */
+    public Report parse(Path file, int batchSize, Consumer<List<CourseDocument>> sink) throws IOException {
+        return parse(file, batchSize, sink, bytes -> {});
+    }
+
+    /** Like {@link #parse(Path, int, Consumer)}, passing the size of every chunk to {@code progress} once it is delivered. */
+    public Report parse(Path file, int batchSize, Consumer<List<CourseDocument>> sink, LongConsumer progress)
+            throws IOException {
+        if (!isSplittable(file)) {
+            throw new IllegalArgumentException(file.getFileName() + " is not an NDJSON or CSV file");
+        }
+        int threads = config.getParallelism() > 0 ? config.getParallelism() : Runtime.getRuntime().availableProcessors();
+        // A mapped region is limited to 2 GB; leave room for the line that ends a chunk
+        long chunkSize = Math.min(Math.max(1, config.getChunkSize().toBytes()), Integer.MAX_VALUE / 2);
+        boolean csv = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = 0;
+            ObjectReader reader = objectMapper.readerFor(CourseDocument.class);
+            if (csv) {
+                start = lineEnd(channel, 0);
+                reader = csvMapper.readerFor(CourseDocument.class).with(header(channel, start));
+            }
+            List<long[]> chunks = split(channel, start, chunkSize);
+
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "catalog-parser-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                return deliver(channel, reader, chunks, Math.max(1, batchSize), 2 * threads, pool, sink, progress);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private Report deliver(FileChannel channel, ObjectReader reader, List<long[]> chunks, int batchSize,
+                           int window, ExecutorService pool, Consumer<List<CourseDocument>> sink,
+                           LongConsumer progress) throws IOException {
+        CompletionService<Chunk> completion = new ExecutorCompletionService<>(pool);
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        long courses = 0;
+        long rejected = 0;
+        List<ParseError> errors = new ArrayList<>();
+        try {
+            for (int delivered = 0; delivered < chunks.size(); delivered++) {
+                while (next < chunks.size() && inFlight.size() < window) {
+                    int index = next++;
+                    long[] bounds = chunks.get(index);
+                    Callable<Chunk> task = () -> parseChunk(channel, reader, index, bounds[0], bounds[1]);
+                    // Only unordered delivery takes from the completion queue; ordered would leave results in it
+                    inFlight.add(config.isOrdered() ? pool.submit(task) : completion.submit(task));
+                }
+                Future<Chunk> done = config.isOrdered() ? inFlight.poll() : completion.take();
+                if (!config.isOrdered()) {
+                    inFlight.remove(done);
+                }
+                Chunk chunk = done.get();
+                List<CourseDocument> parsed = chunk.courses();
+                for (int from = 0; from < parsed.size(); from += batchSize) {
+                    sink.accept(parsed.subList(from, Math.min(from + batchSize, parsed.size())));
+                }
+                progress.accept(chunk.length());
+                courses += parsed.size();
+                rejected += chunk.rejected();
+                errors.addAll(chunk.errors());
+                if (chunk.rejected() > 0) {
+                    ParseError first = chunk.errors().get(0);
+                    System.err.println("Chunk " + chunk.index() + " at byte " + chunk.offset() + ": rejected "
+                            + chunk.rejected() + " of " + (parsed.size() + chunk.rejected())
+                            + " lines, first at byte " + first.offset() + ": " + first.message());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing the catalog", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IllegalStateException("Parsing the catalog failed", e.getCause());
+        }
+        return new Report(chunks.size(), courses, rejected, errors);
+    }
+
+    // Splits [start, size) into ranges of about chunkSize bytes, each ending just after a newline or at the end
+    private static List<long[]> split(FileChannel channel, long start, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : lineEnd(channel, start + chunkSize - 1);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    // The position after the first newline at or after from, or the file size
+    private static long lineEnd(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private CsvSchema header(FileChannel channel, long end) throws IOException {
+        ByteBuffer line = ByteBuffer.allocate((int) end);
+        channel.read(line, 0);
+        String[] names = csvMapper.readerFor(String[].class).readValue(line.array(), 0, trimmedLength(line.array(), 0, (int) end));
+        CsvSchema.Builder schema = CsvSchema.builder();
+        if (names == null) {
+            return schema.build();
+        }
+        Arrays.stream(names).map(String::trim).forEach(schema::addColumn);
+        return schema.build();
+    }
+
+    private static Chunk parseChunk(FileChannel channel, ObjectReader reader, int index, long start, long end) {
+        MappedByteBuffer mapped;
+        try {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<CourseDocument> courses = new ArrayList<>();
+        List<ParseError> errors = new ArrayList<>();
+        int rejected = 0;
+        byte[] line = new byte[256];
+        int lineStart = 0;
+        int limit = mapped.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && mapped.get(i) != '\n') {
+                continue;
+            }
+            int length = i - lineStart;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            mapped.get(lineStart, line, 0, length);
+            int trimmed = trimmedLength(line, 0, length);
+            if (trimmed > 0) {
+                try {
+                    courses.add(reader.readValue(line, 0, trimmed));
+                } catch (JsonProcessingException e) {
+                    rejected++;
+                    if (errors.size() < ERRORS_PER_CHUNK) {
+                        errors.add(new ParseError(index, start + lineStart, e.getOriginalMessage()));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            lineStart = i + 1;
+        }
+        return new Chunk(index, start, end - start, courses, rejected, errors);
+    }
+
+    // Length of bytes[from, from + length) without trailing whitespace (\r of CRLF files included)
+    private static int trimmedLength(byte[] bytes, int from, int length) {
+        while (length > 0 && bytes[from + length - 1] <= ' ') {
+            length--;
+        }
+        return length;
+    }
+
+    private record Chunk(int index, long offset, long length, List<CourseDocument> courses, int rejected,
+                         List<ParseError> errors) {
+    }
+
+    /** A line that could not be parsed, by its chunk and the byte offset where it starts. */
+    public record ParseError(int chunk, long offset, String message) {
+    }
+
+    /**
+     * Outcome of a parse: courses delivered, lines rejected, and the first
+     * few rejections of every chunk.
+     */
+    public record Report(int chunks, long courses, long rejected, List<ParseError> errors) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Renders Spring Data queries as the Elasticsearch query DSL they are sent
+ * as, for diagnostics (slow-query log, explain mode).
+ */
+final class QueryDsl {
+
+    // Spring Data keeps its Criteria-to-DSL conversion package-private
+    private static final Method CRITERIA_TO_QUERY = criteriaToQuery();
+
+    private static final JsonpMapper JSONP_MAPPER = new JacksonJsonpMapper();
+
+    private QueryDsl() {
+    }
+
+    /** The DSL query of {@code query}, or {@code null} if it cannot be derived. */
+    static co.elastic.clients.elasticsearch._types.query_dsl.Query toElasticsearchQuery(Query query) {
+        if (query instanceof NativeQuery nativeQuery) {
+            return nativeQuery.getQuery();
+        }
+        if (query instanceof CriteriaQuery criteriaQuery && CRITERIA_TO_QUERY != null) {
+            return (co.elastic.clients.elasticsearch._types.query_dsl.Query)
+                    ReflectionUtils.invokeMethod(CRITERIA_TO_QUERY, null, criteriaQuery.getCriteria());
+        }
+        return null;
+    }
+
+    static String toJson(co.elastic.clients.elasticsearch._types.query_dsl.Query query) {
+        return JsonpUtils.toJsonString(query, JSONP_MAPPER);
+    }
+
+    /** JSON array of the DSL of each query, skipping those that cannot be derived. */
+    static String toJsonArray(List<Query> queries) {
+        return queries.stream()
+                .map(QueryDsl::toElasticsearchQuery)
+                .filter(Objects::nonNull)
+                .map(QueryDsl::toJson)
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    /** {@code field:direction} pairs, e.g. {@code minPrice:asc,nextSessionDate:asc}. */
+    static String toString(Sort sort) {
+        return sort.stream()
+                .map(order -> order.getProperty() + ":" + order.getDirection().name().toLowerCase())
+                .collect(Collectors.joining(","));
+    }
+
+    private static Method criteriaToQuery() {
+        try {
+            Method method = Class.forName("org.springframework.data.elasticsearch.client.elc.CriteriaQueryProcessor")
+                    .getMethod("createQuery", Criteria.class);
+            ReflectionUtils.makeAccessible(method);
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
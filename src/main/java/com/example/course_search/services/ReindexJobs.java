@@ -0,0 +1,266 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.dto.ReindexStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reloads the catalog in the background, without a restart. A job opens
+ * {@link CatalogSource}, loads it into a staging index with the bulk load
+ * settings, copies the click popularity over from the active index and
+ * {@link CourseIndexLayout#promote promotes} the staging index once it is
+ * complete, so searches keep hitting the previous catalog until the switch.
+ * Catalog changes, click flushes and archive moves wait or are rejected until
+ * then, since the staging index would not get them. Jobs can be throttled to
+ * a number of documents per second, which leaves Elasticsearch capacity for
+ * searches, and cancelled; a cancelled or failed job deletes its staging
+ * index. One job runs at a time, and none while any instance, this one's
+ * startup load included, holds the catalog load lease of
+ * {@link CatalogLoadCoordinator}.
+ */
+@Component
+public class ReindexJobs {
+
+    private final CatalogSource catalogSource;
+    private final CourseIndexLayout courseIndexLayout;
+    private final CourseRouting courseRouting;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final BulkLoadTuning bulkLoadTuning;
+    private final IndexGeneration indexGeneration;
+    private final CatalogDirectoryWatcher catalogDirectoryWatcher;
+    private final CatalogLoadCoordinator catalogLoadCoordinator;
+    private final ClickCounter clickCounter;
+    private final CourseSearchProperties properties;
+
+    // The running job, or the last one that ended
+    private final AtomicReference<Job> latest = new AtomicReference<>();
+
+    public ReindexJobs(CatalogSource catalogSource, CourseIndexLayout courseIndexLayout, CourseRouting courseRouting,
+                       ElasticsearchOperations elasticsearchOperations, BulkLoadTuning bulkLoadTuning,
+                       IndexGeneration indexGeneration, CatalogDirectoryWatcher catalogDirectoryWatcher,
+                       CatalogLoadCoordinator catalogLoadCoordinator, ClickCounter clickCounter,
+                       CourseSearchProperties properties) {
+        this.catalogSource = catalogSource;
+        this.courseIndexLayout = courseIndexLayout;
+        this.courseRouting = courseRouting;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.bulkLoadTuning = bulkLoadTuning;
+        this.indexGeneration = indexGeneration;
+        this.catalogDirectoryWatcher = catalogDirectoryWatcher;
+        this.catalogLoadCoordinator = catalogLoadCoordinator;
+        this.clickCounter = clickCounter;
+        this.properties = properties;
+    }
+
+    /**
+     * Starts a job writing at most {@code rate} documents per second, or
+     * {@code course-search.reindex.rate} when {@code null}; 0 is
+     * unthrottled. Throws {@link IllegalStateException} while another job
+     * is running.
+     */
+    public ReindexStatus start(Double rate) {
+        Job job = new Job(rate != null ? rate : properties.getReindex().getRate());
+        Job previous = latest.get();
+        if ((previous != null && previous.isRunning()) || !latest.compareAndSet(previous, job)) {
+            throw new IllegalStateException("A reindex job is already running");
+        }
+        job.thread.start();
+        return job.status();
+    }
+
+    /** The running job, or the last one that ended. */
+    public Optional<ReindexStatus> status() {
+        return Optional.ofNullable(latest.get()).map(Job::status);
+    }
+
+    /** Cancels the running job; empty when none is running. */
+    public Optional<ReindexStatus> cancel() {
+        Job job = latest.get();
+        if (job == null || !job.isRunning()) {
+            return Optional.empty();
+        }
+        job.cancel();
+        return Optional.of(job.status());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancel();
+    }
+
+    private final class Job {
+
+        private final double rate;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Thread thread;
+        private volatile long totalBytes;
+        private volatile String index;
+        private volatile boolean cancelled;
+        // Set once the staging index is being promoted; a job cannot be cancelled from then on
+        private boolean committing;
+        private volatile ReindexStatus.State state = ReindexStatus.State.RUNNING;
+        private volatile String error;
+        private volatile Instant finishedAt;
+        private volatile long elapsedNanos;
+
+        private Job(double rate) {
+            this.rate = rate;
+            this.thread = new Thread(this::run, "reindex");
+            thread.setDaemon(true);
+        }
+
+        boolean isRunning() {
+            return state == ReindexStatus.State.RUNNING;
+        }
+
+        synchronized void cancel() {
+            if (!committing) {
+                cancelled = true;
+                thread.interrupt();
+            }
+        }
+
+        void run() {
+            String staging = null;
+            boolean leased = false;
+            ReindexStatus.State outcome = ReindexStatus.State.FAILED;
+            try {
+                CatalogSource.Loader catalog = catalogSource.open();
+                totalBytes = catalog.bytes();
+                // The lease keeps a restarting instance from loading the catalog at the same time
+                if (!catalogLoadCoordinator.tryAcquire(catalog.version())) {
+                    throw new IllegalStateException("Another instance is loading the catalog");
+                }
+                leased = true;
+                staging = courseIndexLayout.createStaging();
+                index = staging;
+                load(catalog, staging);
+                checkCancelled();
+                clickCounter.copyPopularity(staging);
+                synchronized (this) {
+                    checkCancelled();
+                    committing = true;
+                }
+                courseIndexLayout.promote(staging);
+                staging = null;
+                catalogLoadCoordinator.loaded(catalog.version());
+                leased = false;
+                // As after the startup load: the archive is rebuilt from the new catalog and ingested files re-applied
+                courseIndexLayout.clearArchive();
+                catalogDirectoryWatcher.resetCheckpoint();
+                indexGeneration.advance();
+                outcome = ReindexStatus.State.COMPLETED;
+                System.out.println("Reindexed " + documents.get() + " courses into " + index + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+            } catch (Exception e) {
+                if (cancelled) {
+                    outcome = ReindexStatus.State.CANCELLED;
+                    System.out.println("Reindex cancelled after " + documents.get() + " courses");
+                } else {
+                    error = e.getMessage();
+                    System.err.println("Reindex failed after " + documents.get() + " courses: " + e.getMessage());
+                }
+            } finally {
+                // A cancel interrupts the thread; the cleanup requests must not be interrupted too
+                Thread.interrupted();
+                if (staging != null) {
+                    dropStaging();
+                }
+                if (leased) {
+                    catalogLoadCoordinator.release();
+                }
+                elapsedNanos = System.nanoTime() - startNanos;
+                finishedAt = Instant.now();
+                // Last, so the next job cannot start before this one has cleaned up
+                state = outcome;
+            }
+        }
+
+        private void load(CatalogSource.Loader catalog, String staging) throws Exception {
+            CourseSearchProperties.BulkLoad config = properties.getBulkLoad();
+            BulkLoadTuning.Saved saved = config.isEnabled() ? bulkLoadTuning.begin(staging) : null;
+            IndexCoordinates target = IndexCoordinates.of(staging);
+            // Routed by category when course-search.routing.enabled is set
+            ElasticsearchOperations writer = courseRouting.routed(elasticsearchOperations);
+            catalog.load(Math.max(1, config.getBatchSize()), batch -> {
+                throttle();
+                writer.save(batch, target);
+                documents.addAndGet(batch.size());
+            }, bytes::addAndGet);
+            // The staging index is deleted on failure, so its settings only need restoring on success
+            if (saved != null) {
+                checkCancelled();
+                bulkLoadTuning.finish(staging, saved);
+            }
+        }
+
+        // Waits until writing more keeps the job at or below its rate
+        private void throttle() {
+            checkCancelled();
+            if (rate <= 0) {
+                return;
+            }
+            long due = startNanos + (long) (documents.get() / rate * 1_000_000_000L);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException();
+                }
+            }
+            checkCancelled();
+        }
+
+        private void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        private void dropStaging() {
+            try {
+                courseIndexLayout.dropStaging();
+            } catch (RuntimeException e) {
+                System.err.println("Could not delete staging index " + index + ": " + e.getMessage());
+            }
+        }
+
+        ReindexStatus status() {
+            Instant end = finishedAt;
+            double seconds = Math.max(end != null ? elapsedNanos : System.nanoTime() - startNanos, 1) / 1e9;
+            long done = bytes.get();
+            Long eta = null;
+            if (isRunning() && done > 0) {
+                eta = (long) Math.ceil(Math.max(0, totalBytes - done) / (done / seconds));
+            }
+            return ReindexStatus.builder()
+                    .state(state)
+                    .index(index)
+                    .startedAt(startedAt)
+                    .finishedAt(end)
+                    .documents(documents.get())
+                    .bytes(done)
+                    .totalBytes(totalBytes)
+                    .documentsPerSecond(documents.get() / seconds)
+                    .etaSeconds(eta)
+                    .rate(rate > 0 ? rate : null)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.course_search.services;
+
+import java.time.Duration;
+
+/**
+ * Elasticsearch could not be used for this call: the circuit is open, the
+ * backend failed or it is saturated. Callers may fall back to stale results.
+ */
+public class SearchBackendUnavailableException extends RuntimeException {
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final Duration retryAfter;
+
+    public SearchBackendUnavailableException(String message) {
+        this(message, null, DEFAULT_RETRY_AFTER);
+    }
+
+    public SearchBackendUnavailableException(String message, Throwable cause) {
+        this(message, cause, DEFAULT_RETRY_AFTER);
+    }
+
+    protected SearchBackendUnavailableException(String message, Throwable cause, Duration retryAfter) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    /** How long clients should wait before retrying. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.course_search.services;
+
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchShardStatistics;
+import org.springframework.data.elasticsearch.core.query.BaseQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * State of the API request being served on the current thread, opened by
+ * the web layer and read by the services. It carries the request's latency
+ * budget, which is handed to Elasticsearch as the search {@code timeout},
+ * and records whether a search came back incomplete because of it.
+ * <p>
+ * For the slow-query log it also keeps the canonical query, the searches
+ * sent, which tier produced the answer and a lap timer of request stages.
+ * <p>
+ * Work without an open context (startup) runs without a deadline, and so
+ * does work {@link #detached detached} from a request, such as the
+ * background refresh of a stale result.
+ */
+public final class SearchContext implements AutoCloseable {
+
+    private static final ThreadLocal<SearchContext> CURRENT = new ThreadLocal<>();
+
+    /** Never ask Elasticsearch for less than this, even when the budget is spent. */
+    static final Duration MIN_BACKEND_TIMEOUT = Duration.ofMillis(1);
+
+    private final long startNanos;
+    // Long.MAX_VALUE for a context without a deadline
+    private final long deadlineNanos;
+    private boolean partial;
+
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private final List<Query> queries = new ArrayList<>();
+    private long lapStartNanos;
+    private Duration took = Duration.ZERO;
+    private String canonicalQuery;
+    private String tier;
+    private String cacheOutcome;
+    private boolean explain;
+    private boolean historical;
+
+    private SearchContext(long startNanos, Duration budget) {
+        this.startNanos = startNanos;
+        this.deadlineNanos = budget == null ? Long.MAX_VALUE : startNanos + budget.toNanos();
+        this.lapStartNanos = startNanos;
+    }
+
+    public static SearchContext open(Duration budget) {
+        SearchContext context = new SearchContext(System.nanoTime(), budget);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Runs {@code work} on the current thread in a context without a
+     * deadline that searches the archive too when {@code historical}, for
+     * work done on behalf of a request outside of it.
+     */
+    public static <T> T detached(boolean historical, Supplier<T> work) {
+        SearchContext previous = CURRENT.get();
+        SearchContext context = new SearchContext(System.nanoTime(), null);
+        context.historical = historical;
+        CURRENT.set(context);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /** The context of the current request, or {@code null} outside of one. */
+    public static SearchContext current() {
+        return CURRENT.get();
+    }
+
+    public Duration remaining() {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return Duration.ofNanos(Long.MAX_VALUE);
+        }
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public Duration elapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /** Restarts the lap timer without attributing the time since the last lap. */
+    public void mark() {
+        lapStartNanos = System.nanoTime();
+    }
+
+    /** Adds the time since the last lap (or mark) to the given stage. */
+    public void lap(String stage) {
+        long now = System.nanoTime();
+        stageNanos.merge(stage, now - lapStartNanos, Long::sum);
+        lapStartNanos = now;
+    }
+
+    public Map<String, Duration> getStages() {
+        Map<String, Duration> stages = new LinkedHashMap<>();
+        stageNanos.forEach((stage, nanos) -> stages.put(stage, Duration.ofNanos(nanos)));
+        return stages;
+    }
+
+    /** Sum of the {@code took} reported by Elasticsearch for this request's searches. */
+    public Duration getTook() {
+        return took;
+    }
+
+    public List<Query> getQueries() {
+        return List.copyOf(queries);
+    }
+
+    public String getCanonicalQuery() {
+        return canonicalQuery;
+    }
+
+    void setCanonicalQuery(String canonicalQuery) {
+        this.canonicalQuery = canonicalQuery;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    /** How the response was served with respect to caches: miss, stale_hit, bypass, not_modified. */
+    public String getCacheOutcome() {
+        return cacheOutcome;
+    }
+
+    public void setCacheOutcome(String cacheOutcome) {
+        this.cacheOutcome = cacheOutcome;
+    }
+
+    /** Whether the client asked for the generated query to be returned with the results. */
+    public boolean isExplain() {
+        return explain;
+    }
+
+    public void setExplain(boolean explain) {
+        this.explain = explain;
+    }
+
+    /** Whether the client asked to search archived courses as well as active ones. */
+    public boolean isHistorical() {
+        return historical;
+    }
+
+    public void setHistorical(boolean historical) {
+        this.historical = historical;
+    }
+
+    /** Propagates what is left of the budget as the search timeout. */
+    void applyTo(Query query) {
+        if (!(query instanceof BaseQuery baseQuery) || deadlineNanos == Long.MAX_VALUE) {
+            return;
+        }
+        Duration remaining = remaining();
+        baseQuery.setTimeout(remaining.compareTo(MIN_BACKEND_TIMEOUT) > 0 ? remaining : MIN_BACKEND_TIMEOUT);
+    }
+
+    /**
+     * Marks the request partial when a search ran into its timeout or some
+     * shards did not answer. Spring Data does not expose {@code timed_out},
+     * so a {@code took} at or over the timeout is taken as the signal.
+     */
+    void inspect(Query query, SearchHits<?> hits) {
+        queries.add(query);
+        Duration timeout = query.getTimeout();
+        Duration took = hits.getExecutionDuration();
+        if (took != null) {
+            this.took = this.took.plus(took);
+        }
+        if (timeout != null && took != null && took.compareTo(timeout) >= 0) {
+            partial = true;
+        }
+        SearchShardStatistics shards = hits.getSearchShardStatistics();
+        if (shards != null && shards.getFailed() != null && shards.getFailed().intValue() > 0) {
+            partial = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.course_search.services;
+
+import java.time.Duration;
+
+/**
+ * The call was shed because the concurrency limit in front of Elasticsearch
+ * is reached.
+ */
+public class SearchOverloadedException extends SearchBackendUnavailableException {
+
+    public SearchOverloadedException(String message, Duration retryAfter) {
+        super(message, null, retryAfter);
+    }
+}
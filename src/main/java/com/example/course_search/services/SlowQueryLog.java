@@ -0,0 +1,228 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SlowQueryEntry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.query.Order;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the most recent requests that took longer than
+ * {@code course-search.slow-log.threshold}: canonical parameters, the query
+ * DSL sent, per-stage timings and the tier that answered. A sample of them is
+ * re-run in the background with {@code profile: true}, with the original
+ * paging, sort, source filter and timeout, and the profile is attached to the
+ * entry. Re-runs go through the circuit breaker and concurrency limiter like
+ * any other backend call and are skipped while the circuit is open.
+ */
+@Component
+public class SlowQueryLog {
+
+    private static final String INDEX = CourseDocument.class.getAnnotation(Document.class).indexName();
+
+    private final CourseSearchProperties.SlowLog config;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchCircuitBreaker circuitBreaker;
+    private final ElasticsearchConcurrencyLimiter concurrencyLimiter;
+    private final DoubleSupplier random;
+    private final Executor profiler;
+    private final JsonpMapper jsonpMapper = new JacksonJsonpMapper();
+    private final Deque<SlowQueryEntry> entries = new ArrayDeque<>();
+
+    @Autowired
+    public SlowQueryLog(CourseSearchProperties properties, ElasticsearchClient elasticsearchClient,
+                        ElasticsearchCircuitBreaker circuitBreaker, ElasticsearchConcurrencyLimiter concurrencyLimiter) {
+        this(properties, elasticsearchClient, circuitBreaker, concurrencyLimiter,
+                () -> ThreadLocalRandom.current().nextDouble(),
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-profiler");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    SlowQueryLog(CourseSearchProperties properties, ElasticsearchClient elasticsearchClient,
+                 ElasticsearchCircuitBreaker circuitBreaker, ElasticsearchConcurrencyLimiter concurrencyLimiter,
+                 DoubleSupplier random, Executor profiler) {
+        this.config = properties.getSlowLog();
+        this.elasticsearchClient = elasticsearchClient;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.random = random;
+        this.profiler = profiler;
+    }
+
+    /** Records the request if it was slow; never throws. */
+    public void record(String endpoint, SearchContext context) {
+        Duration elapsed = context.elapsed();
+        if (context.getCanonicalQuery() == null || elapsed.compareTo(config.getThreshold()) < 0) {
+            return;
+        }
+        try {
+            List<co.elastic.clients.elasticsearch._types.query_dsl.Query> queries = context.getQueries().stream()
+                    .map(QueryDsl::toElasticsearchQuery)
+                    .filter(Objects::nonNull)
+                    .toList();
+            Map<String, Double> stages = new LinkedHashMap<>();
+            context.getStages().forEach((stage, duration) -> stages.put(stage, millis(duration)));
+
+            SlowQueryEntry entry = SlowQueryEntry.builder()
+                    .timestamp(Instant.now())
+                    .endpoint(endpoint)
+                    .canonicalQuery(context.getCanonicalQuery())
+                    .tier(context.getTier())
+                    .totalMs(millis(elapsed))
+                    .tookMs(millis(context.getTook()))
+                    .stagesMs(stages)
+                    .queries(queries.stream()
+                            .map(QueryDsl::toJson)
+                            .collect(Collectors.joining(",", "[", "]")))
+                    .build();
+            System.out.println("Slow query (" + entry.getTotalMs() + " ms, tier " + entry.getTier() + "): "
+                    + entry.getCanonicalQuery() + " stages=" + stages + " took=" + entry.getTookMs() + " ms");
+            add(entry);
+
+            // Profiling is extra load, so none of it while the backend is already failing
+            if (!queries.isEmpty() && random.getAsDouble() < config.getProfileSampleRate()
+                    && circuitBreaker.getState() != ElasticsearchCircuitBreaker.State.OPEN) {
+                Query last = context.getQueries().get(context.getQueries().size() - 1);
+                profiler.execute(() -> profile(entry, queries.get(queries.size() - 1), last));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not record slow query: " + e.getMessage());
+        }
+    }
+
+    /** Most recent slow requests, newest first. */
+    public synchronized List<SlowQueryEntry> recent() {
+        return List.copyOf(entries);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (profiler instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private synchronized void add(SlowQueryEntry entry) {
+        entries.addFirst(entry);
+        while (entries.size() > Math.max(1, config.getCapacity())) {
+            entries.removeLast();
+        }
+    }
+
+    private void profile(SlowQueryEntry entry,
+                         co.elastic.clients.elasticsearch._types.query_dsl.Query query,
+                         Query original) {
+        if (circuitBreaker.getState() == ElasticsearchCircuitBreaker.State.OPEN) {
+            return;
+        }
+        try {
+            SearchRequest request = SearchRequest.of(s -> {
+                s.index(INDEX).query(query).profile(true);
+                Pageable pageable = original.getPageable();
+                if (pageable.isPaged()) {
+                    s.from((int) pageable.getOffset()).size(pageable.getPageSize());
+                }
+                s.sort(sortOptions(original));
+                SourceFilter sourceFilter = original.getSourceFilter();
+                if (sourceFilter != null) {
+                    s.source(source -> source.filter(filter -> filter
+                            .includes(list(sourceFilter.getIncludes()))
+                            .excludes(list(sourceFilter.getExcludes()))));
+                }
+                if (original.getTimeout() != null) {
+                    s.timeout(original.getTimeout().toMillis() + "ms");
+                }
+                if (original.getRoute() != null) {
+                    s.routing(original.getRoute());
+                }
+                return s;
+            });
+            var response = concurrencyLimiter.call(() -> circuitBreaker.call(() -> {
+                try {
+                    return elasticsearchClient.search(request, JsonData.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            if (response.profile() != null) {
+                entry.setProfile(JsonpUtils.toJsonString(response.profile(), jsonpMapper));
+            }
+        } catch (Exception e) {
+            System.err.println("Could not profile slow query: " + e.getMessage());
+        }
+    }
+
+    // Native sort options first, then the Spring Data sort, as the request converter orders them
+    private static List<SortOptions> sortOptions(Query original) {
+        List<SortOptions> sortOptions = new ArrayList<>();
+        if (original instanceof NativeQuery nativeQuery) {
+            sortOptions.addAll(nativeQuery.getSortOptions());
+        }
+        if (original.getSort() != null) {
+            for (Sort.Order order : original.getSort()) {
+                sortOptions.add(SortOptions.of(so -> so.field(field -> {
+                    field.field(order.getProperty()).order(order.isAscending() ? SortOrder.Asc : SortOrder.Desc);
+                    if (order instanceof Order esOrder) {
+                        Arrays.stream(FieldType.values())
+                                .filter(type -> type.jsonValue().equals(esOrder.getUnmappedType()))
+                                .findFirst()
+                                .ifPresent(field::unmappedType);
+                        if (esOrder.getMissing() != null) {
+                            field.missing(FieldValue.of(esOrder.getMissing()));
+                        }
+                    }
+                    return field;
+                })));
+            }
+        }
+        return sortOptions;
+    }
+
+    private static List<String> list(String[] values) {
+        return values == null ? List.of() : List.of(values);
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+}
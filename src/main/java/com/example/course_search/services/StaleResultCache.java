@@ -0,0 +1,77 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.dto.SearchResponse;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Last known good {@link SearchResponse} per canonical query, served (marked
+ * stale) while Elasticsearch is unavailable. Entries are refreshed in the
+ * background, one refresh per query at a time, so callers never wait for the
+ * backend to recover.
+ */
+@Component
+public class StaleResultCache {
+
+    private final Map<String, SearchResponse> results;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stale-result-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StaleResultCache(CourseSearchProperties properties) {
+        int maxEntries = properties.getStaleCache().getMaxEntries();
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized void put(String key, SearchResponse response) {
+        results.put(key, response);
+    }
+
+    public synchronized Optional<SearchResponse> get(String key) {
+        return Optional.ofNullable(results.get(key));
+    }
+
+    /**
+     * Re-runs {@code search} in the background and stores its result. While
+     * the circuit is open the call fails fast, so this is cheap until the
+     * backend is back. {@code search} runs on another thread, so it has to
+     * carry whatever it needs from the request.
+     */
+    public void refreshAsync(String key, Supplier<SearchResponse> search) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                put(key, search.get());
+            } catch (RuntimeException ignored) {
+                // still unavailable, the next stale hit schedules another attempt
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
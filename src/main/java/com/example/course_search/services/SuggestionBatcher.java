@@ -0,0 +1,212 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import jakarta.annotation.PreDestroy;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects concurrent suggestion queries for a short window
+ * ({@code course-search.suggest.batch-window}) or until
+ * {@code max-batch-size} distinct ones are waiting, and sends them to the
+ * backend together, typically as one {@code _msearch}. Identical queries in
+ * the same window share one result, sent with the latest backend timeout
+ * among them so no caller is cut short by another's deadline. Callers block
+ * until their batch is back, but no longer than what is left of their
+ * {@link SearchContext} budget: a caller whose batch is late fails with
+ * {@link SearchBackendUnavailableException}, as when the concurrency
+ * limiter or the circuit breaker turn it away. Batches whose window expired are sent from a
+ * separate pool, so a slow backend call never delays the next window's timer.
+ */
+@Component
+public class SuggestionBatcher {
+
+    /** Runs one batch; results must be in query order. */
+    @FunctionalInterface
+    public interface Backend {
+        List<SearchHits<CourseDocument>> search(List<CriteriaQuery> queries);
+    }
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sender;
+
+    private final Object lock = new Object();
+    private Map<String, Pending> pending = new LinkedHashMap<>();
+    private Backend pendingBackend;
+    private boolean flushScheduled;
+
+    public SuggestionBatcher(CourseSearchProperties properties) {
+        CourseSearchProperties.Suggest config = properties.getSuggest();
+        this.windowNanos = config.getBatchWindow().toNanos();
+        this.maxBatchSize = Math.max(1, config.getMaxBatchSize());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suggest-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threads = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, config.getBatchThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "suggest-batch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs {@code query} as part of the next batch. Queries with the same
+     * {@code key} in one window are sent once.
+     */
+    public SearchHits<CourseDocument> search(String key, CriteriaQuery query, Backend backend) {
+        if (windowNanos <= 0) {
+            return backend.search(List.of(query)).get(0);
+        }
+
+        Pending entry;
+        Batch full = null;
+        synchronized (lock) {
+            entry = pending.get(key);
+            if (entry == null) {
+                entry = new Pending(query);
+                pending.put(key, entry);
+            } else {
+                entry.share(query);
+            }
+            if (pendingBackend == null) {
+                pendingBackend = backend;
+            }
+            if (pending.size() >= maxBatchSize) {
+                full = drain();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flushWindow, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        // The caller that fills a batch sends it, without a thread hand-off
+        if (full != null) {
+            full.send();
+        }
+
+        SearchContext context = SearchContext.current();
+        try {
+            if (context == null) {
+                return entry.result().get();
+            }
+            return entry.result().get(context.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new SearchBackendUnavailableException("Suggestion batch did not return within the request deadline");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchBackendUnavailableException("Interrupted while waiting for a suggestion batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private void flushWindow() {
+        Batch batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        if (batch != null) {
+            try {
+                sender.execute(batch::send);
+            } catch (RejectedExecutionException e) {
+                batch.fail(e);
+            }
+        }
+    }
+
+    private Batch drain() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Batch batch = new Batch(new ArrayList<>(pending.values()), pendingBackend);
+        pending = new LinkedHashMap<>();
+        pendingBackend = null;
+        return batch;
+    }
+
+    private static final class Pending {
+
+        private final CompletableFuture<SearchHits<CourseDocument>> result = new CompletableFuture<>();
+        private CriteriaQuery query;
+        private long deadlineNanos;
+
+        Pending(CriteriaQuery query) {
+            this.query = query;
+            this.deadlineNanos = deadline(query);
+        }
+
+        CriteriaQuery query() {
+            return query;
+        }
+
+        CompletableFuture<SearchHits<CourseDocument>> result() {
+            return result;
+        }
+
+        // Keeps whichever query's backend timeout ends last; one without a timeout outlasts all
+        void share(CriteriaQuery other) {
+            if (query.getTimeout() == null) {
+                return;
+            }
+            long otherDeadline = deadline(other);
+            if (other.getTimeout() == null || otherDeadline - deadlineNanos > 0) {
+                query = other;
+                deadlineNanos = otherDeadline;
+            }
+        }
+
+        private static long deadline(CriteriaQuery query) {
+            Duration timeout = query.getTimeout();
+            return timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+        }
+    }
+
+    private record Batch(List<Pending> entries, Backend backend) {
+        void send() {
+            try {
+                List<SearchHits<CourseDocument>> results =
+                        backend.search(entries.stream().map(Pending::query).toList());
+                for (int i = 0; i < entries.size(); i++) {
+                    entries.get(i).result().complete(results.get(i));
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        void fail(RuntimeException e) {
+            entries.forEach(entry -> entry.result().completeExceptionally(e));
+        }
+    }
+}
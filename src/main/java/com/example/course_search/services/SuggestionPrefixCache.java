@@ -0,0 +1,138 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Suggestion titles per lowercase prefix, so that typing "m", "ma", "mat",
+ * "math" does not cost a backend query per keystroke. An entry is complete
+ * when Elasticsearch returned fewer hits than asked for, i.e. it holds every
+ * title with that prefix; any longer prefix is then answered by narrowing it
+ * in memory. Empty entries (no match) expire after
+ * {@code course-search.suggest.negative-ttl}; everything is dropped when the
+ * index generation changes, and the prefixes of a title when click counts
+ * change its popularity.
+ */
+@Component
+public class SuggestionPrefixCache {
+
+    public static final String HIT = "hit";
+    public static final String NARROWED = "narrowed";
+    public static final String NEGATIVE_HIT = "negative_hit";
+
+    private final IndexGeneration indexGeneration;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoTime;
+    private final Map<String, Entry> entries;
+    private long generation = -1;
+
+    @Autowired
+    public SuggestionPrefixCache(IndexGeneration indexGeneration, CourseSearchProperties properties) {
+        this(indexGeneration, properties, System::nanoTime);
+    }
+
+    SuggestionPrefixCache(IndexGeneration indexGeneration, CourseSearchProperties properties, LongSupplier nanoTime) {
+        this.indexGeneration = indexGeneration;
+        this.negativeTtlNanos = properties.getSuggest().getNegativeTtl().toNanos();
+        this.nanoTime = nanoTime;
+        int maxEntries = properties.getSuggest().getCacheMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Suggestions for {@code prefix} (lowercase) from the cache, either from
+     * its own entry or narrowed from a complete entry of a shorter prefix.
+     */
+    public synchronized Optional<Lookup> lookup(String prefix, int size) {
+        resetOnReindex();
+        Entry exact = live(prefix);
+        // An incomplete entry is only the first fetchedSize titles, so it answers the same size only
+        if (exact != null && (exact.complete() || exact.fetchedSize() == size)) {
+            return Optional.of(new Lookup(limit(exact.titles(), size), exact.titles().isEmpty() ? NEGATIVE_HIT : HIT));
+        }
+        for (int end = prefix.length() - 1; end > 0; end--) {
+            Entry shorter = live(prefix.substring(0, end));
+            if (shorter != null && shorter.complete()) {
+                List<String> narrowed = shorter.titles().stream()
+                        .filter(title -> title.toLowerCase().startsWith(prefix))
+                        .toList();
+                store(prefix, narrowed, true, size);
+                return Optional.of(new Lookup(limit(narrowed, size), narrowed.isEmpty() ? NEGATIVE_HIT : NARROWED));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Remembers the distinct titles starting with {@code prefix} from a query
+     * of {@code fetchedSize} hits; {@code complete} if there were fewer.
+     */
+    public synchronized void put(String prefix, List<String> titles, boolean complete, int fetchedSize) {
+        resetOnReindex();
+        store(prefix, List.copyOf(titles), complete, fetchedSize);
+    }
+
+    /**
+     * Drops the entries of every prefix of {@code titles}, whose order among
+     * the other titles with that prefix may have changed with their
+     * popularity. Other prefixes never listed these titles and stay valid.
+     */
+    public synchronized void invalidate(Collection<String> titles) {
+        Set<String> prefixes = new HashSet<>();
+        for (String title : titles) {
+            String lowercase = title.toLowerCase();
+            for (int end = 1; end <= lowercase.length(); end++) {
+                prefixes.add(lowercase.substring(0, end));
+            }
+        }
+        entries.keySet().removeAll(prefixes);
+    }
+
+    private void store(String prefix, List<String> titles, boolean complete, int fetchedSize) {
+        long expiresAt = titles.isEmpty() ? nanoTime.getAsLong() + negativeTtlNanos : Long.MAX_VALUE;
+        entries.put(prefix, new Entry(titles, complete, fetchedSize, expiresAt));
+    }
+
+    private Entry live(String prefix) {
+        Entry entry = entries.get(prefix);
+        if (entry != null && entry.expiresAtNanos() != Long.MAX_VALUE && nanoTime.getAsLong() - entry.expiresAtNanos() >= 0) {
+            entries.remove(prefix);
+            return null;
+        }
+        return entry;
+    }
+
+    private void resetOnReindex() {
+        long current = indexGeneration.current();
+        if (current != generation) {
+            entries.clear();
+            generation = current;
+        }
+    }
+
+    private static List<String> limit(List<String> titles, int size) {
+        return titles.size() <= size ? titles : titles.subList(0, size);
+    }
+
+    /** Cached suggestions and how they were found: hit, narrowed or negative_hit. */
+    public record Lookup(List<String> suggestions, String outcome) {
+    }
+
+    private record Entry(List<String> titles, boolean complete, int fetchedSize, long expiresAtNanos) {
+    }
+}
@@ -2,58 +2,143 @@ package com.example.course_search.services;
 
 import com.example.course_search.document.CourseDocument;
 import com.example.course_search.dto.SuggestionResponse;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.Order;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class SuggestionService {
 
+    // Most clicked first; courses never clicked have no popularity and come last
+    private static final Sort BY_POPULARITY =
+            Sort.by(new Order(Sort.Direction.DESC, "popularity").withUnmappedType("long"));
+
     private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchCircuitBreaker circuitBreaker;
+    private final ElasticsearchConcurrencyLimiter concurrencyLimiter;
+    private final ObservationRegistry observationRegistry;
+    private final SuggestionPrefixCache prefixCache;
+    private final SuggestionBatcher batcher;
 
     public SuggestionResponse getSuggestions(String query, int size) {
+        Observation observation = Observation.createNotStarted("course_search.suggest", observationRegistry);
+        return observation.observe(() -> {
+            SuggestionResponse response = doGetSuggestions(query, size, observation);
+            observation.highCardinalityKeyValue("hits", String.valueOf(response.getSuggestions().size()));
+            return response;
+        });
+    }
+
+    private SuggestionResponse doGetSuggestions(String query, int size, Observation observation) {
         if (query == null || query.trim().isEmpty()) {
             return SuggestionResponse.builder()
                     .suggestions(List.of())
                     .build();
         }
 
+        String prefix = query.toLowerCase();
+        SearchContext context = SearchContext.current();
+        if (context != null) {
+            context.setCanonicalQuery(CanonicalQuery.suggest(prefix, size));
+            context.setTier("prefix");
+        }
+        Optional<SuggestionPrefixCache.Lookup> cached = prefixCache.lookup(prefix, size);
+        if (cached.isPresent()) {
+            cacheOutcome(observation, context, cached.get().outcome());
+            return SuggestionResponse.builder()
+                    .suggestions(cached.get().suggestions())
+                    .build();
+        }
+        cacheOutcome(observation, context, "miss");
+
         try {
             Criteria criteria = new Criteria("title").startsWith(query.toLowerCase());
             CriteriaQuery searchQuery = new CriteriaQuery(criteria);
 
             Pageable pageable = PageRequest.of(0, size);
             searchQuery.setPageable(pageable);
+            searchQuery.addSort(BY_POPULARITY);
+            // Only the title is read back, so skip the rest of _source
+            searchQuery.addSourceFilter(new FetchSourceFilter(true, new String[]{"title"}, null));
+            if (context != null) {
+                context.lap("build");
+                context.applyTo(searchQuery);
+            }
 
-            SearchHits<CourseDocument> searchHits = elasticsearchOperations.search(searchQuery, CourseDocument.class);
+            Observation esObservation = Observation.createNotStarted("course_search.es.search", observationRegistry);
+            SearchHits<CourseDocument> searchHits = esObservation.observe(() -> {
+                SearchHits<CourseDocument> result = batcher.search(prefix + "|" + size, searchQuery, this::searchBatch);
+                esObservation.highCardinalityKeyValue("hits", String.valueOf(result.getTotalHits()));
+                if (result.getExecutionDuration() != null) {
+                    esObservation.highCardinalityKeyValue("es.took_ms",
+                            String.valueOf(result.getExecutionDuration().toMillis()));
+                }
+                return result;
+            });
+            if (context != null) {
+                context.lap("elasticsearch");
+                context.inspect(searchQuery, searchHits);
+            }
 
-            List<String> suggestions = searchHits.stream()
+            List<String> titles = searchHits.stream()
                     .map(hit -> hit.getContent().getTitle())
-                    .filter(title -> title.toLowerCase().startsWith(query.toLowerCase())) // Extra filter for case sensitivity
+                    .toList();
+            List<String> candidates = titles.stream()
+                    .filter(title -> title.toLowerCase().startsWith(prefix)) // Extra filter for case sensitivity
                     .distinct()
+                    .toList();
+            // Fewer hits than asked for means every title with this prefix is in hand
+            if (context == null || !context.isPartial()) {
+                prefixCache.put(prefix, candidates, titles.size() < size, size);
+            }
+            List<String> suggestions = candidates.stream()
                     .limit(size)
                     .collect(Collectors.toList());
+            if (context != null) {
+                context.lap("mapping");
+            }
 
             return SuggestionResponse.builder()
                     .suggestions(suggestions)
                     .build();
 
+        } catch (SearchBackendUnavailableException e) {
+            // Open circuit or over the concurrency limit: answered with 503 and Retry-After, not an empty list
+            throw e;
         } catch (Exception e) {
             System.err.println("Error in suggestion search: " + e.getMessage());
-            e.printStackTrace(); // For debugging purpose only I used
-
             return SuggestionResponse.builder()
                     .suggestions(List.of())
                     .build();
         }
     }
+
+    // One backend call per batch, so a batch takes one concurrency permit
+    private List<SearchHits<CourseDocument>> searchBatch(List<CriteriaQuery> queries) {
+        return concurrencyLimiter.call(() -> circuitBreaker.call(() -> queries.size() == 1
+                ? List.of(elasticsearchOperations.search(queries.get(0), CourseDocument.class))
+                : elasticsearchOperations.multiSearch(queries, CourseDocument.class)));
+    }
+
+    private void cacheOutcome(Observation observation, SearchContext context, String outcome) {
+        observation.lowCardinalityKeyValue("cache.outcome", outcome);
+        if (context != null) {
+            context.setCacheOutcome(outcome);
+        }
+    }
 }
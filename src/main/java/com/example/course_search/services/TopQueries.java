@@ -0,0 +1,49 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts canonical queries served over HTTP so the most frequent ones can be
+ * exported as a warmup corpus. Once {@code course-search.warmup.tracked-queries}
+ * distinct queries are tracked, new ones are ignored; the head of the
+ * distribution is usually established long before that.
+ */
+@Component
+public class TopQueries {
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final int maxTracked;
+
+    public TopQueries(CourseSearchProperties properties) {
+        this.maxTracked = properties.getWarmup().getTrackedQueries();
+    }
+
+    public void record(String canonicalQuery) {
+        LongAdder count = counts.get(canonicalQuery);
+        if (count == null) {
+            if (counts.size() >= maxTracked) {
+                return;
+            }
+            count = counts.computeIfAbsent(canonicalQuery, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /** The {@code limit} most frequent queries, most frequent first. */
+    public List<String> top(int limit) {
+        return counts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
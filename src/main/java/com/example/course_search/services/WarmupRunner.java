@@ -0,0 +1,180 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays a corpus of canonical queries through {@link CourseSearchService}
+ * and {@link SuggestionService} once the index is loaded. Application runners
+ * complete before Spring Boot reports readiness, so traffic only arrives once
+ * the JIT, the Elasticsearch query and filter caches and our own caches are
+ * warm. Responses are also serialized to warm Jackson and the pre-encoded
+ * course cache. Warmup failures are counted and never stop startup.
+ */
+@Component
+@Order(DataIndexer.ORDER + 1)
+@RequiredArgsConstructor
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final String CRITERIA_PREFIX = "criteria:";
+
+    private final CourseSearchService courseSearchService;
+    private final SuggestionService suggestionService;
+    private final ObjectMapper objectMapper;
+    private final CourseSearchProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        CourseSearchProperties.Warmup config = properties.getWarmup();
+        if (!config.isEnabled()) {
+            return;
+        }
+        List<String> corpus = readCorpus(config.getCorpus());
+        if (corpus.isEmpty()) {
+            System.out.println("Warmup skipped: no queries in " + config.getCorpus().getDescription());
+            return;
+        }
+
+        int parallelism = Math.max(1, config.getParallelism());
+        AtomicInteger replayed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int round = 0; round < config.getRounds(); round++) {
+                for (String query : corpus) {
+                    pool.execute(() -> {
+                        try {
+                            objectMapper.writeValueAsBytes(replay(query));
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        } finally {
+                            replayed.incrementAndGet();
+                        }
+                    });
+                }
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(config.getTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                System.err.println("Warmup did not finish within " + config.getTimeout() + ", continuing startup");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Warmup replayed " + replayed.get() + " queries (" + corpus.size() + " distinct, "
+                + failed.get() + " failed) in " + millis + " ms with parallelism " + parallelism);
+    }
+
+    /** Runs one canonical query, as produced by {@link CanonicalQuery} or the suggestion service. */
+    Object replay(String canonicalQuery) {
+        boolean criteria = canonicalQuery.startsWith(CRITERIA_PREFIX);
+        String query = criteria ? canonicalQuery.substring(CRITERIA_PREFIX.length()) : canonicalQuery;
+        int separator = query.indexOf('?');
+        String endpoint = separator < 0 ? query : query.substring(0, separator);
+        Map<String, String> params = params(separator < 0 ? "" : query.substring(separator + 1));
+
+        if (Boolean.parseBoolean(params.get("historical"))) {
+            // The services take the index to search from the request context
+            try (SearchContext context = SearchContext.open(properties.getWarmup().getTimeout())) {
+                context.setHistorical(true);
+                return replay(canonicalQuery, endpoint, criteria, params);
+            }
+        }
+        return replay(canonicalQuery, endpoint, criteria, params);
+    }
+
+    private Object replay(String canonicalQuery, String endpoint, boolean criteria, Map<String, String> params) {
+        String sort = params.getOrDefault("sort", "upcoming");
+        int page = intParam(params, "page", 0);
+        int size = intParam(params, "size", 10);
+        FieldProjection projection = FieldProjection.parse(params.get("fields"));
+
+        return switch (endpoint) {
+            case "search" -> criteria
+                    ? courseSearchService.searchCourses(params.get("q"),
+                            integer(params.get("minAge")), integer(params.get("maxAge")),
+                            decimal(params.get("minPrice")), decimal(params.get("maxPrice")),
+                            params.get("category"), params.get("type"), date(params.get("nextSessionDate")),
+                            sort, page, size, projection)
+                    : courseSearchService.searchCoursesWithFuzzy(params.get("q"),
+                            integer(params.get("minAge")), integer(params.get("maxAge")),
+                            decimal(params.get("minPrice")), decimal(params.get("maxPrice")),
+                            params.get("category"), params.get("type"), date(params.get("nextSessionDate")),
+                            sort, page, size, projection);
+            case "allCourses" -> courseSearchService.findAllCourses(sort, page, size, projection);
+            case "suggest" -> suggestionService.getSuggestions(params.get("q"), size);
+            default -> throw new IllegalArgumentException("Unknown warmup query: " + canonicalQuery);
+        };
+    }
+
+    private static List<String> readCorpus(Resource corpus) throws IOException {
+        if (corpus == null || !corpus.exists()) {
+            return List.of();
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(corpus.getInputStream(), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .toList();
+        }
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static Integer integer(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static Double decimal(String value) {
+        return value == null ? null : Double.valueOf(value);
+    }
+
+    private static OffsetDateTime date(String value) {
+        return value == null ? null : OffsetDateTime.parse(value);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.course_search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time and resident memory of the plain jar, the jar with its
+ * AppCDS archive ({@code -Pcds}) and the native image ({@code -Pnative}).
+ * Each mode is started {@code -Dbenchmark.runs} times (default 5) and timed
+ * until Spring reports the application started, which is before the
+ * catalog load runs; RSS is read at that point. The load needs
+ * Elasticsearch at {@code -Des.url} (default {@code http://localhost:9200}).
+ * Modes whose build output is missing are skipped. Build first, then run
+ * with {@code mvn test -Dtest=StartupBenchmarkIT -Dsurefire.failIfNoSpecifiedTests=false}.
+ */
+@DisplayName("Startup benchmark")
+class StartupBenchmarkIT {
+
+    private static final String STARTED = "Started CourseSearchApplication";
+    private static final Path TARGET = Path.of("target");
+    private static final String JAR = System.getProperty("benchmark.jar", "course-search-0.0.1-SNAPSHOT.jar");
+
+    @Test
+    @DisplayName("Startup time and RSS per packaging")
+    void shouldCompareStartup() throws Exception {
+        int runs = Integer.getInteger("benchmark.runs", 5);
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        report("jar", TARGET.resolve(JAR), runs, List.of(java, "-jar", TARGET.resolve(JAR).toString()));
+        Path cds = TARGET.resolve("cds");
+        report("jar+cds", cds.resolve("application.jsa"), runs, List.of(java,
+                "-XX:SharedArchiveFile=" + cds.resolve("application.jsa"), "-jar", cds.resolve(JAR).toString()));
+        report("native", TARGET.resolve("course-search"), runs, List.of(TARGET.resolve("course-search").toString()));
+    }
+
+    private static void report(String mode, Path artifact, int runs, List<String> command) throws Exception {
+        if (!Files.exists(artifact)) {
+            System.out.printf("%-8s not built (%s missing)%n", mode, artifact);
+            return;
+        }
+        List<Long> millis = new ArrayList<>();
+        List<Long> rssKb = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            long[] sample = start(command);
+            millis.add(sample[0]);
+            rssKb.add(sample[1]);
+        }
+        Collections.sort(millis);
+        Collections.sort(rssKb);
+        System.out.printf("%-8s startup %6d ms   RSS %6.1f MB   (median of %d)%n",
+                mode, millis.get(runs / 2), rssKb.get(runs / 2) / 1024.0, runs);
+    }
+
+    // Milliseconds until the started line, and RSS in KB at that point
+    private static long[] start(List<String> command) throws Exception {
+        List<String> withArgs = new ArrayList<>(command);
+        withArgs.addAll(List.of("--server.port=0", "--course-search.warmup.enabled=false",
+                "--spring.elasticsearch.uris=" + System.getProperty("es.url", "http://localhost:9200")));
+        long begin = System.nanoTime();
+        Process process = new ProcessBuilder(withArgs).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.contains(STARTED)) {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                    return new long[]{elapsed, rssKb(process.pid())};
+                }
+            }
+            throw new IllegalStateException("Exited with " + process.waitFor() + " before starting: " + command);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static long rssKb(long pid) throws IOException, InterruptedException {
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(pid)).start();
+        String rss = new String(ps.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        ps.waitFor();
+        return Long.parseLong(rss);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.course_search.controllers;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SearchResponse;
+import com.example.course_search.services.ClickCounter;
+import com.example.course_search.services.CourseSearchService;
+import com.example.course_search.services.IndexGeneration;
+import com.example.course_search.services.SuggestionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link CourseSearchController} behind the embedded Tomcat with the
+ * application's {@code server.compression} settings, which MockMvc bypasses.
+ */
+@SpringBootTest(classes = CourseSearchCompressionTest.Web.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DisplayName("CourseSearchController compression")
+class CourseSearchCompressionTest {
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import({CourseSearchController.class, IndexGeneration.class})
+    @EnableConfigurationProperties(CourseSearchProperties.class)
+    static class Web {
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoBean
+    private CourseSearchService courseSearchService;
+
+    @MockitoBean
+    private SuggestionService suggestionService;
+
+    @MockitoBean
+    private ClickCounter clickCounter;
+
+    @MockitoBean
+    private IndexGeneration.Store generationStore;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    @DisplayName("Compresses large cacheable pages and still revalidates them by ETag")
+    void shouldCompressPagesWithEtag() throws Exception {
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any())).thenReturn(page());
+
+        HttpResponse<byte[]> response = get(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)).hasValue("gzip");
+        String etag = response.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+        assertThat(etag).startsWith("W/\"");
+        assertThat(gunzip(response.body())).contains("\"total\":50");
+
+        HttpResponse<byte[]> revalidated = get(HttpHeaders.ACCEPT_ENCODING, "gzip", HttpHeaders.IF_NONE_MATCH, etag);
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+    }
+
+    private HttpResponse<byte[]> get(String... headers) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/allCourses"))
+                .headers(headers)
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static SearchResponse page() {
+        return SearchResponse.builder()
+                .total(50L)
+                .courses(IntStream.range(0, 50)
+                        .mapToObj(i -> CourseDocument.builder()
+                                .id("C" + i)
+                                .title("Course number " + i)
+                                .description("A hands-on course with plenty of practice, number " + i)
+                                .category("Math")
+                                .build())
+                        .toList())
+                .build();
+    }
+}
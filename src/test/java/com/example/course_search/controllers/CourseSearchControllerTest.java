@@ -1,28 +1,59 @@
 package com.example.course_search.controllers;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.course_search.config.CourseSearchProperties;
 import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SearchExplanation;
 import com.example.course_search.dto.SearchResponse;
 import com.example.course_search.dto.SuggestionResponse;
+import com.example.course_search.services.ClickCounter;
 import com.example.course_search.services.CourseSearchService;
+import com.example.course_search.services.ElasticsearchCircuitBreaker;
+import com.example.course_search.services.ElasticsearchConcurrencyLimiter;
+import com.example.course_search.services.FieldProjection;
+import com.example.course_search.services.IndexGeneration;
+import com.example.course_search.services.SearchContext;
+import com.example.course_search.services.SearchBackendUnavailableException;
+import com.example.course_search.services.SearchOverloadedException;
+import com.example.course_search.services.SlowQueryLog;
 import com.example.course_search.services.SuggestionService;
+import com.example.course_search.services.TopQueries;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;  //
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(CourseSearchController.class)
+@Import({IndexGeneration.class, SlowQueryLog.class, TopQueries.class,
+        ElasticsearchCircuitBreaker.class, ElasticsearchConcurrencyLimiter.class})
+@EnableConfigurationProperties(CourseSearchProperties.class)
 @DisplayName("CourseSearchController Unit Tests")
 class CourseSearchControllerTest {
 
@@ -35,6 +66,18 @@ class CourseSearchControllerTest {
     @MockitoBean  //
     private SuggestionService suggestionService;
 
+    @MockitoBean
+    private ClickCounter clickCounter;
+
+    @MockitoBean
+    private ElasticsearchClient elasticsearchClient;
+
+    @MockitoBean
+    private IndexGeneration.Store generationStore;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
     @Test
     @DisplayName("Should search courses with query parameter")
     void shouldSearchCoursesWithQuery() throws Exception {
@@ -53,7 +96,7 @@ class CourseSearchControllerTest {
 
         when(courseSearchService.searchCoursesWithFuzzy(
                 anyString(), any(), any(), any(), any(),
-                any(), any(), any(), anyString(), anyInt(), anyInt()
+                any(), any(), any(), anyString(), anyInt(), anyInt(), any()
         )).thenReturn(searchResponse);
 
         // When & Then
@@ -78,7 +121,7 @@ class CourseSearchControllerTest {
                 .courses(List.of())
                 .build();
 
-        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt()))
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
                 .thenReturn(searchResponse);
 
         // When & Then
@@ -120,7 +163,7 @@ class CourseSearchControllerTest {
 
         when(courseSearchService.searchCoursesWithFuzzy(
                 anyString(), any(), any(), any(), any(),
-                any(), any(), any(), anyString(), anyInt(), anyInt()
+                any(), any(), any(), anyString(), anyInt(), anyInt(), any()
         )).thenReturn(searchResponse);
 
         // When & Then
@@ -155,4 +198,339 @@ class CourseSearchControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.suggestions", hasSize(0)));
     }
+
+    @Test
+    @DisplayName("Should pass the requested field projection to the service")
+    void shouldPassFieldProjection() throws Exception {
+        // Given
+        SearchResponse searchResponse = SearchResponse.builder()
+                .total(0L)
+                .courses(List.of())
+                .build();
+
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(searchResponse);
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses")
+                        .param("fields", "title,minPrice"))
+                .andExpect(status().isOk());
+
+        verify(courseSearchService).findAllCourses("upcoming", 0, 10,
+                FieldProjection.of("id", "title", "minPrice"));
+    }
+
+    @Test
+    @DisplayName("Should reject unknown projection fields")
+    void shouldRejectUnknownProjectionFields() throws Exception {
+        mockMvc.perform(get("/api/allCourses")
+                        .param("fields", "title,password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should answer a matching If-None-Match with 304 without searching")
+    void shouldAnswerMatchingEtagWithNotModified() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(0L).courses(List.of()).build());
+
+        String etag = mockMvc.perform(get("/api/allCourses").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, public"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses").param("page", "1")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        verify(courseSearchService).findAllCourses("upcoming", 1, 10, null);
+    }
+
+    @Test
+    @DisplayName("Should derive the ETag from the negotiated encoding, not the raw Accept header")
+    void shouldKeyEtagOnNegotiatedEncoding() throws Exception {
+        // Given
+        when(courseSearchService.searchCoursesWithFuzzy(
+                anyString(), any(), any(), any(), any(),
+                any(), any(), any(), anyString(), anyInt(), anyInt(), any()
+        )).thenReturn(SearchResponse.builder().total(0L).courses(List.of()).build());
+
+        // When
+        String browser = mockMvc.perform(get("/api/search").param("q", "math")
+                        .header(HttpHeaders.ACCEPT, "text/html,application/json;q=0.9,*/*;q=0.8"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String json = mockMvc.perform(get("/api/search").param("q", "math")
+                        .header(HttpHeaders.ACCEPT, "application/json"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String smile = mockMvc.perform(get("/api/search").param("q", "math")
+                        .header(HttpHeaders.ACCEPT, "application/x-jackson-smile"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Then
+        assertThat(browser).isEqualTo(json);
+        assertThat(smile).isNotEqualTo(json);
+    }
+
+    @Test
+    @DisplayName("Should change the ETag when the index generation advances")
+    void shouldChangeEtagOnReindex() throws Exception {
+        // Given
+        when(courseSearchService.searchCoursesWithFuzzy(
+                anyString(), any(), any(), any(), any(),
+                any(), any(), any(), anyString(), anyInt(), anyInt(), any()
+        )).thenReturn(SearchResponse.builder().total(0L).courses(List.of()).build());
+
+        String etag = mockMvc.perform(get("/api/search").param("q", "math"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When
+        indexGeneration.advance();
+
+        // Then
+        mockMvc.perform(get("/api/search").param("q", "math")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Should encode search results as Smile when asked for it")
+    void shouldEncodeSearchResultsAsSmile() throws Exception {
+        // Given
+        CourseDocument course = CourseDocument.builder()
+                .id("1")
+                .title("Java Programming")
+                .build();
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(1L).courses(List.of(course)).build());
+
+        // When
+        byte[] body = mockMvc.perform(get("/api/allCourses")
+                        .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andExpect(header().string(HttpHeaders.VARY, "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode decoded = new SmileMapper().readTree(body);
+        assertThat(decoded.get("total").asLong()).isEqualTo(1L);
+        assertThat(decoded.get("courses").get(0).get("title").asText()).isEqualTo("Java Programming");
+    }
+
+    @Test
+    @DisplayName("Should encode suggestions as CBOR when asked for it")
+    void shouldEncodeSuggestionsAsCbor() throws Exception {
+        // Given
+        when(suggestionService.getSuggestions(anyString(), anyInt()))
+                .thenReturn(SuggestionResponse.builder().suggestions(List.of("Java Programming")).build());
+
+        // When
+        byte[] body = mockMvc.perform(get("/api/search/suggest")
+                        .param("q", "Java")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        JsonNode decoded = new CBORMapper().readTree(body);
+        assertThat(decoded.get("suggestions").get(0).asText()).isEqualTo("Java Programming");
+    }
+
+    @Test
+    @DisplayName("Should not cache stale fallback results")
+    void shouldNotCacheStaleResults() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(0L).courses(List.of()).stale(true).build());
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(jsonPath("$.stale", is(true)));
+    }
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After when search is unavailable")
+    void shouldAnswerServiceUnavailableWhenBackendIsDown() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenThrow(new SearchBackendUnavailableException("Elasticsearch circuit is OPEN"));
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    @DisplayName("Should shed overloaded requests with 503 and a short Retry-After")
+    void shouldShedOverloadedRequests() throws Exception {
+        // Given
+        when(suggestionService.getSuggestions(anyString(), anyInt()))
+                .thenThrow(new SearchOverloadedException("limit reached", Duration.ofSeconds(1)));
+
+        // When & Then
+        mockMvc.perform(get("/api/search/suggest").param("q", "Java"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    @DisplayName("Should not cache partial results")
+    void shouldNotCachePartialResults() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(0L).courses(List.of()).partial(true).build());
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(jsonPath("$.partial", is(true)));
+    }
+
+    @Test
+    @DisplayName("Should open a search context with the client's budget, capped at the maximum")
+    void shouldOpenSearchContextWithRequestedBudget() throws Exception {
+        // Given
+        Duration[] remaining = new Duration[2];
+        when(suggestionService.getSuggestions(anyString(), anyInt())).thenAnswer(invocation -> {
+            remaining[remaining[0] == null ? 0 : 1] = SearchContext.current().remaining();
+            return SuggestionResponse.builder().suggestions(List.of()).build();
+        });
+
+        // When
+        mockMvc.perform(get("/api/search/suggest").param("q", "Java")
+                        .header(SearchContextInterceptor.BUDGET_HEADER, "5000"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/search/suggest").param("q", "Java")
+                        .header(SearchContextInterceptor.BUDGET_HEADER, "60000"))
+                .andExpect(status().isOk());
+
+        // Then
+        assertThat(remaining[0]).isGreaterThan(Duration.ofSeconds(4)).isLessThanOrEqualTo(Duration.ofSeconds(5));
+        assertThat(remaining[1]).isGreaterThan(Duration.ofSeconds(9)).isLessThanOrEqualTo(Duration.ofSeconds(10));
+        assertThat(SearchContext.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should send a Server-Timing breakdown with the cache outcome")
+    void shouldSendServerTiming() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(0L).courses(List.of()).build());
+        mockMvc.perform(get("/api/allCourses"))
+                .andExpect(header().string(ServerTimingFilter.SERVER_TIMING, containsString("total;dur=")))
+                .andExpect(header().doesNotExist(HttpHeaders.TRAILER));
+
+        // The header goes out before the body streams, so it estimates serialization from earlier responses
+        String etag = mockMvc.perform(get("/api/allCourses"))
+                .andExpect(header().string(ServerTimingFilter.SERVER_TIMING, containsString("total;dur=")))
+                .andExpect(header().string(ServerTimingFilter.SERVER_TIMING,
+                        matchesPattern("^serialize;dur=\\d+\\.\\d{2};desc=estimate, .*")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(ServerTimingFilter.SERVER_TIMING, containsString("cache;desc=not_modified")));
+    }
+
+    @Test
+    @DisplayName("Should announce the serialize phase as a trailer to clients that accept trailers")
+    void shouldAnnounceServerTimingTrailer() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(SearchResponse.builder().total(0L).courses(List.of()).build());
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses").header(HttpHeaders.TE, "trailers"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.TRAILER, ServerTimingFilter.SERVER_TIMING));
+        try (SearchContext context = SearchContext.open(Duration.ofSeconds(1))) {
+            assertThat(ServerTimingFilter.serializeTiming(context)).isNull();
+            context.lap("serialization");
+            assertThat(ServerTimingFilter.serializeTiming(context)).startsWith("serialize;dur=");
+        }
+    }
+
+    @Test
+    @DisplayName("Should run explain requests without revalidation and never cache them")
+    void shouldExplainWithoutCaching() throws Exception {
+        // Given
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            assertThat(SearchContext.current().isExplain()).isTrue();
+            return SearchResponse.builder().total(0L).courses(List.of())
+                    .explain(SearchExplanation.builder().tier("match_all").queries("[{\"match_all\":{}}]").build())
+                    .build();
+        });
+        String etag = "W/\"" + indexGeneration.current() + "-anything\"";
+
+        // When & Then
+        mockMvc.perform(get("/api/allCourses").param("explain", "true")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(jsonPath("$.explain.tier", is("match_all")))
+                .andExpect(jsonPath("$.explain.queries[0].match_all").exists());
+    }
+
+    @Test
+    @DisplayName("Should search the archive only when asked, under a separate ETag")
+    void shouldSearchHistoricallyWhenAsked() throws Exception {
+        // Given
+        List<Boolean> historical = new ArrayList<>();
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            historical.add(SearchContext.current().isHistorical());
+            return SearchResponse.builder().total(0L).courses(List.of()).build();
+        });
+
+        // When
+        String active = mockMvc.perform(get("/api/allCourses"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String all = mockMvc.perform(get("/api/allCourses").param("historical", "true"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Then
+        assertThat(historical).containsExactly(false, true);
+        assertThat(all).isNotEqualTo(active);
+    }
+
+    @Test
+    @DisplayName("Should accept result and suggestion clicks")
+    void shouldRecordClicks() throws Exception {
+        mockMvc.perform(post("/api/clicks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"courseId\":\"course-7\"}"))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/clicks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"suggestion\":\"Java Programming\"}"))
+                .andExpect(status().isAccepted());
+
+        verify(clickCounter).recordResultClick("course-7");
+        verify(clickCounter).recordSuggestionClick("Java Programming");
+    }
+
+    @Test
+    @DisplayName("Should reject a click without exactly one target")
+    void shouldRejectClickWithoutTarget() throws Exception {
+        mockMvc.perform(post("/api/clicks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/clicks")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"courseId\":\"course-7\",\"suggestion\":\"Java Programming\"}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(clickCounter);
+    }
 }
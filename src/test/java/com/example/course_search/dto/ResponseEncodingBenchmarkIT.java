@@ -0,0 +1,100 @@
+package com.example.course_search.dto;
+
+import com.example.course_search.config.PreEncodedCourseModule;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.services.CourseJsonCache;
+import com.example.course_search.services.IndexGeneration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Payload size and encode time of a full {@link SearchResponse} page in the
+ * binary encodings, compared with JSON. The mappers carry the same modules as
+ * the application's converters, including {@link PreEncodedCourseModule}, so
+ * JSON is measured with its cache warm. Prints size and time per format;
+ * the assertions only pin the size win and a lossless round trip. Excluded
+ * from {@code mvn test}; run with
+ * {@code mvn test -Dtest=ResponseEncodingBenchmarkIT -Dsurefire.failIfNoSpecifiedTests=false}.
+ */
+@DisplayName("Response encoding benchmark")
+class ResponseEncodingBenchmarkIT {
+
+    private static final int ITERATIONS = 300;
+
+    private static final CourseJsonCache CACHE = new CourseJsonCache(new IndexGeneration());
+
+    private static final Map<String, ObjectMapper> MAPPERS = Map.of(
+            "json", configure(new ObjectMapper()),
+            "smile", configure(new SmileMapper()),
+            "cbor", configure(new CBORMapper()));
+
+    private static SearchResponse page;
+    private static int jsonSize;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        List<CourseDocument> courses = IntStream.range(0, 100)
+                .mapToObj(i -> CourseDocument.builder()
+                        .id("C" + i)
+                        .title("Course number " + i)
+                        .description("Learn something useful in session " + i + " with hands-on activities and games.")
+                        .category(i % 2 == 0 ? "Math" : "Science")
+                        .type("COURSE")
+                        .gradeRange("1st–3rd")
+                        .minAge(5)
+                        .maxAge(8)
+                        .minPrice(50.0 + i)
+                        .maxPrice(100.0 + i)
+                        .language("English")
+                        .nextSessionDate(Instant.parse("2025-08-10T09:00:00Z").plusSeconds(i * 3600L))
+                        .build())
+                .toList();
+        page = SearchResponse.builder().total(courses.size()).courses(courses).build();
+        jsonSize = MAPPERS.get("json").writeValueAsBytes(page).length;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"json", "smile", "cbor"})
+    @DisplayName("Encodes a 100-course page")
+    void shouldEncodePage(String format) throws Exception {
+        ObjectMapper mapper = MAPPERS.get(format);
+
+        byte[] encoded = mapper.writeValueAsBytes(page);
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(page);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(page);
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+
+        System.out.printf("%-5s %6d bytes (%3d%% of JSON), %7.1f us/encode%n",
+                format, encoded.length, encoded.length * 100 / jsonSize, micros);
+
+        assertThat(mapper.readValue(encoded, SearchResponse.class)).isEqualTo(page);
+        if (!"json".equals(format)) {
+            assertThat(encoded.length).isLessThan(jsonSize);
+        }
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper.registerModule(new JavaTimeModule())
+                .registerModule(new PreEncodedCourseModule(CACHE))
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
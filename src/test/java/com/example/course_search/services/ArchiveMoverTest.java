@@ -0,0 +1,205 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ArchiveMover}.
+ */
+@DisplayName("ArchiveMover Unit Tests")
+class ArchiveMoverTest {
+
+    private static final Instant NOW = Instant.parse("2025-09-01T12:00:00Z");
+
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+    // Bulk item status by index and id; anything not listed succeeds
+    private final Map<String, Integer> statuses = new HashMap<>();
+    private final CatalogLoadCoordinator catalogLoadCoordinator = mock(CatalogLoadCoordinator.class);
+    private ElasticsearchClient elasticsearchClient;
+    private CourseSearchProperties properties;
+    private ArchiveMover archiveMover;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchClient = mock(ElasticsearchClient.class);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> respond(invocation.getArgument(0)));
+        properties = new CourseSearchProperties();
+        properties.getArchive().setGrace(Duration.ofDays(1));
+        archiveMover = new ArchiveMover(elasticsearchClient, indexGeneration, catalogLoadCoordinator, properties,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Copies expired courses to the archive, then deletes the copied versions from the active index")
+    void shouldMoveExpiredCourses() throws IOException {
+        stubSearch(List.of(hit("C1", 4), hit("C2", 7)));
+
+        assertThat(archiveMover.moveExpired()).isEqualTo(2);
+
+        SearchRequest search = captureSearch();
+        assertThat(search.index()).containsExactly(CourseIndexLayout.ALIAS);
+        assertThat(search.query().range().date().lt()).isEqualTo("2025-08-31T12:00:00Z");
+
+        List<BulkRequest> bulks = captureBulks(2);
+        assertThat(bulks.get(0).index()).isEqualTo(CourseIndexLayout.ARCHIVE);
+        assertThat(bulks.get(0).operations()).extracting(operation -> operation.index().id()).containsExactly("C1", "C2");
+        assertThat(bulks.get(0).operations()).extracting(operation -> operation.index().routing())
+                .containsExactly("Math", "Math");
+        assertThat(bulks.get(1).index()).isEqualTo(CourseIndexLayout.ALIAS);
+        assertThat(bulks.get(1).refresh()).isEqualTo(Refresh.WaitFor);
+        assertThat(bulks.get(1).operations()).extracting(operation -> operation.delete().id())
+                .containsExactlyInAnyOrder("C1", "C2");
+        assertThat(bulks.get(1).operations()).extracting(operation -> operation.delete().ifSeqNo())
+                .containsExactlyInAnyOrder(4L, 7L);
+        assertThat(indexGeneration.current()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Keeps courses the archive rejected in the active index")
+    void shouldOnlyDeleteArchivedCourses() throws IOException {
+        stubSearch(List.of(hit("C1", 1), hit("C2", 1)));
+        statuses.put(CourseIndexLayout.ARCHIVE + "/C2", 429);
+
+        assertThat(archiveMover.moveExpired()).isEqualTo(1);
+
+        assertThat(captureBulks(2).get(1).operations()).extracting(operation -> operation.delete().id())
+                .containsExactly("C1");
+    }
+
+    @Test
+    @DisplayName("Drops the archive copy of a course updated after it was copied")
+    void shouldKeepCoursesChangedDuringTheMove() throws IOException {
+        stubSearch(List.of(hit("C1", 1), hit("C2", 1)));
+        statuses.put(CourseIndexLayout.ALIAS + "/C2", 409);
+
+        assertThat(archiveMover.moveExpired()).isEqualTo(1);
+
+        BulkRequest cleanup = captureBulks(3).get(2);
+        assertThat(cleanup.index()).isEqualTo(CourseIndexLayout.ARCHIVE);
+        assertThat(cleanup.operations()).extracting(operation -> operation.delete().id()).containsExactly("C2");
+    }
+
+    @Test
+    @DisplayName("Sends nothing and keeps the index generation when no course has expired")
+    void shouldDoNothingWithoutExpiredCourses() throws IOException {
+        stubSearch(List.of());
+
+        assertThat(archiveMover.moveExpired()).isZero();
+
+        verify(elasticsearchClient, never()).bulk(any(BulkRequest.class));
+        assertThat(indexGeneration.current()).isZero();
+    }
+
+    @Test
+    @DisplayName("Moves nothing while a catalog load runs on any instance")
+    void shouldWaitForReindex() throws IOException {
+        when(catalogLoadCoordinator.isLoading()).thenReturn(true);
+        stubSearch(List.of(hit("C1", 1)));
+
+        assertThat(archiveMover.moveExpired()).isZero();
+
+        verifyNoInteractions(elasticsearchClient);
+    }
+
+    @Test
+    @DisplayName("Leaves a scheduled run to the instance that claimed it")
+    void shouldSkipRunClaimedElsewhere() throws IOException {
+        when(catalogLoadCoordinator.claim(ArchiveMover.LEASE, properties.getArchive().getInterval())).thenReturn(false);
+        stubSearch(List.of(hit("C1", 1)));
+
+        archiveMover.run();
+
+        verifyNoInteractions(elasticsearchClient);
+    }
+
+    @Test
+    @DisplayName("Keeps moving full batches until the active index has no expired course left")
+    void shouldMoveInBatches() throws IOException {
+        properties.getArchive().setBatchSize(2);
+        stubSearch(List.of(hit("C1", 1), hit("C2", 1)), List.of(hit("C3", 1)));
+
+        assertThat(archiveMover.moveExpired()).isEqualTo(3);
+
+        verify(elasticsearchClient, times(2)).search(any(SearchRequest.class), eq(JsonData.class));
+        assertThat(indexGeneration.current()).isEqualTo(1);
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private void stubSearch(List<Hit<JsonData>>... pages) throws IOException {
+        var stub = when(elasticsearchClient.search(any(SearchRequest.class), eq(JsonData.class)));
+        for (List<Hit<JsonData>> page : pages) {
+            SearchResponse<JsonData> response = SearchResponse.of(r -> r
+                    .took(1).timedOut(false)
+                    .shards(s -> s.total(1).successful(1).failed(0))
+                    .hits(h -> h.hits(page)));
+            stub = stub.thenReturn(response);
+        }
+    }
+
+    private static Hit<JsonData> hit(String id, long seqNo) {
+        return Hit.of(h -> h
+                .index(CourseIndexLayout.ALIAS)
+                .id(id)
+                .routing("Math")
+                .seqNo(seqNo)
+                .primaryTerm(1L)
+                .source(JsonData.of(Map.of("id", id, "nextSessionDate", "2025-01-01T09:00:00Z"))));
+    }
+
+    private SearchRequest captureSearch() throws IOException {
+        ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(elasticsearchClient).search(request.capture(), eq(JsonData.class));
+        return request.getValue();
+    }
+
+    private List<BulkRequest> captureBulks(int expected) throws IOException {
+        ArgumentCaptor<BulkRequest> request = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient, times(expected)).bulk(request.capture());
+        return request.getAllValues();
+    }
+
+    private BulkResponse respond(BulkRequest request) {
+        List<BulkResponseItem> items = request.operations().stream()
+                .map(operation -> {
+                    String id = operation.isIndex() ? operation.index().id() : operation.delete().id();
+                    OperationType type = operation.isIndex() ? OperationType.Index : OperationType.Delete;
+                    int status = statuses.getOrDefault(request.index() + "/" + id, 200);
+                    if (status != 200) {
+                        return BulkResponseItem.of(item -> item.operationType(type).index(request.index()).id(id)
+                                .status(status).error(error -> error.type("rejected").reason("status " + status)));
+                    }
+                    return BulkResponseItem.of(item -> item.operationType(type).index(request.index()).id(id)
+                            .status(200).result(operation.isIndex() ? "created" : "deleted"));
+                })
+                .toList();
+        return BulkResponse.of(response -> response.errors(!statuses.isEmpty()).took(1).items(items));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ForcemergeRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.RefreshRequest;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link BulkLoadTuning}.
+ */
+@DisplayName("BulkLoadTuning Unit Tests")
+class BulkLoadTuningTest {
+
+    private static final String STAGING = "courses-active-1700000000000";
+
+    private ElasticsearchClient elasticsearchClient;
+    private ElasticsearchIndicesClient indices;
+    private CourseSearchProperties properties;
+    private BulkLoadTuning tuning;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchClient = mock(ElasticsearchClient.class);
+        indices = mock(ElasticsearchIndicesClient.class);
+        when(elasticsearchClient.indices()).thenReturn(indices);
+        // What an index created by Spring Data reports with include_defaults
+        when(indices.getSettings(any(GetIndicesSettingsRequest.class))).thenReturn(GetIndicesSettingsResponse.of(r -> r
+                .result("courses", state -> state
+                        .settings(s -> s.index(i -> i.numberOfReplicas("2")))
+                        .defaults(d -> d.index(i -> i
+                                .refreshInterval(Time.of(t -> t.time("1s")))
+                                .translog(t -> t.flushThresholdSize("512mb")))))));
+        properties = new CourseSearchProperties();
+        tuning = new BulkLoadTuning(elasticsearchClient, properties);
+    }
+
+    @Test
+    @DisplayName("Disables refresh and replicas for the load and remembers the previous settings")
+    void shouldApplyLoadSettings() throws IOException {
+        BulkLoadTuning.Saved saved = tuning.begin(STAGING);
+
+        assertThat(saved).isEqualTo(new BulkLoadTuning.Saved("1s", "2", "512mb"));
+        assertThat(getSettings().index()).containsExactly(STAGING);
+        assertThat(putSettings().get(0).index()).containsExactly(STAGING);
+        IndexSettings applied = putSettings().get(0).settings();
+        assertThat(applied.refreshInterval().time()).isEqualTo("-1");
+        assertThat(applied.numberOfReplicas()).isEqualTo("0");
+        assertThat(applied.translog().flushThresholdSize()).isEqualTo("10gb");
+    }
+
+    @Test
+    @DisplayName("Restores the settings, then force-merges and refreshes once")
+    void shouldRestoreMergeAndRefresh() throws IOException {
+        properties.getBulkLoad().setMaxSegments(3);
+
+        tuning.finish(STAGING, new BulkLoadTuning.Saved("30s", "2", "512mb"));
+
+        InOrder order = inOrder(indices);
+        order.verify(indices).putSettings(any(PutIndicesSettingsRequest.class));
+        ArgumentCaptor<ForcemergeRequest> merge = ArgumentCaptor.forClass(ForcemergeRequest.class);
+        order.verify(indices).forcemerge(merge.capture());
+        order.verify(indices).refresh(any(RefreshRequest.class));
+        assertThat(merge.getValue().maxNumSegments()).isEqualTo(3L);
+        assertThat(merge.getValue().index()).containsExactly(STAGING);
+        IndexSettings restored = putSettings().get(0).settings();
+        assertThat(restored.refreshInterval().time()).isEqualTo("30s");
+        assertThat(restored.numberOfReplicas()).isEqualTo("2");
+        assertThat(restored.translog().flushThresholdSize()).isEqualTo("512mb");
+    }
+
+    @Test
+    @DisplayName("Restoring after a failed load never throws")
+    void shouldSwallowRestoreFailures() throws IOException {
+        when(indices.putSettings(any(PutIndicesSettingsRequest.class))).thenThrow(new IOException("Connection refused"));
+
+        tuning.restore(STAGING, new BulkLoadTuning.Saved("1s", "1", "512mb"));
+
+        verify(indices, never()).forcemerge(any(ForcemergeRequest.class));
+    }
+
+    @Test
+    @DisplayName("Times the configured number of probe queries, fastest first")
+    void shouldProbeLatency() throws IOException {
+        properties.getBulkLoad().setLatencyProbes(5);
+
+        List<Duration> latencies = tuning.probeLatency();
+
+        assertThat(latencies).hasSize(5).isSorted();
+        verify(elasticsearchClient, times(5)).search(any(SearchRequest.class), eq(JsonData.class));
+    }
+
+    private GetIndicesSettingsRequest getSettings() throws IOException {
+        ArgumentCaptor<GetIndicesSettingsRequest> request = ArgumentCaptor.forClass(GetIndicesSettingsRequest.class);
+        verify(indices).getSettings(request.capture());
+        return request.getValue();
+    }
+
+    private List<PutIndicesSettingsRequest> putSettings() throws IOException {
+        ArgumentCaptor<PutIndicesSettingsRequest> request = ArgumentCaptor.forClass(PutIndicesSettingsRequest.class);
+        verify(indices, atLeastOnce()).putSettings(request.capture());
+        return request.getAllValues();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.CatalogChangeResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CatalogDirectoryWatcher}.
+ */
+@DisplayName("CatalogDirectoryWatcher Unit Tests")
+class CatalogDirectoryWatcherTest {
+
+    private static final IndexCoordinates HISTORICAL = IndexCoordinates.of(CourseIndexLayout.HISTORICAL);
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<SearchHit<CourseDocument>> indexed = new ArrayList<>();
+    private ElasticsearchOperations elasticsearchOperations;
+    private CatalogWriter catalogWriter;
+    private CourseSearchProperties properties;
+    private int status = 200;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(hits.getSearchHits()).thenReturn(indexed);
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class), eq(HISTORICAL))).thenReturn(hits);
+        catalogWriter = mock(CatalogWriter.class);
+        when(catalogWriter.upsertAll(anyList(), any())).thenAnswer(invocation -> {
+            List<CourseDocument> courses = invocation.getArgument(0);
+            return IntStream.range(0, courses.size())
+                    .mapToObj(i -> CatalogChangeResult.builder().line(i + 1).op("upsert")
+                            .id(courses.get(i).getId()).status(status)
+                            .error(status == 200 ? null : "Search backend unavailable").build())
+                    .toList();
+        });
+        properties = new CourseSearchProperties();
+        properties.getIngest().setDirectory(directory);
+        properties.getIngest().setDebounce(Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Sends only courses that are new or differ from the indexed version")
+    void shouldSendOnlyChangedCourses() throws IOException {
+        index(course("C1", 50.0));
+        index(course("C2", 75.0));
+        Path file = write("catalog.json", "[" + json(course("C1", 50.0)) + "," + json(course("C2", 80.0)) + ","
+                + json(course("C3", 20.0)) + "]");
+
+        assertThat(watcher().ingest(file)).isTrue();
+
+        assertThat(upserted()).extracting(CourseDocument::getId).containsExactly("C2", "C3");
+    }
+
+    @Test
+    @DisplayName("Compares with archived courses as well, preferring the active copy")
+    void shouldCompareWithArchivedCourses() throws IOException {
+        index(course("C1", 50.0), CourseIndexLayout.ARCHIVE);
+        index(course("C2", 75.0), CourseIndexLayout.ACTIVE);
+        index(course("C2", 60.0), CourseIndexLayout.ARCHIVE);
+        Path file = write("catalog.json", "[" + json(course("C1", 50.0)) + "," + json(course("C2", 60.0)) + "]");
+
+        assertThat(watcher().ingest(file)).isTrue();
+
+        assertThat(upserted()).extracting(CourseDocument::getId).containsExactly("C2");
+    }
+
+    @Test
+    @DisplayName("Reads NDJSON and CSV files as well")
+    void shouldReadNdjsonAndCsv() throws IOException {
+        CatalogDirectoryWatcher watcher = watcher();
+        watcher.ingest(write("changes.ndjson", json(course("C1", 10.0)) + "\n" + json(course("C2", 20.0)) + "\n"));
+        watcher.ingest(write("changes.csv", """
+                id,title,category,minAge,minPrice,nextSessionDate
+                C3,Painting,Art,6,30.5,2025-10-01T09:00:00Z
+                C4,Drums,Music,,45,
+                """));
+
+        ArgumentCaptor<List<CourseDocument>> batches = ArgumentCaptor.captor();
+        verify(catalogWriter, times(2)).upsertAll(batches.capture(), any());
+        assertThat(batches.getAllValues().get(0)).extracting(CourseDocument::getId).containsExactly("C1", "C2");
+        List<CourseDocument> csv = batches.getAllValues().get(1);
+        assertThat(csv).extracting(CourseDocument::getId).containsExactly("C3", "C4");
+        assertThat(csv.get(0).getMinPrice()).isEqualTo(30.5);
+        assertThat(csv.get(0).getNextSessionDate()).isEqualTo(Instant.parse("2025-10-01T09:00:00Z"));
+        assertThat(csv.get(1).getMinAge()).isNull();
+    }
+
+    @Test
+    @DisplayName("Reads large files in batches")
+    void shouldBatchLargeFiles() throws IOException {
+        properties.getCatalog().setBatchSize(2);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            lines.append(json(course("C" + i, i))).append('\n');
+        }
+
+        watcher().ingest(write("big.ndjson", lines.toString()));
+
+        verify(catalogWriter, times(3)).upsertAll(anyList(), any());
+        verify(elasticsearchOperations, times(3)).search(any(NativeQuery.class), eq(CourseDocument.class), eq(HISTORICAL));
+    }
+
+    @Test
+    @DisplayName("Skips files already ingested, also after a restart, until they change")
+    void shouldCheckpointIngestedFiles() throws Exception {
+        Path file = write("catalog.json", "[" + json(course("C1", 50.0)) + "]");
+        watcher().ingest(file);
+
+        properties.getIngest().setEnabled(true);
+        CatalogDirectoryWatcher restarted = watcher();
+        restarted.run(null);
+        try {
+            assertThat(restarted.ingest(file)).isTrue();
+            verify(catalogWriter, times(1)).upsertAll(anyList(), any());
+
+            Files.writeString(file, "[" + json(course("C1", 550.0)) + "]");
+            restarted.ingest(file);
+            verify(catalogWriter, times(2)).upsertAll(anyList(), any());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {503, 409})
+    @DisplayName("Asks for a retry without checkpointing when the backend is down or a reindex is running")
+    void shouldRetryWhenBackendIsDown(int unavailable) throws IOException {
+        status = unavailable;
+        Path file = write("catalog.json", "[" + json(course("C1", 50.0)) + "]");
+        CatalogDirectoryWatcher watcher = watcher();
+
+        assertThat(watcher.ingest(file)).isFalse();
+
+        status = 200;
+        assertThat(watcher.ingest(file)).isTrue();
+        verify(catalogWriter, times(2)).upsertAll(anyList(), any());
+        assertThat(directory.resolve(".ingested.json")).exists();
+    }
+
+    private CatalogDirectoryWatcher watcher() {
+        return new CatalogDirectoryWatcher(objectMapper, elasticsearchOperations, catalogWriter, properties);
+    }
+
+    private List<CourseDocument> upserted() {
+        ArgumentCaptor<List<CourseDocument>> courses = ArgumentCaptor.captor();
+        verify(catalogWriter).upsertAll(courses.capture(), any());
+        return courses.getValue();
+    }
+
+    private void index(CourseDocument course) {
+        index(course, CourseIndexLayout.ACTIVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void index(CourseDocument course, String index) {
+        SearchHit<CourseDocument> hit = mock(SearchHit.class);
+        when(hit.getIndex()).thenReturn(index);
+        when(hit.getId()).thenReturn(course.getId());
+        when(hit.getContent()).thenReturn(course);
+        indexed.add(hit);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+
+    private String json(CourseDocument course) throws IOException {
+        return objectMapper.writeValueAsString(course);
+    }
+
+    private static CourseDocument course(String id, double minPrice) {
+        return CourseDocument.builder()
+                .id(id)
+                .title("Course " + id)
+                .category("Math")
+                .minPrice(minPrice)
+                .nextSessionDate(Instant.parse("2025-09-01T09:00:00Z"))
+                .build();
+    }
+}
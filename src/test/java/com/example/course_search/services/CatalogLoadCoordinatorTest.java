@@ -0,0 +1,215 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.support.InMemoryLeaseStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CatalogLoadCoordinator}, with instances sharing an
+ * {@link InMemoryLeaseStore} in place of the cluster.
+ */
+@DisplayName("CatalogLoadCoordinator Unit Tests")
+class CatalogLoadCoordinatorTest {
+
+    private final InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    private CourseSearchProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CourseSearchProperties();
+        properties.getLoadLease().setPollInterval(Duration.ofMillis(10));
+    }
+
+    @Test
+    @DisplayName("Exactly one of several instances starting together loads a catalog version")
+    void shouldLetOneInstanceLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService instances = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<CatalogLoadCoordinator.Decision>> decisions = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                CatalogLoadCoordinator coordinator = coordinator("instance-" + i, Clock.systemUTC());
+                decisions.add(instances.submit(() -> {
+                    CatalogLoadCoordinator.Decision decision = coordinator.acquire("v1", () -> true);
+                    if (decision == CatalogLoadCoordinator.Decision.LOAD) {
+                        loads.incrementAndGet();
+                        Thread.sleep(50);
+                        coordinator.loaded("v1");
+                    }
+                    return decision;
+                }));
+            }
+            for (Future<CatalogLoadCoordinator.Decision> decision : decisions) {
+                decision.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            instances.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).get()
+                .extracting(LeaseStore.Lease::state, LeaseStore.Lease::catalogVersion)
+                .containsExactly(LeaseStore.State.LOADED, "v1");
+    }
+
+    @Test
+    @DisplayName("Loads a catalog version other than the one loaded last")
+    void shouldLoadNewVersion() throws Exception {
+        CatalogLoadCoordinator first = coordinator("a", Clock.systemUTC());
+        first.acquire("v1", () -> true);
+        first.loaded("v1");
+
+        assertThat(coordinator("b", Clock.systemUTC()).acquire("v1", () -> true)).isEqualTo(CatalogLoadCoordinator.Decision.SKIP);
+        assertThat(coordinator("c", Clock.systemUTC()).acquire("v2", () -> true)).isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+    }
+
+    @Test
+    @DisplayName("Loads a loaded catalog version again when its indices are gone")
+    void shouldReloadMissingLoad() throws Exception {
+        CatalogLoadCoordinator first = coordinator("a", Clock.systemUTC());
+        first.acquire("v1", () -> true);
+        first.loaded("v1");
+
+        assertThat(coordinator("b", Clock.systemUTC()).acquire("v1", () -> false))
+                .isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+    }
+
+    @Test
+    @DisplayName("A waiting instance loads once the holder releases the lease after a failed load")
+    void shouldTakeOverReleasedLease() throws Exception {
+        CatalogLoadCoordinator holder = coordinator("a", Clock.systemUTC());
+        holder.acquire("v1", () -> true);
+        CatalogLoadCoordinator waiter = coordinator("b", Clock.systemUTC());
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            Future<CatalogLoadCoordinator.Decision> decision = thread.submit(() -> waiter.acquire("v1", () -> true));
+            Thread.sleep(50);
+            assertThat(decision).isNotDone();
+
+            holder.release();
+
+            assertThat(decision.get(10, TimeUnit.SECONDS)).isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+        } finally {
+            thread.shutdownNow();
+        }
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).get()
+                .extracting(LeaseStore.Lease::owner).isEqualTo("b");
+    }
+
+    @Test
+    @DisplayName("Takes over the lease of an instance that stopped renewing it")
+    void shouldTakeOverExpiredLease() throws Exception {
+        Instant now = Instant.parse("2025-09-01T12:00:00Z");
+        coordinator("a", Clock.fixed(now, ZoneOffset.UTC)).acquire("v1", () -> true);
+
+        CatalogLoadCoordinator later = coordinator("b", Clock.fixed(now.plus(Duration.ofMinutes(1)), ZoneOffset.UTC));
+
+        assertThat(later.tryAcquire("v1")).isTrue();
+        assertThat(coordinator("c", Clock.fixed(now.plus(Duration.ofMinutes(1)), ZoneOffset.UTC)).tryAcquire("v1"))
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Renews the lease while the load runs")
+    void shouldRenewLease() throws Exception {
+        properties.getLoadLease().setTtl(Duration.ofMillis(150));
+        CatalogLoadCoordinator holder = coordinator("a", Clock.systemUTC());
+        holder.acquire("v1", () -> true);
+        long expiresAt = leaseStore.lease(CatalogLoadCoordinator.LEASE).orElseThrow().expiresAt();
+
+        Thread.sleep(200);
+
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE).orElseThrow().expiresAt()).isGreaterThan(expiresAt);
+        assertThat(coordinator("b", Clock.systemUTC()).tryAcquire("v1")).isFalse();
+        holder.loaded("v1");
+    }
+
+    @Test
+    @DisplayName("A reindex cannot take the lease while the same instance loads")
+    void shouldNotTakeOwnLease() throws Exception {
+        CatalogLoadCoordinator coordinator = coordinator("a", Clock.systemUTC());
+        coordinator.acquire("v1", () -> true);
+
+        assertThat(coordinator.tryAcquire("v2")).isFalse();
+
+        coordinator.loaded("v1");
+        assertThat(coordinator.tryAcquire("v2")).isTrue();
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).get()
+                .extracting(LeaseStore.Lease::state, LeaseStore.Lease::catalogVersion)
+                .containsExactly(LeaseStore.State.LOADING, "v2");
+        coordinator.release();
+    }
+
+    @Test
+    @DisplayName("Reports a load running on any instance until its lease ends")
+    void shouldReportLoadsOfAnyInstance() throws Exception {
+        CatalogLoadCoordinator holder = coordinator("a", Clock.systemUTC());
+        CatalogLoadCoordinator other = coordinator("b", Clock.systemUTC());
+        assertThat(other.isLoading()).isFalse();
+
+        holder.acquire("v1", () -> true);
+
+        assertThat(holder.isLoading()).isTrue();
+        assertThat(other.isLoading()).isTrue();
+        holder.loaded("v1");
+        assertThat(holder.isLoading()).isFalse();
+        assertThat(other.isLoading()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Within an instance, loads take turns when coordination is disabled")
+    void shouldSerializeLocallyWhenDisabled() throws Exception {
+        properties.getLoadLease().setEnabled(false);
+        CatalogLoadCoordinator coordinator = coordinator("a", Clock.systemUTC());
+
+        assertThat(coordinator.tryAcquire("v1")).isTrue();
+        assertThat(coordinator.tryAcquire("v1")).isFalse();
+
+        coordinator.release();
+        assertThat(coordinator.acquire("v1", () -> true)).isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+    }
+
+    @Test
+    @DisplayName("One instance claims a periodic task until its claim lapses")
+    void shouldClaimPeriodicTask() throws Exception {
+        Instant now = Instant.parse("2025-09-01T12:00:00Z");
+        CatalogLoadCoordinator first = coordinator("a", Clock.fixed(now, ZoneOffset.UTC));
+
+        assertThat(first.claim("task", Duration.ofMinutes(5))).isTrue();
+        assertThat(coordinator("b", Clock.fixed(now, ZoneOffset.UTC)).claim("task", Duration.ofMinutes(5))).isFalse();
+        assertThat(first.claim("task", Duration.ofMinutes(5))).isTrue();
+        assertThat(coordinator("b", Clock.fixed(now.plus(Duration.ofMinutes(6)), ZoneOffset.UTC))
+                .claim("task", Duration.ofMinutes(5))).isTrue();
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Every instance loads when coordination is disabled")
+    void shouldLoadWhenDisabled() throws Exception {
+        properties.getLoadLease().setEnabled(false);
+
+        assertThat(coordinator("a", Clock.systemUTC()).acquire("v1", () -> true)).isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+        assertThat(coordinator("b", Clock.systemUTC()).acquire("v1", () -> true)).isEqualTo(CatalogLoadCoordinator.Decision.LOAD);
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).isEmpty();
+    }
+
+    private CatalogLoadCoordinator coordinator(String owner, Clock clock) {
+        return new CatalogLoadCoordinator(leaseStore, properties, clock, owner);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.CatalogChangeResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CatalogWriter}.
+ */
+@DisplayName("CatalogWriter Unit Tests")
+class CatalogWriterTest {
+
+    private static final CourseSearchProperties.Catalog.Refresh NONE = CourseSearchProperties.Catalog.Refresh.NONE;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+    private final Set<String> missing = new HashSet<>();
+    // Search hits by index; none when not listed
+    private final Map<String, List<Hit<JsonData>>> hits = new HashMap<>();
+    private final CatalogLoadCoordinator catalogLoadCoordinator = mock(CatalogLoadCoordinator.class);
+    private ElasticsearchClient elasticsearchClient;
+    private CourseSearchProperties properties;
+    private CatalogWriter catalogWriter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchClient = mock(ElasticsearchClient.class);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> respond(invocation.getArgument(0)));
+        when(elasticsearchClient.search(any(SearchRequest.class), eq(JsonData.class))).thenAnswer(invocation -> {
+            SearchRequest request = invocation.getArgument(0);
+            List<Hit<JsonData>> found = hits.getOrDefault(request.index().get(0), List.of());
+            return SearchResponse.<JsonData>of(r -> r
+                    .took(1).timedOut(false)
+                    .shards(sh -> sh.total(1).successful(1).failed(0))
+                    .hits(h -> h.hits(found)));
+        });
+        properties = new CourseSearchProperties();
+        catalogWriter = writer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogWriter.shutdown();
+    }
+
+    @Test
+    @DisplayName("Applies upserts, partial updates and deletes in one bulk request")
+    void shouldApplyMixedChanges() throws IOException {
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"upsert\",\"course\":{\"id\":\"C1\",\"title\":\"Math for Beginners\",\"minPrice\":50.0}}",
+                "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"minPrice\":42.5,\"nextSessionDate\":\"2025-09-01T09:00:00Z\"}}",
+                "{\"op\":\"delete\",\"id\":\"C3\"}");
+
+        BulkRequest request = onlyRequest();
+        assertThat(request.operations()).extracting(BulkOperation::_kind)
+                .containsExactly(BulkOperation.Kind.Update, BulkOperation.Kind.Update, BulkOperation.Kind.Delete);
+        assertThat(request.refresh()).isNull();
+        assertThat(request.operations().get(0).update().action().scriptedUpsert()).isTrue();
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(200, 200, 200);
+        assertThat(results).extracting(result -> result.get("id").asText()).containsExactly("C1", "C2", "C3");
+        assertThat(indexGeneration.current()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Sends partial updates with only the given fields, in the indexed format")
+    @SuppressWarnings("unchecked")
+    void shouldSendOnlyUpdatedFields() throws IOException {
+        apply(NONE, "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"minPrice\":42.5,\"nextSessionDate\":\"2025-09-01T09:00:00Z\"}}");
+
+        Map<String, Object> doc = (Map<String, Object>) onlyRequest().operations().get(0).update().action().doc();
+        assertThat(doc).containsOnlyKeys("minPrice", "nextSessionDate");
+        assertThat(doc.get("minPrice")).isEqualTo(42.5);
+        assertThat((String) doc.get("nextSessionDate")).startsWith("2025-09-01T09:00:00");
+    }
+
+    @Test
+    @DisplayName("Splits the stream into batches and writes results in input order")
+    void shouldBatchAndKeepOrder() throws IOException {
+        properties.getCatalog().setBatchSize(2);
+        properties.getCatalog().setMaxInFlight(2);
+        catalogWriter.shutdown();
+        catalogWriter = writer();
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            lines.add("{\"op\":\"delete\",\"id\":\"C" + i + "\"}");
+        }
+        List<JsonNode> results = apply(NONE, lines.toArray(String[]::new));
+
+        verify(elasticsearchClient, times(3)).bulk(any(BulkRequest.class));
+        assertThat(results).extracting(result -> result.get("id").asText())
+                .containsExactly("C1", "C2", "C3", "C4", "C5");
+        assertThat(results).extracting(result -> result.get("line").asInt()).containsExactly(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    @DisplayName("Rejects changes with 409 while a catalog load runs on any instance")
+    void shouldRejectChangesWhileStaging() throws IOException {
+        when(catalogLoadCoordinator.isLoading()).thenReturn(true);
+
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"delete\",\"id\":\"C1\"}",
+                "{\"op\":\"delete\"}");
+
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(409, 400);
+        verify(elasticsearchClient, never()).bulk(any(BulkRequest.class));
+        assertThat(indexGeneration.current()).isZero();
+    }
+
+    @Test
+    @DisplayName("Rejects malformed lines without failing the rest of the stream")
+    void shouldRejectInvalidLines() throws IOException {
+        List<JsonNode> results = apply(NONE,
+                "{not json",
+                "{\"op\":\"update\",\"id\":\"C1\",\"fields\":{\"title\":\"Renamed\"}}",
+                "{\"op\":\"update\",\"id\":\"C1\",\"fields\":{\"minAge\":\"five\"}}",
+                "{\"op\":\"delete\"}",
+                "{\"op\":\"truncate\",\"id\":\"C1\"}",
+                "",
+                "{\"op\":\"delete\",\"id\":\"C9\"}");
+
+        assertThat(results).extracting(result -> result.get("status").asInt())
+                .containsExactly(400, 400, 400, 400, 400, 200);
+        assertThat(results.get(1).get("error").asText()).contains("title");
+        assertThat(results.get(5).get("line").asInt()).isEqualTo(7);
+        assertThat(onlyRequest().operations()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Rejects partial updates that set fields to null")
+    void shouldRejectNullFields() throws IOException {
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"update\",\"id\":\"C1\",\"fields\":{\"minPrice\":null,\"description\":null}}",
+                "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"minPrice\":10.0}}");
+
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(400, 200);
+        assertThat(results.get(0).get("error").asText()).contains("[description, minPrice]");
+        assertThat(onlyRequest().operations()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Reports item failures from Elasticsearch per line")
+    void shouldReportItemFailures() throws IOException {
+        missing.add("C404");
+
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"update\",\"id\":\"C404\",\"fields\":{\"minPrice\":1.0}}",
+                "{\"op\":\"delete\",\"id\":\"C1\"}");
+
+        assertThat(results.get(0).get("status").asInt()).isEqualTo(404);
+        assertThat(results.get(0).get("error").asText()).contains("document_missing_exception");
+        assertThat(results.get(1).has("error")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Passes the refresh policy to every bulk request")
+    void shouldApplyRefreshPolicy() throws IOException {
+        apply(CourseSearchProperties.Catalog.Refresh.WAIT_FOR, "{\"op\":\"delete\",\"id\":\"C1\"}");
+
+        assertThat(onlyRequest().refresh()).isEqualTo(Refresh.WaitFor);
+    }
+
+    @Test
+    @DisplayName("Fails every change of a batch the backend did not accept, and keeps the index generation")
+    void shouldFailBatchWhenBackendIsDown() throws IOException {
+        reset(elasticsearchClient);
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("Connection refused"));
+
+        List<JsonNode> results = apply(NONE, "{\"op\":\"delete\",\"id\":\"C1\"}", "{\"op\":\"delete\",\"id\":\"C2\"}");
+
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(503, 503);
+        assertThat(indexGeneration.current()).isZero();
+    }
+
+    @Test
+    @DisplayName("Fails every line of a batch that broke unexpectedly and keeps streaming the others")
+    void shouldReportUnexpectedBatchFailures() throws IOException {
+        properties.getCatalog().setBatchSize(2);
+        properties.getCatalog().setMaxInFlight(1);
+        catalogWriter.shutdown();
+        catalogWriter = writer();
+        // A response without items for the first batch; its results cannot be matched up
+        doReturn(BulkResponse.of(response -> response.errors(false).took(1).items(List.of())))
+                .doAnswer(invocation -> respond(invocation.getArgument(0)))
+                .when(elasticsearchClient).bulk(any(BulkRequest.class));
+
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"delete\",\"id\":\"C1\"}",
+                "{not json",
+                "{\"op\":\"delete\",\"id\":\"C3\"}");
+
+        assertThat(results).extracting(result -> result.get("line").asInt()).containsExactly(1, 2, 3);
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(500, 400, 200);
+        assertThat(results.get(0).get("error").asText()).startsWith("Catalog batch failed unexpectedly");
+    }
+
+    @Test
+    @DisplayName("Routes changes by category and removes the old copy when an upsert changes it")
+    @SuppressWarnings("unchecked")
+    void shouldRouteByCategory() throws IOException {
+        properties.getRouting().setEnabled(true);
+        catalogWriter.shutdown();
+        catalogWriter = writer();
+        hits.put(CourseIndexLayout.ALIAS, List.of(
+                Hit.of(hit -> hit.index("courses-active").id("C1").routing("Math")
+                        .source(JsonData.of(Map.of("popularity", 42)))),
+                Hit.of(hit -> hit.index("courses-active").id("C2").routing("Art"))));
+
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"upsert\",\"course\":{\"id\":\"C1\",\"title\":\"Math for Beginners\",\"category\":\"Science\"}}",
+                "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"minPrice\":10.0}}",
+                "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"category\":\"Math\"}}",
+                "{\"op\":\"delete\",\"id\":\"C2\"}");
+
+        List<BulkOperation> operations = onlyRequest().operations();
+        assertThat(operations).extracting(BulkOperation::_kind).containsExactly(BulkOperation.Kind.Delete,
+                BulkOperation.Kind.Update, BulkOperation.Kind.Update, BulkOperation.Kind.Delete);
+        assertThat(operations.get(0).delete().routing()).isEqualTo("Math");
+        assertThat(operations.get(1).update().routing()).isEqualTo("Science");
+        // The copy on the new shard starts with the click popularity of the old one
+        assertThat(operations.get(1).update().action().script().params().get("popularity").to(Integer.class))
+                .isEqualTo(42);
+        assertThat(operations.get(2).update().routing()).isEqualTo("Art");
+        assertThat(operations.get(3).delete().routing()).isEqualTo("Art");
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(200, 200, 400, 200);
+        assertThat(results).extracting(result -> result.get("op").asText())
+                .containsExactly("upsert", "update", "update", "delete");
+    }
+
+    @Test
+    @DisplayName("Removes the archived copy of upserted and deleted courses")
+    void shouldRemoveArchivedCopies() throws IOException {
+        missing.add("C3");
+        hits.put(CourseIndexLayout.ARCHIVE, List.of(
+                Hit.of(hit -> hit.index(CourseIndexLayout.ARCHIVE).id("C1").source(JsonData.of(Map.of("popularity", 7)))),
+                Hit.of(hit -> hit.index(CourseIndexLayout.ARCHIVE).id("C3").source(JsonData.of(Map.of())))));
+
+        List<JsonNode> results = apply(NONE,
+                "{\"op\":\"upsert\",\"course\":{\"id\":\"C1\",\"title\":\"Math for Beginners\"}}",
+                "{\"op\":\"update\",\"id\":\"C2\",\"fields\":{\"minPrice\":10.0}}",
+                "{\"op\":\"delete\",\"id\":\"C3\"}");
+
+        List<BulkOperation> operations = onlyRequest().operations();
+        assertThat(operations).extracting(BulkOperation::_kind).containsExactly(BulkOperation.Kind.Update,
+                BulkOperation.Kind.Delete, BulkOperation.Kind.Update, BulkOperation.Kind.Delete,
+                BulkOperation.Kind.Delete);
+        // Back in the active index with the popularity it had in the archive
+        assertThat(operations.get(0).update().action().script().params().get("popularity").to(Integer.class))
+                .isEqualTo(7);
+        assertThat(operations.get(1).delete().index()).isEqualTo(CourseIndexLayout.ARCHIVE);
+        assertThat(operations.get(3).delete().index()).isNull();
+        assertThat(operations.get(4).delete().index()).isEqualTo(CourseIndexLayout.ARCHIVE);
+        assertThat(results).extracting(result -> result.get("status").asInt()).containsExactly(200, 200, 200);
+    }
+
+    @Test
+    @DisplayName("Upserts already parsed courses in batches on the calling thread")
+    void shouldUpsertParsedCourses() throws IOException {
+        properties.getCatalog().setBatchSize(2);
+        List<CourseDocument> courses = List.of(
+                CourseDocument.builder().id("C1").title("Math for Beginners").build(),
+                CourseDocument.builder().title("No id").build(),
+                CourseDocument.builder().id("C3").title("Painting").build());
+
+        List<CatalogChangeResult> results = catalogWriter.upsertAll(courses, NONE);
+
+        verify(elasticsearchClient, times(2)).bulk(any(BulkRequest.class));
+        assertThat(results).extracting(CatalogChangeResult::getStatus).containsExactly(200, 400, 200);
+        assertThat(results).extracting(CatalogChangeResult::getLine).containsExactly(1, 2, 3);
+        assertThat(indexGeneration.current()).isEqualTo(2);
+    }
+
+    private CatalogWriter writer() {
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+        converter.afterPropertiesSet();
+        return new CatalogWriter(elasticsearchClient, converter, objectMapper, indexGeneration,
+                new CourseRouting(elasticsearchClient, properties), catalogLoadCoordinator, properties);
+    }
+
+    private List<JsonNode> apply(CourseSearchProperties.Catalog.Refresh refresh, String... lines) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        catalogWriter.apply(new ByteArrayInputStream(body), out, refresh);
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+
+    private BulkRequest onlyRequest() throws IOException {
+        ArgumentCaptor<BulkRequest> request = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient).bulk(request.capture());
+        return request.getValue();
+    }
+
+    private BulkResponse respond(BulkRequest request) {
+        List<BulkResponseItem> items = request.operations().stream()
+                .map(operation -> {
+                    String id = operation.isDelete() ? operation.delete().id() : operation.update().id();
+                    OperationType type = operation.isDelete() ? OperationType.Delete : OperationType.Update;
+                    boolean active = !operation.isDelete() || operation.delete().index() == null;
+                    if (missing.contains(id) && active && operation.isDelete()) {
+                        return BulkResponseItem.of(item -> item.operationType(type).index("courses").id(id).status(404)
+                                .result("not_found"));
+                    }
+                    if (missing.contains(id) && active) {
+                        return BulkResponseItem.of(item -> item.operationType(type).index("courses").id(id).status(404)
+                                .error(error -> error.type("document_missing_exception").reason("[" + id + "]: document missing")));
+                    }
+                    return BulkResponseItem.of(item -> item.operationType(type).index("courses").id(id).status(200)
+                            .result("updated"));
+                })
+                .toList();
+        return BulkResponse.of(response -> response.errors(!missing.isEmpty()).took(1).items(items));
+    }
+}
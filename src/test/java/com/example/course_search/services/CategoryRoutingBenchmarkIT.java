@@ -0,0 +1,166 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of single-category searches on a multi-shard index whose
+ * courses are routed by category, sent with and without the category as
+ * routing. Needs a running Elasticsearch ({@code -Des.url}, default
+ * {@code http://localhost:9200}); loads {@code -Dbenchmark.courses} courses
+ * (default 200,000) into a scratch index of {@code -Dbenchmark.shards}
+ * shards (default 6) and prints queries per second for each mode with
+ * {@code -Dbenchmark.threads} clients (default 8). Excluded from
+ * {@code mvn test}; run with
+ * {@code mvn test -Dtest=CategoryRoutingBenchmarkIT -Dsurefire.failIfNoSpecifiedTests=false}.
+ */
+@DisplayName("Category routing benchmark")
+class CategoryRoutingBenchmarkIT {
+
+    private static final String INDEX = "courses-bench-routed";
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Duration MEASURE = Duration.ofSeconds(20);
+    private static final String[] CATEGORIES = {"Math", "Science", "Art", "Music", "Language", "Sports"};
+
+    private static RestClient restClient;
+    private static ElasticsearchClient client;
+
+    @BeforeAll
+    static void load() throws IOException {
+        restClient = RestClient.builder(HttpHost.create(System.getProperty("es.url", "http://localhost:9200"))).build();
+        client = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        int courses = Integer.getInteger("benchmark.courses", 200_000);
+        int shards = Integer.getInteger("benchmark.shards", 6);
+
+        client.indices().delete(d -> d.index(INDEX).ignoreUnavailable(true));
+        client.indices().create(c -> c
+                .index(INDEX)
+                .settings(s -> s
+                        .numberOfShards(String.valueOf(shards))
+                        .numberOfReplicas("0")
+                        .refreshInterval(t -> t.time("-1")))
+                .mappings(m -> m
+                        .properties("category", p -> p.keyword(k -> k))
+                        .properties("minAge", p -> p.integer(i -> i))
+                        .properties("nextSessionDate", p -> p.date(d -> d))));
+
+        Random random = new Random(42);
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        int batchSize = 5_000;
+        for (int from = 0; from < courses; from += batchSize) {
+            BulkRequest.Builder bulk = new BulkRequest.Builder().index(INDEX);
+            for (int i = from; i < Math.min(from + batchSize, courses); i++) {
+                String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                Map<String, Object> course = Map.of(
+                        "category", category,
+                        "minAge", 4 + random.nextInt(14),
+                        "nextSessionDate", base.plusSeconds(random.nextInt(365 * 24 * 3600)).toString());
+                String id = "C" + i;
+                // As CourseRouting does it
+                bulk.operations(op -> op.index(idx -> idx.id(id).routing(category).document(course)));
+            }
+            assertThat(client.bulk(bulk.build()).errors()).isFalse();
+        }
+        client.indices().putSettings(p -> p.index(INDEX).settings(s -> s.refreshInterval(t -> t.time("1s"))));
+        client.indices().refresh(r -> r.index(INDEX));
+        System.out.printf("Loaded %,d courses into %d shards%n", courses, shards);
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException {
+        if (client != null) {
+            client.indices().delete(d -> d.index(INDEX).ignoreUnavailable(true));
+        }
+        if (restClient != null) {
+            restClient.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Single-category search throughput, fan-out vs routed")
+    void shouldCompareThroughput() throws Exception {
+        // Routing only narrows the shards searched; the answer must not change
+        for (String category : CATEGORIES) {
+            assertThat(ids(search(category, false))).isEqualTo(ids(search(category, true)));
+        }
+
+        int threads = Integer.getInteger("benchmark.threads", 8);
+        double fanOut = throughput(false, threads);
+        double routed = throughput(true, threads);
+
+        System.out.printf("fan-out  %8.1f queries/s%n", fanOut);
+        System.out.printf("routed   %8.1f queries/s  (%.2fx)%n", routed, routed / fanOut);
+    }
+
+    private static double throughput(boolean routed, int threads) throws Exception {
+        run(routed, threads, WARMUP);
+        return run(routed, threads, MEASURE) / (MEASURE.toNanos() / 1e9);
+    }
+
+    private static long run(boolean routed, int threads, Duration duration) throws Exception {
+        LongAdder queries = new LongAdder();
+        long end = System.nanoTime() + duration.toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                clients.add(pool.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        search(CATEGORIES[random.nextInt(CATEGORIES.length)], routed);
+                        queries.increment();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : clients) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return queries.sum();
+    }
+
+    // Same shape as a category-filtered /search: term filter, "upcoming" sort, page of 10
+    private static SearchResponse<JsonData> search(String category, boolean routed) throws IOException {
+        return client.search(s -> s
+                .index(INDEX)
+                .routing(routed ? category : null)
+                .size(10)
+                .query(q -> q.bool(b -> b
+                        .filter(f -> f.term(t -> t.field("category").value(category)))
+                        .filter(f -> f.range(r -> r.number(n -> n.field("minAge").lte(10.0))))))
+                .sort(sort -> sort.field(f -> f.field("nextSessionDate").order(SortOrder.Asc)))
+                .requestCache(false), JsonData.class);
+    }
+
+    private static List<String> ids(SearchResponse<JsonData> response) {
+        return response.hits().hits().stream().map(hit -> hit.id()).toList();
+    }
+}
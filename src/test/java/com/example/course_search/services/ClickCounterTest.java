@@ -0,0 +1,280 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ClickCounter}.
+ */
+@DisplayName("ClickCounter Unit Tests")
+class ClickCounterTest {
+
+    private final CourseSearchProperties properties = new CourseSearchProperties();
+    private ElasticsearchOperations elasticsearchOperations;
+    private SuggestionPrefixCache prefixCache;
+    private CourseRouting courseRouting;
+    private final CatalogLoadCoordinator catalogLoadCoordinator = mock(CatalogLoadCoordinator.class);
+    private ClickCounter clickCounter;
+    private final Set<String> deleted = new HashSet<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        prefixCache = spy(new SuggestionPrefixCache(new IndexGeneration(), properties));
+        // Every course exists unless deleted, titled after its id
+        courseRouting = mock(CourseRouting.class);
+        when(courseRouting.locate(anyCollection(), eq(List.of("title")))).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> !deleted.contains(id))
+                    .collect(Collectors.toMap(Function.identity(),
+                            id -> new CourseRouting.Location(null, Map.of("title", "Title of " + id))));
+        });
+        clickCounter = new ClickCounter(elasticsearchOperations, prefixCache, courseRouting, catalogLoadCoordinator, properties);
+    }
+
+    @Test
+    @DisplayName("Adds concurrent clicks up into one scripted update per course")
+    void shouldFlushCountsAsBulkUpdate() throws Exception {
+        ExecutorService clickers = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            String courseId = i % 4 == 0 ? "course-2" : "course-1";
+            clickers.execute(() -> clickCounter.recordResultClick(courseId));
+        }
+        clickers.shutdown();
+        assertThat(clickers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        clickCounter.flush();
+
+        Map<String, UpdateQuery> updates = flushedUpdates();
+        assertThat(updates).containsOnlyKeys("course-1", "course-2");
+        assertThat(updates.get("course-1").getParams()).containsEntry("clicks", 750L);
+        assertThat(updates.get("course-2").getParams()).containsEntry("clicks", 250L);
+        assertThat(updates.get("course-1").getScript()).isEqualTo(ClickCounter.SCRIPT);
+        assertThat(clickCounter.pending()).isZero();
+        verify(prefixCache).invalidate(argThat(titles ->
+                titles.containsAll(List.of("Title of course-1", "Title of course-2")) && titles.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Drops only the cached prefixes of courses whose popularity changed")
+    void shouldInvalidateOnlyPrefixesOfClickedTitles() {
+        prefixCache.put("title of c", List.of("Title of course-1"), true, 10);
+        prefixCache.put("tit", List.of("Title of course-1"), false, 10);
+        prefixCache.put("py", List.of("Python"), true, 10);
+        clickCounter.recordResultClick("course-1");
+
+        clickCounter.flush();
+
+        assertThat(prefixCache.lookup("title of c", 10)).isEmpty();
+        assertThat(prefixCache.lookup("tit", 10)).isEmpty();
+        assertThat(prefixCache.lookup("py", 10)).isPresent();
+    }
+
+    @Test
+    @DisplayName("Drops clicks on courses that no longer exist before updating")
+    void shouldDropClicksOnDeletedCourses() {
+        deleted.add("gone");
+        clickCounter.recordResultClick("gone");
+        clickCounter.recordResultClick("course-1");
+
+        clickCounter.flush();
+
+        assertThat(flushedUpdates()).containsOnlyKeys("course-1");
+        assertThat(clickCounter.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("Looks up and updates a large flush in batches, keeping the rest when Elasticsearch goes away")
+    void shouldFlushInBatches() throws IOException {
+        properties.getClicks().setBatchSize(2);
+        clickCounter = new ClickCounter(elasticsearchOperations, prefixCache, courseRouting, catalogLoadCoordinator, properties);
+        for (int i = 0; i < 5; i++) {
+            clickCounter.recordResultClick("course-" + i);
+        }
+        doNothing()
+                .doThrow(new RuntimeException("Connection refused"))
+                .when(elasticsearchOperations).bulkUpdate(anyList(), eq(CourseDocument.class));
+
+        clickCounter.flush();
+
+        verify(courseRouting, times(2)).locate(argThat(ids -> ids.size() == 2), eq(List.of("title")));
+        ArgumentCaptor<List<UpdateQuery>> updates = ArgumentCaptor.captor();
+        verify(elasticsearchOperations, times(2)).bulkUpdate(updates.capture(), eq(CourseDocument.class));
+        assertThat(updates.getAllValues()).allSatisfy(batch -> assertThat(batch).hasSize(2));
+        assertThat(clickCounter.pending()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Resolves clicked suggestion titles to the courses with that exact title")
+    void shouldResolveSuggestionClicks() {
+        clickCounter.recordSuggestionClick("Java Programming");
+        clickCounter.recordSuggestionClick("java programming ");
+        SearchHits<CourseDocument> hits = hits(
+                hit("1", "Java Programming"), hit("2", "Java Programming for Kids"));
+        when(elasticsearchOperations.multiSearch(anyList(), eq(CourseDocument.class))).thenReturn(List.of(hits));
+
+        clickCounter.flush();
+
+        Map<String, UpdateQuery> updates = flushedUpdates();
+        assertThat(updates).containsOnlyKeys("1");
+        assertThat(updates.get("1").getParams()).containsEntry("clicks", 2L);
+    }
+
+    @Test
+    @DisplayName("Keeps the counts for the next flush when Elasticsearch is unreachable")
+    void shouldRetainCountsWhenFlushFails() {
+        clickCounter.recordResultClick("course-1");
+        doThrow(new RuntimeException("Connection refused"))
+                .doNothing()
+                .when(elasticsearchOperations).bulkUpdate(anyList(), eq(CourseDocument.class));
+
+        clickCounter.flush();
+        assertThat(clickCounter.pending()).isEqualTo(1);
+        verify(prefixCache, never()).invalidate(anyCollection());
+
+        clickCounter.recordResultClick("course-1");
+        clickCounter.flush();
+
+        ArgumentCaptor<List<UpdateQuery>> updates = ArgumentCaptor.captor();
+        verify(elasticsearchOperations, times(2)).bulkUpdate(updates.capture(), eq(CourseDocument.class));
+        assertThat(updates.getValue().get(0).getParams()).containsEntry("clicks", 2L);
+        assertThat(clickCounter.pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("Drops clicks on missing courses but retries other failed items")
+    void shouldDropClicksOnMissingCourses() {
+        clickCounter.recordResultClick("gone");
+        clickCounter.recordResultClick("busy");
+        doThrow(new BulkFailureException("Bulk operation has failures", Map.of(
+                "gone", new BulkFailureException.FailureDetails(404, "document_missing_exception"),
+                "busy", new BulkFailureException.FailureDetails(429, "es_rejected_execution_exception"))))
+                .when(elasticsearchOperations).bulkUpdate(anyList(), eq(CourseDocument.class));
+
+        clickCounter.flush();
+
+        assertThat(clickCounter.pending()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Holds clicks back while a catalog load runs on any instance")
+    void shouldHoldClicksWhileStaging() throws IOException {
+        when(catalogLoadCoordinator.isLoading()).thenReturn(true);
+        clickCounter.recordResultClick("course-1");
+
+        clickCounter.flush();
+
+        verifyNoInteractions(elasticsearchOperations);
+        assertThat(clickCounter.pending()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Copies the popularity of the active courses to a staging index, skipping removed courses")
+    void shouldCopyPopularityToStaging() {
+        properties.getClicks().setBatchSize(2);
+        SearchHitsIterator<CourseDocument> popular = iterator(popular("C1", 5, "Math"), popular("C2", 7, null),
+                popular("C3", 1, null));
+        when(elasticsearchOperations.searchForStream(any(CriteriaQuery.class), eq(CourseDocument.class),
+                eq(IndexCoordinates.of(CourseIndexLayout.ALIAS)))).thenReturn(popular);
+        doNothing()
+                .doThrow(new BulkFailureException("Bulk operation has failures", Map.of(
+                        "C3", new BulkFailureException.FailureDetails(404, "document_missing_exception"))))
+                .when(elasticsearchOperations).bulkUpdate(anyList(), any(IndexCoordinates.class));
+
+        clickCounter.copyPopularity("courses-active-1");
+
+        ArgumentCaptor<List<UpdateQuery>> updates = ArgumentCaptor.captor();
+        verify(elasticsearchOperations, times(2)).bulkUpdate(updates.capture(),
+                eq(IndexCoordinates.of("courses-active-1")));
+        UpdateQuery first = updates.getAllValues().get(0).get(0);
+        assertThat(first.getId()).isEqualTo("C1");
+        assertThat(first.getRouting()).isEqualTo("Math");
+        assertThat(first.getScript()).isEqualTo(ClickCounter.COPY_SCRIPT);
+        assertThat(first.getParams()).containsEntry("popularity", 5L);
+        assertThat(updates.getAllValues().get(1)).extracting(UpdateQuery::getId).containsExactly("C3");
+    }
+
+    @Test
+    @DisplayName("Does not touch Elasticsearch when there were no clicks")
+    void shouldSkipEmptyFlush() {
+        clickCounter.flush();
+
+        verifyNoInteractions(elasticsearchOperations);
+        verify(prefixCache, never()).invalidate(anyCollection());
+    }
+
+    private Map<String, UpdateQuery> flushedUpdates() {
+        ArgumentCaptor<List<UpdateQuery>> updates = ArgumentCaptor.captor();
+        verify(elasticsearchOperations).bulkUpdate(updates.capture(), eq(CourseDocument.class));
+        return updates.getValue().stream().collect(Collectors.toMap(UpdateQuery::getId, Function.identity()));
+    }
+
+    @SafeVarargs
+    private static SearchHits<CourseDocument> hits(SearchHit<CourseDocument>... hits) {
+        SearchHits<CourseDocument> searchHits = mock();
+        doAnswer(invocation -> {
+            Stream.of(hits).forEach(invocation.getArgument(0));
+            return null;
+        }).when(searchHits).forEach(any());
+        return searchHits;
+    }
+
+    @SafeVarargs
+    private static SearchHitsIterator<CourseDocument> iterator(SearchHit<CourseDocument>... hits) {
+        Iterator<SearchHit<CourseDocument>> iterator = List.of(hits).iterator();
+        SearchHitsIterator<CourseDocument> searchHits = mock();
+        when(searchHits.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(searchHits.next()).thenAnswer(invocation -> iterator.next());
+        return searchHits;
+    }
+
+    private static SearchHit<CourseDocument> popular(String id, long popularity, String routing) {
+        SearchHit<CourseDocument> hit = mock();
+        when(hit.getId()).thenReturn(id);
+        when(hit.getRouting()).thenReturn(routing);
+        when(hit.getContent()).thenReturn(CourseDocument.builder().id(id).popularity(popularity).build());
+        return hit;
+    }
+
+    private static SearchHit<CourseDocument> hit(String id, String title) {
+        SearchHit<CourseDocument> hit = mock();
+        when(hit.getId()).thenReturn(id);
+        when(hit.getContent()).thenReturn(CourseDocument.builder().id(id).title(title).build());
+        return hit;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.PreEncodedCourseModule;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SearchResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CourseJsonCache} together with {@link PreEncodedCourseModule}.
+ */
+@DisplayName("CourseJsonCache Unit Tests")
+class CourseJsonCacheTest {
+
+    private IndexGeneration indexGeneration;
+    private CourseJsonCache cache;
+    private ObjectMapper plainMapper;
+    private ObjectMapper cachingMapper;
+
+    private CourseDocument course;
+
+    @BeforeEach
+    void setUp() {
+        indexGeneration = new IndexGeneration();
+        cache = new CourseJsonCache(indexGeneration);
+
+        plainMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        cachingMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .registerModule(new PreEncodedCourseModule(cache))
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        course = CourseDocument.builder()
+                .id("C001")
+                .title("Math for Beginners")
+                .description("Learn \"addition\" and subtraction")
+                .category("Math")
+                .minPrice(50.0)
+                .nextSessionDate(Instant.parse("2025-08-10T09:00:00Z"))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Writes the same JSON as the plain bean serializer")
+    void shouldWriteSameJsonAsPlainSerializer() throws Exception {
+        SearchResponse response = SearchResponse.builder().total(1).courses(List.of(course)).build();
+
+        String expected = plainMapper.writeValueAsString(response);
+
+        assertThat(cachingMapper.writeValueAsString(response)).isEqualTo(expected);
+        assertThat(cachingMapper.writeValueAsString(response)).isEqualTo(expected);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Does not reuse bytes when a document with the same id changed")
+    void shouldNotReuseBytesForChangedDocument() throws Exception {
+        cachingMapper.writeValueAsString(course);
+
+        CourseDocument repriced = CourseDocument.builder()
+                .id("C001")
+                .title("Math for Beginners")
+                .minPrice(45.0)
+                .build();
+
+        assertThat(cachingMapper.writeValueAsString(repriced))
+                .isEqualTo(plainMapper.writeValueAsString(repriced));
+    }
+
+    @Test
+    @DisplayName("Drops entries when the index generation advances")
+    void shouldDropEntriesOnNewGeneration() throws Exception {
+        cachingMapper.writeValueAsString(course);
+        assertThat(cache.get(course)).isNotNull();
+
+        indexGeneration.advance();
+
+        assertThat(cache.get(course)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
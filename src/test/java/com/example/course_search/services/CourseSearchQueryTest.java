@@ -0,0 +1,192 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SearchResponse;
+import com.example.course_search.support.InMemoryElasticsearch;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link CourseSearchService} queries run against {@link InMemoryElasticsearch},
+ * so the criteria and native queries it builds are evaluated instead of
+ * mocked.
+ */
+@DisplayName("CourseSearchService queries")
+class CourseSearchQueryTest {
+
+    private final InMemoryElasticsearch elasticsearch = new InMemoryElasticsearch();
+    private CourseSearchProperties properties;
+    private CourseSearchService courseSearchService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CourseSearchProperties();
+        courseSearchService = new CourseSearchService(elasticsearch.operations(),
+                new ElasticsearchCircuitBreaker(properties), new ElasticsearchConcurrencyLimiter(properties),
+                new StaleResultCache(properties), ObservationRegistry.create(), new CourseRouting(null, properties),
+                properties);
+        elasticsearch.save(List.of(
+                course("C1", "Java Programming", "Learn Java from basics", "Programming", 14, 18, 100, 200, "2025-09-01"),
+                course("C2", "Python for Kids", "Games and puzzles in Python", "Programming", 8, 12, 50, 80, "2025-08-15"),
+                course("C3", "Robotics Club", "Build robots with Java and sensors", "Science", 10, 14, 120, 150, "2025-10-01"),
+                course("C4", "Watercolor Painting", "Art basics", "Art", 6, 10, 30, 30, "2025-07-20")));
+    }
+
+    @Test
+    @DisplayName("A keyword matches titles and descriptions, soonest session first")
+    void shouldMatchTitleOrDescription() {
+        SearchResponse response = search("java", null, null, null, null, null);
+
+        assertThat(response.getTotal()).isEqualTo(2);
+        assertThat(ids(response)).containsExactly("C1", "C3");
+    }
+
+    @Test
+    @DisplayName("With a filter, a keyword still matches titles or descriptions")
+    void shouldMatchTitleOrDescriptionWhenFiltering() {
+        SearchResponse response = search("java", 10, null, null, null, null);
+
+        assertThat(ids(response)).containsExactly("C1", "C3");
+    }
+
+    @Test
+    @DisplayName("Filters apply to description matches as well as title matches")
+    void shouldApplyFiltersToEitherKeywordMatch() {
+        // C3 only mentions Java in its description; C1 has it in the title but is outside the filters
+        assertThat(ids(search("java", null, null, null, null, "Science"))).containsExactly("C3");
+        assertThat(ids(search("java", null, null, 110.0, null, null))).containsExactly("C3");
+        assertThat(ids(search("java", null, null, null, null, "Art"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Filters on age, price, category and session date")
+    void shouldFilter() {
+        assertThat(ids(search(null, 9, 11, null, null, null))).containsExactly("C4", "C2", "C3");
+        assertThat(ids(search(null, null, null, 40.0, 160.0, null))).containsExactly("C2", "C3");
+        assertThat(ids(search(null, null, null, null, null, "Programming"))).containsExactly("C2", "C1");
+        assertThat(ids(courseSearchService.searchCourses(null, null, null, null, null, null, null,
+                OffsetDateTime.parse("2025-08-20T00:00:00Z"), null, 0, 10))).containsExactly("C1", "C3");
+    }
+
+    @Test
+    @DisplayName("Sorts and pages all courses")
+    void shouldSortAndPage() {
+        SearchResponse first = courseSearchService.findAllCourses("priceDesc", 0, 2);
+        SearchResponse second = courseSearchService.findAllCourses("priceDesc", 1, 2);
+
+        assertThat(first.getTotal()).isEqualTo(4);
+        assertThat(ids(first)).containsExactly("C1", "C3");
+        assertThat(ids(second)).containsExactly("C2", "C4");
+        assertThat(ids(courseSearchService.findAllCourses("priceAsc", 0, 10))).containsExactly("C4", "C2", "C1", "C3");
+    }
+
+    @Test
+    @DisplayName("In index sort order, counts one page past the requested one and reports a lower bound when enabled")
+    void shouldStopCountingPastNextPageInIndexSortOrder() {
+        properties.getIndexSort().setEarlyTermination(true);
+        SearchResponse upcoming = courseSearchService.findAllCourses("upcoming", 0, 1);
+        SearchResponse filtered = courseSearchService.searchCourses(null, null, null, null, null, null, null,
+                null, "upcoming", 0, 1);
+        SearchResponse byPrice = courseSearchService.findAllCourses("priceAsc", 0, 1);
+
+        assertThat(upcoming.getTotal()).isEqualTo(2);
+        assertThat(upcoming.getTotalRelation()).isEqualTo("gte");
+        assertThat(ids(upcoming)).containsExactly("C4");
+        assertThat(filtered.getTotal()).isEqualTo(2);
+        assertThat(filtered.getTotalRelation()).isEqualTo("gte");
+        assertThat(byPrice.getTotal()).isEqualTo(4);
+        assertThat(byPrice.getTotalRelation()).isNull();
+    }
+
+    @Test
+    @DisplayName("Counts every match in index sort order by default")
+    void shouldCountExactlyByDefault() {
+        SearchResponse upcoming = courseSearchService.findAllCourses("upcoming", 0, 1);
+
+        assertThat(upcoming.getTotal()).isEqualTo(4);
+        assertThat(upcoming.getTotalRelation()).isNull();
+    }
+
+    @Test
+    @DisplayName("Fuzzy search tolerates typos")
+    void shouldTolerateTypos() {
+        assertThat(ids(courseSearchService.searchCoursesWithFuzzy("pyhton", null, null, null, null, null, null,
+                null, null, 0, 10))).containsExactly("C2");
+        assertThat(ids(courseSearchService.searchCoursesWithFuzzy("robotcs club", null, null, null, null, null,
+                null, null, null, 0, 10))).containsExactly("C3");
+    }
+
+    @Test
+    @DisplayName("Projections only return the requested fields")
+    void shouldProject() {
+        CourseDocument course = courseSearchService.searchCourses("watercolor", null, null, null, null, null, null,
+                null, null, 0, 10, FieldProjection.SUMMARY).getCourses().get(0);
+
+        assertThat(course.getId()).isEqualTo("C4");
+        assertThat(course.getTitle()).isEqualTo("Watercolor Painting");
+        assertThat(course.getNextSessionDate()).isEqualTo(Instant.parse("2025-07-20T09:00:00Z"));
+        assertThat(course.getDescription()).isNull();
+        assertThat(course.getMaxPrice()).isNull();
+    }
+
+    @Test
+    @DisplayName("Keyword search throughput over 5,000 courses")
+    void shouldMeasureThroughput() {
+        InMemoryElasticsearch large = new InMemoryElasticsearch();
+        large.save(IntStream.range(0, 5_000)
+                .mapToObj(i -> course("L" + i, "Course number " + i, "Hands-on session " + (i % 50),
+                        i % 2 == 0 ? "Math" : "Science", 5 + i % 10, 10 + i % 10, i % 200, 200 + i % 200,
+                        "2025-09-" + String.format("%02d", 1 + i % 28)))
+                .toList());
+        CourseSearchProperties properties = new CourseSearchProperties();
+        CourseSearchService service = new CourseSearchService(large.operations(),
+                new ElasticsearchCircuitBreaker(properties), new ElasticsearchConcurrencyLimiter(properties),
+                new StaleResultCache(properties), ObservationRegistry.create(), new CourseRouting(null, properties),
+                properties);
+
+        int searches = 200;
+        long total = 0;
+        for (int i = 0; i < searches; i++) {
+            total += service.searchCourses("session " + (i % 50), 7, null, null, 300.0, "Math", null, null,
+                    "priceAsc", 0, 10).getTotal();
+        }
+
+        assertThat(total).isPositive();
+    }
+
+    private SearchResponse search(String q, Integer minAge, Integer maxAge, Double minPrice, Double maxPrice,
+                                  String category) {
+        return courseSearchService.searchCourses(q, minAge, maxAge, minPrice, maxPrice, category, null, null,
+                null, 0, 10);
+    }
+
+    private static List<String> ids(SearchResponse response) {
+        return response.getCourses().stream().map(CourseDocument::getId).toList();
+    }
+
+    private static CourseDocument course(String id, String title, String description, String category,
+                                         int minAge, int maxAge, double minPrice, double maxPrice, String date) {
+        return CourseDocument.builder()
+                .id(id)
+                .title(title)
+                .description(description)
+                .category(category)
+                .type("COURSE")
+                .minAge(minAge)
+                .maxAge(maxAge)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .nextSessionDate(Instant.parse(date + "T09:00:00Z"))
+                .build();
+    }
+}
@@ -1,30 +1,42 @@
 package com.example.course_search.services;
 
+import com.example.course_search.config.CourseSearchProperties;
 import com.example.course_search.document.CourseDocument;
 import com.example.course_search.dto.SearchResponse;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
@@ -36,6 +48,24 @@ class CourseSearchServiceTest {
     @Mock
     private ElasticsearchOperations elasticsearchOperations;
 
+    @Spy
+    private ElasticsearchCircuitBreaker circuitBreaker = new ElasticsearchCircuitBreaker(new CourseSearchProperties());
+
+    @Spy
+    private ElasticsearchConcurrencyLimiter concurrencyLimiter = new ElasticsearchConcurrencyLimiter(new CourseSearchProperties());
+
+    @Spy
+    private StaleResultCache staleResultCache = new StaleResultCache(new CourseSearchProperties());
+
+    @Spy
+    private ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    @Spy
+    private CourseRouting courseRouting = new CourseRouting(null, new CourseSearchProperties());
+
+    @Spy
+    private CourseSearchProperties properties = new CourseSearchProperties();
+
     @InjectMocks
     private CourseSearchService courseSearchService;
 
@@ -204,6 +234,188 @@ class CourseSearchServiceTest {
         assertThat(result.getTotal()).isEqualTo(1L);
     }
 
+    @Test
+    @DisplayName("Should send the field projection as _source includes")
+    void shouldSendFieldProjectionAsSourceIncludes() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenReturn(new ArrayList<SearchHit<CourseDocument>>().stream());
+        when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock);
+
+        // When
+        courseSearchService.searchCourses(
+                null, null, null, null, null, "Math", null, null, "upcoming", 0, 10,
+                FieldProjection.SUMMARY
+        );
+
+        // Then
+        ArgumentCaptor<CriteriaQuery> captor = ArgumentCaptor.forClass(CriteriaQuery.class);
+        verify(elasticsearchOperations).search(captor.capture(), eq(CourseDocument.class));
+        assertThat(captor.getValue().getSourceFilter().getIncludes())
+                .containsExactlyInAnyOrder("id", "title", "category", "minPrice", "nextSessionDate");
+    }
+
+    @Test
+    @DisplayName("Should serve the last good result marked stale when Elasticsearch is down")
+    void shouldServeStaleResultWhenBackendIsDown() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        SearchHit<CourseDocument> searchHitMock = mock(SearchHit.class);
+        when(searchHitMock.getContent()).thenReturn(sampleCourse);
+        when(searchHitsMock.stream()).thenAnswer(invocation -> List.of(searchHitMock).stream());
+        when(searchHitsMock.getTotalHits()).thenReturn(1L);
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock)
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        SearchResponse fresh = courseSearchService.findAllCourses("upcoming", 0, 10);
+
+        // When
+        SearchResponse fallback = courseSearchService.findAllCourses("upcoming", 0, 10);
+
+        // Then
+        assertThat(fresh.isStale()).isFalse();
+        assertThat(fallback.isStale()).isTrue();
+        assertThat(fallback.getCourses()).containsExactly(sampleCourse);
+    }
+
+    @Test
+    @DisplayName("Should refresh a stale historical result from the archive as well")
+    void shouldRefreshStaleHistoricalResult() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenAnswer(invocation -> new ArrayList<SearchHit<CourseDocument>>().stream());
+        IndexCoordinates historical = IndexCoordinates.of(CourseIndexLayout.HISTORICAL);
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class), eq(historical)))
+                .thenReturn(searchHitsMock)
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(searchHitsMock);
+
+        // When
+        SearchResponse fallback;
+        try (SearchContext context = SearchContext.open(Duration.ofSeconds(1))) {
+            context.setHistorical(true);
+            courseSearchService.findAllCourses("upcoming", 0, 10);
+            fallback = courseSearchService.findAllCourses("upcoming", 0, 10);
+        }
+
+        // Then
+        assertThat(fallback.isStale()).isTrue();
+        verify(elasticsearchOperations, timeout(5000).times(3))
+                .search(any(NativeQuery.class), eq(CourseDocument.class), eq(historical));
+        verify(elasticsearchOperations, never()).search(any(NativeQuery.class), eq(CourseDocument.class));
+    }
+
+    @Test
+    @DisplayName("Should propagate backend failures when there is no result to fall back to")
+    void shouldPropagateBackendFailureWithoutStaleResult() {
+        // Given
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // When & Then
+        assertThatThrownBy(() -> courseSearchService.findAllCourses("upcoming", 0, 10))
+                .isInstanceOf(SearchBackendUnavailableException.class);
+    }
+
+    @Test
+    @DisplayName("Should pass the remaining request budget to Elasticsearch and flag timed-out results partial")
+    void shouldApplyDeadlineAndFlagPartialResults() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenReturn(new ArrayList<SearchHit<CourseDocument>>().stream());
+        when(searchHitsMock.getExecutionDuration()).thenReturn(Duration.ofSeconds(5));
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock);
+
+        // When
+        SearchResponse response;
+        try (SearchContext ignored = SearchContext.open(Duration.ofSeconds(1))) {
+            response = courseSearchService.findAllCourses("upcoming", 0, 10);
+        }
+
+        // Then
+        ArgumentCaptor<NativeQuery> captor = ArgumentCaptor.forClass(NativeQuery.class);
+        verify(elasticsearchOperations).search(captor.capture(), eq(CourseDocument.class));
+        assertThat(captor.getValue().getTimeout()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(1));
+        assertThat(response.isPartial()).isTrue();
+        verify(staleResultCache, never()).put(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should explain the query, clamped page and tier when asked to")
+    void shouldExplainSearch() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenReturn(new ArrayList<SearchHit<CourseDocument>>().stream());
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock);
+
+        // When
+        SearchResponse response;
+        try (SearchContext context = SearchContext.open(Duration.ofSeconds(1))) {
+            context.setExplain(true);
+            response = courseSearchService.findAllCourses("priceAsc", -3, 500);
+        }
+
+        // Then
+        assertThat(response.getExplain().getTier()).isEqualTo("match_all");
+        assertThat(response.getExplain().getPage()).isZero();
+        assertThat(response.getExplain().getSize()).isEqualTo(10);
+        assertThat(response.getExplain().getSort()).isEqualTo("minPrice:asc,nextSessionDate:asc");
+        assertThat(response.getExplain().getQueries()).isEqualTo("[{\"match_all\":{}}]");
+    }
+
+    @Test
+    @DisplayName("Should route a single-category search to its shard only when routing by category")
+    void shouldRouteCategorySearches() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenAnswer(invocation -> new ArrayList<SearchHit<CourseDocument>>().stream());
+        when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock);
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getRouting().setEnabled(true);
+        CourseSearchService routed = new CourseSearchService(elasticsearchOperations, circuitBreaker, concurrencyLimiter,
+                staleResultCache, observationRegistry, new CourseRouting(null, properties), properties);
+
+        // When
+        courseSearchService.searchCourses(null, null, null, null, null, "Math", null, null, "upcoming", 0, 10);
+        routed.searchCourses(null, null, null, null, null, "Math", null, null, "upcoming", 0, 10);
+        routed.searchCourses(null, 8, null, null, null, null, null, null, "upcoming", 0, 10);
+
+        // Then
+        ArgumentCaptor<CriteriaQuery> captor = ArgumentCaptor.forClass(CriteriaQuery.class);
+        verify(elasticsearchOperations, times(3)).search(captor.capture(), eq(CourseDocument.class));
+        assertThat(captor.getAllValues()).extracting(CriteriaQuery::getRoute).containsExactly(null, "Math", null);
+    }
+
+    @Test
+    @DisplayName("Should search the archive as well only when the request is historical")
+    void shouldSearchArchiveForHistoricalRequests() {
+        // Given
+        SearchHits<CourseDocument> searchHitsMock = mock(SearchHits.class);
+        when(searchHitsMock.stream()).thenAnswer(invocation -> new ArrayList<SearchHit<CourseDocument>>().stream());
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenReturn(searchHitsMock);
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class), any(IndexCoordinates.class)))
+                .thenReturn(searchHitsMock);
+
+        // When
+        courseSearchService.findAllCourses("upcoming", 0, 10);
+        try (SearchContext context = SearchContext.open(Duration.ofSeconds(1))) {
+            context.setHistorical(true);
+            courseSearchService.findAllCourses("upcoming", 0, 10);
+        }
+
+        // Then
+        verify(elasticsearchOperations).search(any(NativeQuery.class), eq(CourseDocument.class));
+        verify(elasticsearchOperations).search(any(NativeQuery.class), eq(CourseDocument.class),
+                eq(IndexCoordinates.of(CourseIndexLayout.HISTORICAL)));
+        verify(staleResultCache).put(eq("allCourses?historical=true&page=0&size=10&sort=upcoming"), any());
+    }
+
     @Test
     @DisplayName("Should handle fuzzy search with empty query")
     void shouldHandleFuzzySearchWithEmptyQuery() {
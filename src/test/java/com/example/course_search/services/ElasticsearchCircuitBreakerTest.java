@@ -0,0 +1,117 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link ElasticsearchCircuitBreaker}.
+ */
+@DisplayName("ElasticsearchCircuitBreaker Unit Tests")
+class ElasticsearchCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private ElasticsearchCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getBreaker().setFailureThreshold(2);
+        properties.getBreaker().setOpenDuration(Duration.ofSeconds(10));
+        properties.getBreaker().setSlowCallThreshold(Duration.ofSeconds(1));
+        breaker = new ElasticsearchCircuitBreaker(properties, now::get);
+    }
+
+    @Test
+    @DisplayName("Opens after consecutive backend failures and then fails fast")
+    void shouldOpenAfterConsecutiveFailures() {
+        fail();
+        fail();
+
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> breaker.call(() -> "never called"))
+                .isInstanceOf(SearchBackendUnavailableException.class)
+                .hasMessageContaining("OPEN");
+    }
+
+    @Test
+    @DisplayName("Lets a trial call through after the open duration and closes on success")
+    void shouldCloseAfterSuccessfulTrialCall() {
+        fail();
+        fail();
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertThat(breaker.call(() -> "ok")).isEqualTo("ok");
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Re-opens when the trial call fails")
+    void shouldReopenWhenTrialCallFails() {
+        fail();
+        fail();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail();
+
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Lets another trial call through when the first one has not finished after the open duration")
+    void shouldReplaceHungTrialCall() {
+        fail();
+        fail();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // Nested calls run while the trial is still in flight
+        String outcome = breaker.call(() -> {
+            assertThatThrownBy(() -> breaker.call(() -> "never called"))
+                    .isInstanceOf(SearchBackendUnavailableException.class)
+                    .hasMessageContaining("HALF_OPEN");
+            now.addAndGet(Duration.ofSeconds(10).toNanos());
+            return breaker.call(() -> "second trial");
+        });
+
+        assertThat(outcome).isEqualTo("second trial");
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Counts slow calls as failures")
+    void shouldCountSlowCallsAsFailures() {
+        for (int i = 0; i < 2; i++) {
+            breaker.call(() -> now.addAndGet(Duration.ofSeconds(2).toNanos()));
+        }
+
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("Does not count rejected queries as backend failures")
+    void shouldNotCountBadRequests() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> breaker.call(() -> {
+                throw new UncategorizedElasticsearchException("parse error", 400, "{}", null);
+            })).isInstanceOf(UncategorizedElasticsearchException.class);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(ElasticsearchCircuitBreaker.State.CLOSED);
+    }
+
+    private void fail() {
+        assertThatThrownBy(() -> breaker.call(() -> {
+            throw new DataAccessResourceFailureException("Connection refused");
+        })).isInstanceOf(SearchBackendUnavailableException.class);
+    }
+}
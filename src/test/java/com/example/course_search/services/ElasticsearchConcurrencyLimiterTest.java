@@ -0,0 +1,104 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link ElasticsearchConcurrencyLimiter}.
+ */
+@DisplayName("ElasticsearchConcurrencyLimiter Unit Tests")
+class ElasticsearchConcurrencyLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private CourseSearchProperties properties;
+    private ElasticsearchConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CourseSearchProperties();
+        properties.getLimiter().setInitialLimit(2);
+        properties.getLimiter().setMinLimit(1);
+        properties.getLimiter().setMaxLimit(50);
+        properties.getLimiter().setLongWindow(10);
+        limiter = new ElasticsearchConcurrencyLimiter(properties, now::get);
+    }
+
+    @Test
+    @DisplayName("Sheds calls above the limit and counts them")
+    void shouldRejectCallsAboveLimit() {
+        limiter.call(() -> limiter.call(() -> {
+            assertThatThrownBy(() -> limiter.call(() -> "third"))
+                    .isInstanceOf(SearchOverloadedException.class)
+                    .isInstanceOf(SearchBackendUnavailableException.class);
+            return "second";
+        }));
+
+        assertThat(limiter.getRejected()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Grows the limit while latency stays flat under load")
+    void shouldGrowLimitWhenLatencyIsStable() {
+        for (int i = 0; i < 20; i++) {
+            saturatedCall(Duration.ofMillis(10));
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(2);
+    }
+
+    @Test
+    @DisplayName("Shrinks the limit when latency rises")
+    void shouldShrinkLimitWhenLatencyRises() {
+        properties.getLimiter().setInitialLimit(40);
+        properties.getLimiter().setLongWindow(100);
+        limiter = new ElasticsearchConcurrencyLimiter(properties, now::get);
+        for (int i = 0; i < 20; i++) {
+            saturatedCall(Duration.ofMillis(10));
+        }
+        int before = limiter.getLimit();
+
+        saturatedCall(Duration.ofMillis(100));
+
+        assertThat(limiter.getLimit()).isLessThan(before);
+    }
+
+    @Test
+    @DisplayName("Exposes limit, in-flight and rejected count as metrics")
+    void shouldBindMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        assertThat(registry.get("course_search.es.concurrency.limit").gauge().value()).isEqualTo(2.0);
+        assertThat(registry.get("course_search.es.concurrency.in_flight").gauge().value()).isZero();
+        assertThat(registry.get("course_search.es.concurrency.rejected").functionCounter().count()).isZero();
+    }
+
+    /** Runs a call of the given latency while the limiter is (nearly) saturated. */
+    private void saturatedCall(Duration latency) {
+        nest(limiter.getLimit() - 1, () -> {
+            now.addAndGet(latency.toNanos());
+            return null;
+        });
+    }
+
+    private void nest(int depth, Supplier<Object> innermost) {
+        limiter.call(() -> {
+            if (depth > 0) {
+                nest(depth - 1, innermost);
+                return null;
+            }
+            return innermost.get();
+        });
+    }
+}
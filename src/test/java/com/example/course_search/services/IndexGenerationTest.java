@@ -0,0 +1,111 @@
+package com.example.course_search.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link IndexGeneration} shared through a {@link IndexGeneration.Store}.
+ */
+@DisplayName("IndexGeneration Unit Tests")
+class IndexGenerationTest {
+
+    private final SharedStore store = new SharedStore();
+
+    @Test
+    @DisplayName("An advance on one instance reaches the others")
+    void shouldShareAdvances() {
+        IndexGeneration first = new IndexGeneration(store, Duration.ZERO);
+        IndexGeneration second = new IndexGeneration(store, Duration.ZERO);
+
+        long advanced = first.advance();
+        assertThat(second.current()).isZero();
+
+        second.sync();
+
+        assertThat(second.current()).isEqualTo(advanced).isEqualTo(1);
+        assertThat(second.advance()).isEqualTo(2);
+        first.sync();
+        assertThat(first.current()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Never goes back when the shared generation is behind")
+    void shouldStayMonotonic() {
+        IndexGeneration generation = new IndexGeneration(store, Duration.ZERO);
+        store.failing.set(true);
+        generation.advance();
+        generation.advance();
+        store.failing.set(false);
+
+        generation.sync();
+
+        assertThat(generation.current()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Publishes an advance that could not be shared on the next poll")
+    void shouldRetryUnpublishedAdvance() throws Exception {
+        IndexGeneration first = new IndexGeneration(store, Duration.ofMillis(10));
+        IndexGeneration second = new IndexGeneration(store, Duration.ZERO);
+        store.failing.set(true);
+
+        assertThat(first.advance()).isEqualTo(1);
+        assertThat(store.generation.get()).isZero();
+
+        store.failing.set(false);
+        first.start();
+        try {
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (store.generation.get() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            first.shutdown();
+        }
+        second.sync();
+
+        assertThat(second.current()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Advances locally when the shared generation cannot be read")
+    void shouldAdvanceLocallyWhenUnreadable() {
+        IndexGeneration generation = new IndexGeneration(store, Duration.ZERO);
+        store.failing.set(true);
+
+        generation.sync();
+
+        assertThat(generation.current()).isEqualTo(1);
+    }
+
+    private static class SharedStore implements IndexGeneration.Store {
+
+        final AtomicLong generation = new AtomicLong();
+        final AtomicBoolean failing = new AtomicBoolean();
+
+        @Override
+        public long read() throws IOException {
+            check();
+            return generation.get();
+        }
+
+        @Override
+        public long advance() throws IOException {
+            check();
+            return generation.incrementAndGet();
+        }
+
+        private void check() throws IOException {
+            if (failing.get()) {
+                throw new IOException("unavailable");
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.indices.SegmentSortOrder;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of "upcoming" queries (sorted by {@code nextSessionDate}
+ * ascending) on an index sorted by that field, compared with the default
+ * layout. Needs a running Elasticsearch ({@code -Des.url}, default
+ * {@code http://localhost:9200}); loads {@code -Dbenchmark.courses} courses
+ * (default 1,000,000) into two scratch indices and prints p50/p99 per query
+ * shape. Excluded from {@code mvn test}; run with
+ * {@code mvn test -Dtest=IndexSortBenchmarkIT -Dsurefire.failIfNoSpecifiedTests=false}.
+ */
+@DisplayName("Index sort benchmark")
+class IndexSortBenchmarkIT {
+
+    private static final String UNSORTED = "courses-bench-unsorted";
+    private static final String SORTED = "courses-bench-sorted";
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+    private static final String[] CATEGORIES = {"Math", "Science", "Art", "Music", "Language", "Sports"};
+
+    private static final Map<String, Query> QUERIES = Map.of(
+            "match_all", Query.of(q -> q.matchAll(m -> m)),
+            "filter_only", Query.of(q -> q.bool(b -> b
+                    .filter(f -> f.term(t -> t.field("category").value("Science")))
+                    .filter(f -> f.range(r -> r.number(n -> n.field("minAge").lte(10.0)))))));
+
+    private static RestClient restClient;
+    private static ElasticsearchClient client;
+
+    @BeforeAll
+    static void load() throws IOException {
+        restClient = RestClient.builder(HttpHost.create(System.getProperty("es.url", "http://localhost:9200"))).build();
+        client = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        int courses = Integer.getInteger("benchmark.courses", 1_000_000);
+
+        for (String index : List.of(UNSORTED, SORTED)) {
+            client.indices().delete(d -> d.index(index).ignoreUnavailable(true));
+            client.indices().create(c -> c
+                    .index(index)
+                    .settings(s -> {
+                        s.numberOfReplicas("0").refreshInterval(t -> t.time("-1"));
+                        if (index.equals(SORTED)) {
+                            s.sort(sort -> sort.field("nextSessionDate").order(SegmentSortOrder.Asc));
+                        }
+                        return s;
+                    })
+                    .mappings(m -> m
+                            .properties("category", p -> p.keyword(k -> k))
+                            .properties("minAge", p -> p.integer(i -> i))
+                            .properties("minPrice", p -> p.double_(d -> d))
+                            .properties("nextSessionDate", p -> p.date(d -> d))));
+        }
+
+        // Same documents in the same order for both layouts
+        Random random = new Random(42);
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        int batchSize = 5_000;
+        for (int from = 0; from < courses; from += batchSize) {
+            BulkRequest.Builder unsorted = new BulkRequest.Builder().index(UNSORTED);
+            BulkRequest.Builder sorted = new BulkRequest.Builder().index(SORTED);
+            for (int i = from; i < Math.min(from + batchSize, courses); i++) {
+                Map<String, Object> course = Map.of(
+                        "category", CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        "minAge", 4 + random.nextInt(14),
+                        "minPrice", 20.0 + random.nextInt(500),
+                        "nextSessionDate", base.plusSeconds(random.nextInt(365 * 24 * 3600)).toString());
+                String id = "C" + i;
+                unsorted.operations(op -> op.index(idx -> idx.id(id).document(course)));
+                sorted.operations(op -> op.index(idx -> idx.id(id).document(course)));
+            }
+            assertThat(client.bulk(unsorted.build()).errors()).isFalse();
+            assertThat(client.bulk(sorted.build()).errors()).isFalse();
+        }
+        for (String index : List.of(UNSORTED, SORTED)) {
+            client.indices().putSettings(p -> p.index(index).settings(s -> s.refreshInterval(t -> t.time("1s"))));
+            client.indices().refresh(r -> r.index(index));
+        }
+        System.out.printf("Loaded %,d courses into each layout%n", courses);
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException {
+        if (client != null) {
+            client.indices().delete(d -> d.index(UNSORTED, SORTED).ignoreUnavailable(true));
+        }
+        if (restClient != null) {
+            restClient.close();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"match_all", "filter_only"})
+    @DisplayName("Upcoming page of 10")
+    void shouldCompareLayouts(String shape) throws IOException {
+        Query query = QUERIES.get(shape);
+        Function<String, List<String>> topDates = index -> {
+            try {
+                return search(index, query).hits().hits().stream()
+                        .map(hit -> hit.source().toJson().asJsonObject().getString("nextSessionDate"))
+                        .toList();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        long[] unsorted = time(UNSORTED, query);
+        long[] sorted = time(SORTED, query);
+
+        System.out.printf("%-11s default  p50 %6.2f ms  p99 %6.2f ms%n", shape, percentile(unsorted, 50), percentile(unsorted, 99));
+        System.out.printf("%-11s sorted   p50 %6.2f ms  p99 %6.2f ms%n", shape, percentile(sorted, 50), percentile(sorted, 99));
+
+        // Early termination must not change the answer
+        assertThat(topDates.apply(SORTED)).isEqualTo(topDates.apply(UNSORTED));
+    }
+
+    private static long[] time(String index, Query query) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            search(index, query);
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            search(index, query);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    // Same shape as the service's "upcoming" queries: default track_total_hits, sort on the index sort field
+    private static SearchResponse<JsonData> search(String index, Query query) throws IOException {
+        return client.search(s -> s
+                .index(index)
+                .size(10)
+                .query(query)
+                .sort(sort -> sort.field(f -> f.field("nextSessionDate").order(SortOrder.Asc)))
+                .requestCache(false), JsonData.class);
+    }
+
+    private static double percentile(long[] sortedNanos, int percentile) {
+        int index = Math.min(sortedNanos.length - 1, sortedNanos.length * percentile / 100);
+        return sortedNanos[index] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link ParallelCatalogParser}.
+ */
+@DisplayName("ParallelCatalogParser Unit Tests")
+class ParallelCatalogParserTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<List<CourseDocument>> batches = new ArrayList<>();
+    private CourseSearchProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CourseSearchProperties();
+        properties.getBulkLoad().setParallelism(4);
+        // A few lines per chunk, so every test crosses chunk boundaries
+        properties.getBulkLoad().setChunkSize(DataSize.ofBytes(300));
+    }
+
+    @Test
+    @DisplayName("Delivers every course of an NDJSON file in file order, split at line boundaries")
+    void shouldParseNdjsonInOrder() throws IOException {
+        Path file = ndjson(200);
+
+        ParallelCatalogParser.Report report = parser().parse(file, 7, batches::add);
+
+        assertThat(report.chunks()).isGreaterThan(1);
+        assertThat(report.courses()).isEqualTo(200);
+        assertThat(report.rejected()).isZero();
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(7));
+        assertThat(delivered()).containsExactlyElementsOf(ids(200));
+    }
+
+    @Test
+    @DisplayName("Delivers every course exactly once when unordered")
+    void shouldParseUnordered() throws IOException {
+        properties.getBulkLoad().setOrdered(false);
+        Path file = ndjson(200);
+
+        ParallelCatalogParser.Report report = parser().parse(file, 50, batches::add);
+
+        assertThat(report.courses()).isEqualTo(200);
+        assertThat(delivered()).containsExactlyInAnyOrderElementsOf(ids(200));
+    }
+
+    @Test
+    @DisplayName("Reads CSV with the header row applied to every chunk")
+    void shouldParseCsv() throws IOException {
+        StringBuilder csv = new StringBuilder("id,title,category,minAge,minPrice,nextSessionDate\r\n");
+        for (int i = 0; i < 40; i++) {
+            csv.append("C").append(i).append(",Course ").append(i).append(",Art,").append(i % 2 == 0 ? "6" : "")
+                    .append(",30.5,2025-10-01T09:00:00Z\r\n");
+        }
+        Path file = Files.writeString(directory.resolve("catalog.csv"), csv);
+
+        ParallelCatalogParser.Report report = parser().parse(file, 100, batches::add);
+
+        assertThat(report.chunks()).isGreaterThan(1);
+        assertThat(delivered()).containsExactlyElementsOf(ids(40));
+        CourseDocument first = batches.get(0).get(0);
+        assertThat(first.getMinAge()).isEqualTo(6);
+        assertThat(first.getMinPrice()).isEqualTo(30.5);
+        assertThat(first.getNextSessionDate()).isEqualTo(Instant.parse("2025-10-01T09:00:00Z"));
+        assertThat(batches.get(0).get(1).getMinAge()).isNull();
+    }
+
+    @Test
+    @DisplayName("Skips malformed lines, reporting their chunk and byte offset, and keeps the rest")
+    void shouldReportMalformedLines() throws IOException {
+        String good = objectMapper.writeValueAsString(course("C1")) + "\n";
+        String bad = "{\"id\": \"C2\", \"minAge\": \"six\"}\n";
+        Path file = Files.writeString(directory.resolve("catalog.ndjson"),
+                good + bad + "\n" + objectMapper.writeValueAsString(course("C3")) + "\n");
+
+        ParallelCatalogParser.Report report = parser().parse(file, 10, batches::add);
+
+        assertThat(delivered()).containsExactly("C1", "C3");
+        assertThat(report.rejected()).isEqualTo(1);
+        assertThat(report.errors()).singleElement().satisfies(error ->
+                assertThat(error.offset()).isEqualTo(good.length()));
+    }
+
+    @Test
+    @DisplayName("Refuses JSON array files, which cannot be split at line boundaries")
+    void shouldRejectJsonArrays() throws IOException {
+        Path file = Files.writeString(directory.resolve("catalog.json"), "[]");
+
+        assertThatThrownBy(() -> parser().parse(file, 10, batches::add)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ParallelCatalogParser parser() {
+        return new ParallelCatalogParser(objectMapper, properties);
+    }
+
+    private Path ndjson(int courses) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < courses; i++) {
+            lines.append(objectMapper.writeValueAsString(course("C" + i))).append('\n');
+        }
+        return Files.writeString(directory.resolve("catalog.ndjson"), lines);
+    }
+
+    private List<String> delivered() {
+        return batches.stream().flatMap(List::stream).map(CourseDocument::getId).toList();
+    }
+
+    private static List<String> ids(int courses) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < courses; i++) {
+            ids.add("C" + i);
+        }
+        return ids;
+    }
+
+    private static CourseDocument course(String id) {
+        return CourseDocument.builder()
+                .id(id)
+                .title("Course " + id)
+                .category("Math")
+                .minPrice(50.0)
+                .nextSessionDate(Instant.parse("2025-09-01T09:00:00Z"))
+                .build();
+    }
+}
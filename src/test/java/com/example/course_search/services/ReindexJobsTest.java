@@ -0,0 +1,211 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.ReindexStatus;
+import com.example.course_search.support.InMemoryLeaseStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ReindexJobs}.
+ */
+@DisplayName("ReindexJobs Unit Tests")
+class ReindexJobsTest {
+
+    private static final String STAGING = "courses-active-1";
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+    private final InMemoryLeaseStore leaseStore = new InMemoryLeaseStore();
+    private ElasticsearchOperations elasticsearchOperations;
+    private CourseIndexLayout courseIndexLayout;
+    private CatalogDirectoryWatcher catalogDirectoryWatcher;
+    private ClickCounter clickCounter;
+    private CourseSearchProperties properties;
+    private ReindexJobs reindexJobs;
+    private Path catalog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        courseIndexLayout = mock(CourseIndexLayout.class);
+        when(courseIndexLayout.createStaging()).thenReturn(STAGING);
+        catalogDirectoryWatcher = mock(CatalogDirectoryWatcher.class);
+        clickCounter = mock(ClickCounter.class);
+        properties = new CourseSearchProperties();
+        properties.getBulkLoad().setBatchSize(10);
+        catalog = ndjson(50);
+        properties.getBulkLoad().setSource(catalog);
+        reindexJobs = new ReindexJobs(
+                new CatalogSource(objectMapper, new ParallelCatalogParser(objectMapper, properties), properties),
+                courseIndexLayout, new CourseRouting(mock(ElasticsearchClient.class), properties),
+                elasticsearchOperations, mock(BulkLoadTuning.class), indexGeneration, catalogDirectoryWatcher,
+                new CatalogLoadCoordinator(leaseStore, properties), clickCounter, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reindexJobs.shutdown();
+    }
+
+    @Test
+    @DisplayName("Loads the catalog into a staging index and promotes it once complete")
+    void shouldLoadAndPromote() throws Exception {
+        ReindexStatus started = reindexJobs.start(null);
+        assertThat(started.getState()).isEqualTo(ReindexStatus.State.RUNNING);
+
+        ReindexStatus done = awaitEnd();
+
+        assertThat(done.getState()).isEqualTo(ReindexStatus.State.COMPLETED);
+        assertThat(done.getIndex()).isEqualTo(STAGING);
+        assertThat(done.getDocuments()).isEqualTo(50);
+        assertThat(done.getBytes()).isEqualTo(done.getTotalBytes()).isEqualTo(Files.size(catalog));
+        assertThat(done.getEtaSeconds()).isNull();
+        verify(elasticsearchOperations, times(5)).save(anyIterable(), eq(IndexCoordinates.of(STAGING)));
+        InOrder order = inOrder(clickCounter, courseIndexLayout);
+        order.verify(clickCounter).copyPopularity(STAGING);
+        order.verify(courseIndexLayout).promote(STAGING);
+        order.verify(courseIndexLayout).clearArchive();
+        verify(courseIndexLayout, never()).dropStaging();
+        verify(catalogDirectoryWatcher).resetCheckpoint();
+        assertThat(indexGeneration.current()).isEqualTo(1);
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).get()
+                .extracting(LeaseStore.Lease::state).isEqualTo(LeaseStore.State.LOADED);
+    }
+
+    @Test
+    @DisplayName("Runs one job at a time")
+    void shouldRejectConcurrentJobs() throws Exception {
+        CountDownLatch release = blockSaves();
+        reindexJobs.start(null);
+
+        assertThatThrownBy(() -> reindexJobs.start(null)).isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        assertThat(awaitEnd().getState()).isEqualTo(ReindexStatus.State.COMPLETED);
+        assertThat(reindexJobs.start(null).getState()).isEqualTo(ReindexStatus.State.RUNNING);
+        awaitEnd();
+    }
+
+    @Test
+    @DisplayName("Cancelling deletes the staging index and keeps the current catalog")
+    void shouldCancel() throws Exception {
+        blockSaves();
+        reindexJobs.start(null);
+
+        assertThat(reindexJobs.cancel()).isPresent();
+        ReindexStatus done = awaitEnd();
+
+        assertThat(done.getState()).isEqualTo(ReindexStatus.State.CANCELLED);
+        verify(courseIndexLayout).dropStaging();
+        verify(courseIndexLayout, never()).promote(any());
+        assertThat(indexGeneration.current()).isZero();
+        assertThat(reindexJobs.cancel()).isEmpty();
+        assertThat(leaseStore.lease(CatalogLoadCoordinator.LEASE)).get()
+                .extracting(LeaseStore.Lease::state).isEqualTo(LeaseStore.State.RELEASED);
+    }
+
+    @Test
+    @DisplayName("Does not start loading while another instance holds the catalog load lease")
+    void shouldRespectOtherInstancesLease() throws Exception {
+        leaseStore.create(CatalogLoadCoordinator.LEASE, new LeaseStore.Lease("other", "v1", LeaseStore.State.LOADING,
+                System.currentTimeMillis() + 60_000));
+        reindexJobs.start(null);
+
+        ReindexStatus done = awaitEnd();
+
+        assertThat(done.getState()).isEqualTo(ReindexStatus.State.FAILED);
+        assertThat(done.getError()).isEqualTo("Another instance is loading the catalog");
+        verify(courseIndexLayout, never()).createStaging();
+    }
+
+    @Test
+    @DisplayName("Throttles writes to the requested rate")
+    void shouldThrottle() throws Exception {
+        long start = System.nanoTime();
+        // Five batches of ten: the last one is due after 40 documents at 200/s
+        reindexJobs.start(200.0);
+
+        ReindexStatus done = awaitEnd();
+
+        assertThat(done.getState()).isEqualTo(ReindexStatus.State.COMPLETED);
+        assertThat(done.getRate()).isEqualTo(200.0);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    @DisplayName("Reports a failed load and deletes the staging index")
+    void shouldReportFailures() throws Exception {
+        when(elasticsearchOperations.save(anyIterable(), any(IndexCoordinates.class)))
+                .thenThrow(new IllegalStateException("disk full"));
+        reindexJobs.start(null);
+
+        ReindexStatus done = awaitEnd();
+
+        assertThat(done.getState()).isEqualTo(ReindexStatus.State.FAILED);
+        assertThat(done.getError()).isEqualTo("disk full");
+        verify(courseIndexLayout).dropStaging();
+        verify(courseIndexLayout, never()).promote(any());
+    }
+
+    // Saves wait for the returned latch, or for the job to be cancelled
+    private CountDownLatch blockSaves() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(elasticsearchOperations.save(anyIterable(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        });
+        return release;
+    }
+
+    private ReindexStatus awaitEnd() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ReindexStatus status = reindexJobs.status().orElseThrow();
+            if (status.getState() != ReindexStatus.State.RUNNING) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Reindex job did not end");
+    }
+
+    private Path ndjson(int courses) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < courses; i++) {
+            lines.append(objectMapper.writeValueAsString(CourseDocument.builder()
+                    .id("C" + i)
+                    .title("Course " + i)
+                    .category("Math")
+                    .nextSessionDate(Instant.parse("2025-09-01T09:00:00Z"))
+                    .build())).append('\n');
+        }
+        return Files.writeString(directory.resolve("catalog.ndjson"), lines);
+    }
+}
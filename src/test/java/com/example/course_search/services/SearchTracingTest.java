@@ -0,0 +1,134 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.support.InMemoryTracing;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.example.course_search.support.InMemoryTracing.attribute;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the spans {@link CourseSearchService} and {@link SuggestionService}
+ * emit, using {@link InMemoryTracing} instead of a collector.
+ */
+@DisplayName("Search tracing")
+class SearchTracingTest {
+
+    private final InMemoryTracing tracing = new InMemoryTracing();
+    private ElasticsearchOperations elasticsearchOperations;
+    private CourseSearchService courseSearchService;
+    private SuggestionService suggestionService;
+
+    @BeforeEach
+    void setUp() {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        ElasticsearchCircuitBreaker circuitBreaker = new ElasticsearchCircuitBreaker(properties);
+        ElasticsearchConcurrencyLimiter concurrencyLimiter = new ElasticsearchConcurrencyLimiter(properties);
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        courseSearchService = new CourseSearchService(elasticsearchOperations, circuitBreaker, concurrencyLimiter,
+                new StaleResultCache(properties), tracing.observationRegistry(), new CourseRouting(null, properties),
+                properties);
+        suggestionService = new SuggestionService(elasticsearchOperations, circuitBreaker, concurrencyLimiter,
+                tracing.observationRegistry(), new SuggestionPrefixCache(new IndexGeneration(), properties),
+                new SuggestionBatcher(properties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracing.close();
+    }
+
+    @Test
+    @DisplayName("Nests tier and Elasticsearch spans under the search span")
+    void shouldTraceSearchTierAndElasticsearchCall() {
+        // Given
+        SearchHits<CourseDocument> hits = hits(CourseDocument.builder().id("1").title("Algebra").build());
+        when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class))).thenReturn(hits);
+
+        // When
+        courseSearchService.searchCourses(null, null, null, null, null, "Math", null, null, "upcoming", 0, 10);
+
+        // Then
+        assertThat(tracing.names()).containsExactly("course_search.es.search", "course_search.tier", "course_search.search");
+        SpanData search = tracing.span("course_search.search");
+        SpanData tier = tracing.span("course_search.tier");
+        SpanData es = tracing.span("course_search.es.search");
+        assertThat(tier.getParentSpanId()).isEqualTo(search.getSpanId());
+        assertThat(es.getParentSpanId()).isEqualTo(tier.getSpanId());
+
+        assertThat(attribute(search, "operation")).contains("search");
+        assertThat(attribute(search, "cache.outcome")).contains("miss");
+        assertThat(attribute(search, "hits")).contains("1");
+        assertThat(attribute(tier, "tier")).contains("criteria");
+        assertThat(attribute(es, "hits")).contains("1");
+        assertThat(attribute(es, "es.took_ms")).contains("12");
+    }
+
+    @Test
+    @DisplayName("Records the stale tier and cache outcome when Elasticsearch is down")
+    void shouldTraceStaleFallback() {
+        // Given
+        SearchHits<CourseDocument> hits = hits(CourseDocument.builder().id("1").title("Algebra").build());
+        when(elasticsearchOperations.search(any(NativeQuery.class), eq(CourseDocument.class)))
+                .thenReturn(hits)
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        courseSearchService.findAllCourses("upcoming", 0, 10);
+        tracing.reset();
+
+        // When
+        courseSearchService.findAllCourses("upcoming", 0, 10);
+
+        // Then
+        SpanData search = tracing.span("course_search.search");
+        assertThat(attribute(search, "cache.outcome")).contains("stale_hit");
+        // The background refresh of the stale entry runs in a trace of its own
+        assertThat(tracing.spans("course_search.tier"))
+                .filteredOn(span -> span.getTraceId().equals(search.getTraceId()))
+                .extracting(span -> attribute(span, "tier").orElse(null))
+                .containsExactlyInAnyOrder("match_all", "stale");
+    }
+
+    @Test
+    @DisplayName("Traces suggestions with their Elasticsearch call")
+    void shouldTraceSuggestions() {
+        // Given
+        SearchHits<CourseDocument> hits = hits(CourseDocument.builder().id("1").title("Java Basics").build());
+        when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class))).thenReturn(hits);
+
+        // When
+        suggestionService.getSuggestions("jav", 5);
+
+        // Then
+        assertThat(tracing.names()).containsExactly("course_search.es.search", "course_search.suggest");
+        assertThat(attribute(tracing.span("course_search.suggest"), "hits")).contains("1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private SearchHits<CourseDocument> hits(CourseDocument course) {
+        SearchHit<CourseDocument> hit = mock(SearchHit.class);
+        when(hit.getContent()).thenReturn(course);
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(hits.stream()).thenAnswer(invocation -> List.of(hit).stream());
+        when(hits.getTotalHits()).thenReturn(1L);
+        when(hits.getExecutionDuration()).thenReturn(Duration.ofMillis(12));
+        return hits;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.course_search.services;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.Profile;
+import co.elastic.clients.json.JsonData;
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import com.example.course_search.dto.SlowQueryEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.Order;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SlowQueryLog}.
+ */
+@DisplayName("SlowQueryLog Unit Tests")
+class SlowQueryLogTest {
+
+    private CourseSearchProperties properties;
+    private ElasticsearchClient elasticsearchClient;
+    private ElasticsearchCircuitBreaker circuitBreaker;
+    private SearchContext context;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CourseSearchProperties();
+        properties.getSlowLog().setThreshold(Duration.ZERO);
+        elasticsearchClient = mock(ElasticsearchClient.class);
+        circuitBreaker = spy(new ElasticsearchCircuitBreaker(properties));
+        context = SearchContext.open(Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    @DisplayName("Ignores requests faster than the threshold")
+    void shouldIgnoreFastRequests() {
+        properties.getSlowLog().setThreshold(Duration.ofHours(1));
+        SlowQueryLog log = log(() -> 0.0);
+        context.setCanonicalQuery("allCourses?page=0&size=10&sort=upcoming");
+
+        log.record("/api/allCourses", context);
+
+        assertThat(log.recent()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Records canonical query, query DSL, stages and tier of slow requests")
+    void shouldRecordSlowRequest() throws Exception {
+        SlowQueryLog log = log(() -> 1.0);
+        context.setCanonicalQuery("criteria:search?category=Math&page=0&size=10&sort=upcoming");
+        context.setTier("criteria");
+        context.lap("build");
+        context.inspect(new CriteriaQuery(new Criteria("category").is("Math")), hitsTaking(Duration.ofMillis(40)));
+        context.lap("elasticsearch");
+
+        log.record("/api/search", context);
+
+        SlowQueryEntry entry = log.recent().get(0);
+        assertThat(entry.getEndpoint()).isEqualTo("/api/search");
+        assertThat(entry.getCanonicalQuery()).contains("category=Math");
+        assertThat(entry.getTier()).isEqualTo("criteria");
+        assertThat(entry.getTookMs()).isEqualTo(40.0);
+        assertThat(entry.getStagesMs()).containsOnlyKeys("build", "elasticsearch");
+        assertThat(entry.getQueries()).startsWith("[").contains("category").contains("Math");
+        assertThat(entry.getProfile()).isNull();
+        verify(elasticsearchClient, never()).search(any(SearchRequest.class), eq(JsonData.class));
+    }
+
+    @Test
+    @DisplayName("Keeps only the most recent entries")
+    void shouldEvictOldestEntries() {
+        properties.getSlowLog().setCapacity(2);
+        SlowQueryLog log = log(() -> 1.0);
+
+        for (int page = 0; page < 3; page++) {
+            context.setCanonicalQuery("allCourses?page=" + page);
+            log.record("/api/allCourses", context);
+        }
+
+        assertThat(log.recent()).extracting(SlowQueryEntry::getCanonicalQuery)
+                .containsExactly("allCourses?page=2", "allCourses?page=1");
+    }
+
+    @Test
+    @DisplayName("Re-runs sampled slow requests with profile enabled")
+    @SuppressWarnings("unchecked")
+    void shouldProfileSampledRequests() throws Exception {
+        co.elastic.clients.elasticsearch.core.SearchResponse<JsonData> profiled =
+                mock(co.elastic.clients.elasticsearch.core.SearchResponse.class);
+        when(profiled.profile()).thenReturn(Profile.of(p -> p.shards(List.of())));
+        when(elasticsearchClient.search(any(SearchRequest.class), eq(JsonData.class))).thenReturn(profiled);
+        SlowQueryLog log = log(() -> 0.0);
+
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(Query.of(q -> q.matchAll(m -> m)))
+                .withPageable(PageRequest.of(2, 25, Sort.by(new Order(Sort.Direction.DESC, "popularity")
+                        .withUnmappedType("long"))))
+                .withSourceFilter(new FetchSourceFilter(true, new String[]{"title"}, null))
+                .withTimeout(Duration.ofMillis(800))
+                .build();
+        context.setCanonicalQuery("allCourses?page=0&size=25&sort=upcoming");
+        context.inspect(query, hitsTaking(Duration.ofMillis(5)));
+
+        log.record("/api/allCourses", context);
+
+        SlowQueryEntry entry = log.recent().get(0);
+        assertThat(entry.getQueries()).contains("match_all");
+        assertThat(entry.getProfile()).contains("shards");
+        verify(elasticsearchClient).search(
+                org.mockito.ArgumentMatchers.<SearchRequest>argThat(request ->
+                        Boolean.TRUE.equals(request.profile()) && request.size() == 25 && request.from() == 50
+                                && request.sort().get(0).field().field().equals("popularity")
+                                && request.sort().get(0).field().order() == SortOrder.Desc
+                                && request.sort().get(0).field().unmappedType() == FieldType.Long
+                                && request.source().filter().includes().equals(List.of("title"))
+                                && "800ms".equals(request.timeout())),
+                eq(JsonData.class));
+        verify(circuitBreaker).call(any());
+    }
+
+    @Test
+    @DisplayName("Does not profile while the circuit is open")
+    void shouldNotProfileWhileCircuitOpen() throws Exception {
+        when(circuitBreaker.getState()).thenReturn(ElasticsearchCircuitBreaker.State.OPEN);
+        SlowQueryLog log = log(() -> 0.0);
+        context.setCanonicalQuery("allCourses?page=0&size=10&sort=upcoming");
+        context.inspect(NativeQuery.builder().withQuery(Query.of(q -> q.matchAll(m -> m))).build(),
+                hitsTaking(Duration.ofMillis(5)));
+
+        log.record("/api/allCourses", context);
+
+        assertThat(log.recent()).hasSize(1);
+        assertThat(log.recent().get(0).getProfile()).isNull();
+        verify(elasticsearchClient, never()).search(any(SearchRequest.class), eq(JsonData.class));
+    }
+
+    private SlowQueryLog log(DoubleSupplier random) {
+        return new SlowQueryLog(properties, elasticsearchClient, circuitBreaker,
+                new ElasticsearchConcurrencyLimiter(properties), random, Runnable::run);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SearchHits<CourseDocument> hitsTaking(Duration took) {
+        SearchHits<CourseDocument> hits = mock(SearchHits.class);
+        when(hits.getExecutionDuration()).thenReturn(took);
+        return hits;
+    }
+}
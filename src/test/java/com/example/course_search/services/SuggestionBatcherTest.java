@@ -0,0 +1,174 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.document.CourseDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link SuggestionBatcher}.
+ */
+@DisplayName("SuggestionBatcher Unit Tests")
+class SuggestionBatcherTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private final List<List<CriteriaQuery>> batches = new CopyOnWriteArrayList<>();
+    private final Map<CriteriaQuery, SearchHits<CourseDocument>> answers = Collections.synchronizedMap(new IdentityHashMap<>());
+    private SuggestionBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        batcher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Sends concurrent distinct queries as one batch and fans results out in order")
+    void shouldBatchConcurrentQueries() throws Exception {
+        batcher = batcher(Duration.ofMillis(200), 4);
+        Map<CriteriaQuery, Future<SearchHits<CourseDocument>>> results = new IdentityHashMap<>();
+
+        for (String prefix : List.of("a", "b", "c", "d")) {
+            CriteriaQuery query = query(prefix);
+            results.put(query, callers.submit(() -> batcher.search(prefix, query, this::backend)));
+        }
+
+        for (Map.Entry<CriteriaQuery, Future<SearchHits<CourseDocument>>> result : results.entrySet()) {
+            assertThat(result.getValue().get()).isSameAs(answers.get(result.getKey()));
+        }
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(4);
+    }
+
+    @Test
+    @DisplayName("Sends identical queries of one window once")
+    void shouldMergeIdenticalQueries() throws Exception {
+        batcher = batcher(Duration.ofMillis(50), 32);
+
+        Future<SearchHits<CourseDocument>> first = callers.submit(() -> batcher.search("ma|10", query("ma"), this::backend));
+        Future<SearchHits<CourseDocument>> second = callers.submit(() -> batcher.search("ma|10", query("ma"), this::backend));
+
+        assertThat(first.get()).isSameAs(second.get());
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Sends a shared query with the latest deadline among its callers")
+    void shouldSendSharedQueryWithLatestDeadline() throws Exception {
+        batcher = batcher(Duration.ofMillis(100), 32);
+        CriteriaQuery shortDeadline = query("ma");
+        shortDeadline.setTimeout(Duration.ofMillis(50));
+        CriteriaQuery longDeadline = query("ma");
+        longDeadline.setTimeout(Duration.ofSeconds(2));
+
+        Future<SearchHits<CourseDocument>> first = callers.submit(() -> batcher.search("ma|10", shortDeadline, this::backend));
+        Thread.sleep(20);
+        Future<SearchHits<CourseDocument>> second = callers.submit(() -> batcher.search("ma|10", longDeadline, this::backend));
+
+        assertThat(first.get()).isSameAs(second.get());
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly(longDeadline);
+    }
+
+    @Test
+    @DisplayName("Sends expired windows off the timer thread")
+    void shouldSendOffTimerThread() {
+        batcher = batcher(Duration.ofMillis(1), 32);
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        batcher.search("x", query("x"), queries -> {
+            threads.add(Thread.currentThread().getName());
+            return backend(queries);
+        });
+
+        assertThat(threads).singleElement().asString().startsWith("suggest-batch-").isNotEqualTo("suggest-batch-timer");
+    }
+
+    @Test
+    @DisplayName("Fails every caller of a batch when the backend fails")
+    void shouldPropagateBackendFailureToAllCallers() {
+        batcher = batcher(Duration.ofMillis(1), 32);
+
+        assertThatThrownBy(() -> batcher.search("x", query("x"), queries -> {
+            throw new SearchBackendUnavailableException("Elasticsearch circuit is OPEN");
+        })).isInstanceOf(SearchBackendUnavailableException.class);
+    }
+
+    @Test
+    @DisplayName("Stops waiting for a late batch when the request budget runs out")
+    void shouldGiveUpOnLateBatch() {
+        batcher = batcher(Duration.ofMillis(1), 32);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (SearchContext ignored = SearchContext.open(Duration.ofMillis(100))) {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> batcher.search("x", query("x"), queries -> {
+                await(release);
+                return backend(queries);
+            })).isInstanceOf(SearchBackendUnavailableException.class).hasMessageContaining("deadline");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    @DisplayName("Calls the backend directly when the window is zero")
+    void shouldBypassBatchingWithoutWindow() {
+        batcher = batcher(Duration.ZERO, 32);
+
+        batcher.search("x", query("x"), this::backend);
+
+        assertThat(batches).hasSize(1);
+    }
+
+    private SuggestionBatcher batcher(Duration window, int maxBatchSize) {
+        CourseSearchProperties properties = new CourseSearchProperties();
+        properties.getSuggest().setBatchWindow(window);
+        properties.getSuggest().setMaxBatchSize(maxBatchSize);
+        return new SuggestionBatcher(properties);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CriteriaQuery query(String prefix) {
+        return new CriteriaQuery(new Criteria("title").startsWith(prefix));
+    }
+
+    /** Answers each query with its own mock, remembered to check the fan-out. */
+    @SuppressWarnings("unchecked")
+    private List<SearchHits<CourseDocument>> backend(List<CriteriaQuery> queries) {
+        batches.add(queries);
+        return queries.stream().map(query -> {
+            SearchHits<CourseDocument> hits = mock(SearchHits.class);
+            answers.put(query, hits);
+            return hits;
+        }).toList();
+    }
+}
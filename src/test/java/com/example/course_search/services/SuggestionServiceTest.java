@@ -1,27 +1,46 @@
 package com.example.course_search.services;
 
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.controllers.ApiExceptionHandler;
+import com.example.course_search.controllers.CourseSearchController;
 import com.example.course_search.document.CourseDocument;
 import com.example.course_search.dto.SuggestionResponse;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.accept.ContentNegotiationManager;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
  * Unit tests for {@link SuggestionService}.
@@ -33,6 +52,24 @@ class SuggestionServiceTest {
     @Mock
     private ElasticsearchOperations elasticsearchOperations;
 
+    @Spy
+    private ElasticsearchCircuitBreaker circuitBreaker = new ElasticsearchCircuitBreaker(new CourseSearchProperties());
+
+    @Spy
+    private ElasticsearchConcurrencyLimiter concurrencyLimiter = new ElasticsearchConcurrencyLimiter(new CourseSearchProperties());
+
+    @Spy
+    private ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    @Spy
+    private IndexGeneration indexGeneration = new IndexGeneration();
+
+    @Spy
+    private SuggestionPrefixCache prefixCache = new SuggestionPrefixCache(indexGeneration, new CourseSearchProperties());
+
+    @Spy
+    private SuggestionBatcher batcher = new SuggestionBatcher(new CourseSearchProperties());
+
     @InjectMocks
     private SuggestionService suggestionService;
 
@@ -90,6 +127,23 @@ class SuggestionServiceTest {
             assertThat(response.getSuggestions())
                     .containsExactlyInAnyOrder("Java Programming", "JavaScript Basics");
         }
+
+        @Test
+        @DisplayName("Orders suggestions by click popularity")
+        void shouldSortByPopularity() {
+            SearchHits<CourseDocument> hits = mock(SearchHits.class);
+            when(hits.stream()).thenReturn(Stream.empty());
+            when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class)))
+                    .thenReturn(hits);
+
+            suggestionService.getSuggestions("Java", 10);
+
+            ArgumentCaptor<CriteriaQuery> query = ArgumentCaptor.forClass(CriteriaQuery.class);
+            verify(elasticsearchOperations).search(query.capture(), eq(CourseDocument.class));
+            Sort.Order order = query.getValue().getSort().getOrderFor("popularity");
+            assertThat(order).isNotNull();
+            assertThat(order.getDirection()).isEqualTo(Sort.Direction.DESC);
+        }
     }
 
     @Nested
@@ -126,4 +180,112 @@ class SuggestionServiceTest {
                     .search(any(CriteriaQuery.class), eq(CourseDocument.class));
         }
     }
+
+    @Nested
+    @DisplayName("Backend unavailable")
+    class BackendUnavailable {
+
+        @Test
+        @DisplayName("Answers an over-limit suggest call with 503 and Retry-After")
+        void shouldAnswerOverLimitWithServiceUnavailable() throws Exception {
+            doThrow(new SearchOverloadedException("limit reached", Duration.ofSeconds(1)))
+                    .when(concurrencyLimiter).call(any());
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CourseSearchController(
+                            mock(CourseSearchService.class), suggestionService, indexGeneration,
+                            new CourseSearchProperties(), mock(ClickCounter.class), new ContentNegotiationManager()))
+                    .setControllerAdvice(new ApiExceptionHandler())
+                    .build();
+
+            mockMvc.perform(get("/api/search/suggest").param("q", "Java"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+            verifyNoInteractions(elasticsearchOperations);
+        }
+
+        @Test
+        @DisplayName("Propagates an open circuit instead of returning no suggestions")
+        void shouldPropagateOpenCircuit() {
+            doThrow(new SearchBackendUnavailableException("Elasticsearch circuit is OPEN"))
+                    .when(circuitBreaker).call(any());
+
+            assertThatThrownBy(() -> suggestionService.getSuggestions("Java", 10))
+                    .isInstanceOf(SearchBackendUnavailableException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Prefix cache")
+    class PrefixCache {
+
+        @Test
+        @DisplayName("Narrows a complete shorter prefix in memory instead of querying again")
+        void shouldNarrowCompleteShorterPrefix() {
+            stubHits(courseJava, courseJs);
+
+            suggestionService.getSuggestions("ja", 10);
+            SuggestionResponse response = suggestionService.getSuggestions("javas", 10);
+            SuggestionResponse again = suggestionService.getSuggestions("Javas", 10);
+
+            assertThat(response.getSuggestions()).containsExactly("JavaScript Basics");
+            assertThat(again.getSuggestions()).containsExactly("JavaScript Basics");
+            verify(elasticsearchOperations, times(1))
+                    .search(any(CriteriaQuery.class), eq(CourseDocument.class));
+        }
+
+        @Test
+        @DisplayName("Queries again when the shorter prefix filled the page")
+        void shouldNotNarrowIncompletePrefix() {
+            stubHits(courseJava, courseJs);
+
+            suggestionService.getSuggestions("ja", 2);
+            suggestionService.getSuggestions("jav", 2);
+
+            verify(elasticsearchOperations, times(2))
+                    .search(any(CriteriaQuery.class), eq(CourseDocument.class));
+        }
+
+        @Test
+        @DisplayName("Short-circuits extensions of a prefix without matches until the negative entry expires")
+        void shouldShortCircuitPrefixWithoutMatches() {
+            AtomicLong now = new AtomicLong();
+            CourseSearchProperties properties = new CourseSearchProperties();
+            SuggestionService service = new SuggestionService(elasticsearchOperations, circuitBreaker,
+                    concurrencyLimiter, observationRegistry,
+                    new SuggestionPrefixCache(indexGeneration, properties, now::get), batcher);
+            stubHits();
+
+            service.getSuggestions("qx", 10);
+            SuggestionResponse response = service.getSuggestions("qxz", 10);
+            now.addAndGet(properties.getSuggest().getNegativeTtl().toNanos());
+            service.getSuggestions("qxz", 10);
+
+            assertThat(response.getSuggestions()).isEmpty();
+            verify(elasticsearchOperations, times(2))
+                    .search(any(CriteriaQuery.class), eq(CourseDocument.class));
+        }
+
+        @Test
+        @DisplayName("Forgets cached prefixes after a reindex")
+        void shouldForgetPrefixesOnReindex() {
+            stubHits(courseJava);
+
+            suggestionService.getSuggestions("java", 10);
+            indexGeneration.advance();
+            suggestionService.getSuggestions("java", 10);
+
+            verify(elasticsearchOperations, times(2))
+                    .search(any(CriteriaQuery.class), eq(CourseDocument.class));
+        }
+
+        private void stubHits(CourseDocument... courses) {
+            SearchHits<CourseDocument> hits = mock(SearchHits.class);
+            when(hits.stream()).thenAnswer(invocation -> Arrays.stream(courses).map(course -> {
+                SearchHit<CourseDocument> hit = mock(SearchHit.class);
+                when(hit.getContent()).thenReturn(course);
+                return hit;
+            }));
+            when(elasticsearchOperations.search(any(CriteriaQuery.class), eq(CourseDocument.class)))
+                    .thenReturn(hits);
+        }
+    }
 }
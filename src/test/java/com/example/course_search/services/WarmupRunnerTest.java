@@ -0,0 +1,135 @@
+package com.example.course_search.services;
+
+import com.example.course_search.config.CourseSearchProperties;
+import com.example.course_search.dto.SearchResponse;
+import com.example.course_search.dto.SuggestionResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WarmupRunner} and {@link TopQueries}.
+ */
+@DisplayName("WarmupRunner Unit Tests")
+class WarmupRunnerTest {
+
+    private CourseSearchService courseSearchService;
+    private SuggestionService suggestionService;
+    private CourseSearchProperties properties;
+    private WarmupRunner warmupRunner;
+
+    @BeforeEach
+    void setUp() {
+        courseSearchService = mock(CourseSearchService.class);
+        suggestionService = mock(SuggestionService.class);
+        SearchResponse empty = SearchResponse.builder().total(0L).courses(List.of()).build();
+        when(courseSearchService.findAllCourses(anyString(), anyInt(), anyInt(), any())).thenReturn(empty);
+        when(courseSearchService.searchCoursesWithFuzzy(any(), any(), any(), any(), any(), any(), any(), any(),
+                anyString(), anyInt(), anyInt(), any())).thenReturn(empty);
+        when(suggestionService.getSuggestions(anyString(), anyInt()))
+                .thenReturn(SuggestionResponse.builder().suggestions(List.of()).build());
+        properties = new CourseSearchProperties();
+        properties.getWarmup().setParallelism(2);
+        properties.getWarmup().setRounds(2);
+        warmupRunner = new WarmupRunner(courseSearchService, suggestionService, new ObjectMapper(), properties);
+    }
+
+    @Test
+    @DisplayName("Replays every corpus line for each round, skipping comments")
+    void shouldReplayCorpus() throws Exception {
+        corpus("""
+                # comment
+                allCourses?page=1&size=20&sort=priceasc
+
+                search?category=Math&page=0&q=algebra&size=10&sort=upcoming
+                suggest?q=ma&size=5
+                """);
+
+        warmupRunner.run(null);
+
+        verify(courseSearchService, times(2)).findAllCourses("priceasc", 1, 20, null);
+        verify(courseSearchService, times(2)).searchCoursesWithFuzzy(eq("algebra"), isNull(), isNull(), isNull(),
+                isNull(), eq("Math"), isNull(), isNull(), eq("upcoming"), eq(0), eq(10), isNull());
+        verify(suggestionService, times(2)).getSuggestions("ma", 5);
+    }
+
+    @Test
+    @DisplayName("Parses criteria keys, numbers, dates and projections")
+    void shouldReplayCriteriaSearch() {
+        warmupRunner.replay("criteria:search?fields=summary&maxPrice=99.5&minAge=6"
+                + "&nextSessionDate=2025-06-10T00:00:00Z&page=0&size=10&sort=upcoming");
+
+        verify(courseSearchService).searchCourses(null, 6, null, null, 99.5, null, null,
+                OffsetDateTime.parse("2025-06-10T00:00:00Z"), "upcoming", 0, 10, FieldProjection.SUMMARY);
+    }
+
+    @Test
+    @DisplayName("Canonical keys keep values containing & and = apart and replay them intact")
+    void shouldEncodeValues() {
+        String plain = CanonicalQuery.search("a", null, null, null, null, null, "b", null, null, 0, 10, null);
+        String smuggled = CanonicalQuery.search("a", null, null, null, null, null, null, null,
+                "upcoming&type=b", 0, 10, null);
+        assertThat(plain).isNotEqualTo(smuggled);
+
+        warmupRunner.replay(CanonicalQuery.search("r&d = fun", null, null, null, null, "Math", null, null,
+                null, 0, 10, null));
+
+        verify(courseSearchService).searchCoursesWithFuzzy("r&d = fun", null, null, null, null, "Math", null, null,
+                "upcoming", 0, 10, null);
+    }
+
+    @Test
+    @DisplayName("Keeps going when a query fails and does nothing when disabled")
+    void shouldTolerateFailuresAndHonourDisabled() throws Exception {
+        corpus("""
+                unknown?x=1
+                suggest?q=ma&size=5
+                """);
+        properties.getWarmup().setRounds(1);
+
+        warmupRunner.run(null);
+        verify(suggestionService).getSuggestions("ma", 5);
+
+        properties.getWarmup().setEnabled(false);
+        warmupRunner.run(null);
+        verify(suggestionService, times(1)).getSuggestions(anyString(), anyInt());
+        verify(courseSearchService, never()).findAllCourses(anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Ranks recorded queries by frequency and caps distinct entries")
+    void shouldRankTopQueries() {
+        properties.getWarmup().setTrackedQueries(2);
+        TopQueries topQueries = new TopQueries(properties);
+
+        topQueries.record("suggest?q=ma&size=10");
+        topQueries.record("allCourses?page=0&size=10&sort=upcoming");
+        topQueries.record("allCourses?page=0&size=10&sort=upcoming");
+        topQueries.record("search?q=math");
+
+        assertThat(topQueries.top(10))
+                .containsExactly("allCourses?page=0&size=10&sort=upcoming", "suggest?q=ma&size=10");
+    }
+
+    private void corpus(String content) {
+        properties.getWarmup().setCorpus(new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,904 @@
+package com.example.course_search.support;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import co.elastic.clients.elasticsearch._types.query_dsl.PrefixQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryStringQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import co.elastic.clients.json.JsonData;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchCustomConversions;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentProperty;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.routing.RoutingResolver;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.PropertyHandler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Elasticsearch kept in memory, for tests that need searches to actually
+ * run without a cluster. Hand {@link #operations()} to the code under test:
+ * documents are stored as the {@link MappingElasticsearchConverter} writes
+ * them and read back through it, and queries are evaluated as the DSL
+ * Elasticsearch would receive, so a {@link CriteriaQuery} goes through Spring
+ * Data's own conversion (including how it nests {@code or} and {@code and})
+ * and a {@link NativeQuery} is taken as built.
+ * <p>
+ * Supported queries: {@code match_all}, {@code bool}, {@code match} and
+ * {@code multi_match} (best or most fields, {@code operator}, {@code fuzziness}
+ * with {@code AUTO}), {@code term}, {@code terms}, {@code range},
+ * {@code prefix}, {@code ids} and {@code query_string} limited to
+ * whitespace separated terms with {@code *} and {@code ?} wildcards.
+ * {@code text} fields are analyzed as lower-cased letter and digit runs,
+ * close to the standard analyzer; other fields compare whole values. Sorts
+ * put missing values last, paging and {@code _source} filtering apply, and
+ * total hits stop at 10,000 unless tracked. Scores only rank matches: they
+ * count matched terms, discounted by edit distance, rather than BM25.
+ * <p>
+ * Writes are visible at once, routing is ignored, and an index exists once
+ * something is written to it; searching a missing one finds nothing.
+ * Operations not implemented here throw {@link UnsupportedOperationException}.
+ */
+public final class InMemoryElasticsearch {
+
+    private static final double NO_MATCH = -1;
+    private static final int DEFAULT_TRACK_TOTAL_HITS = 10_000;
+    // Unpaged queries ask for as many hits as the index allows
+    private static final int MAX_RESULT_WINDOW = 10_000;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Spring Data keeps its Criteria-to-DSL conversion package-private
+    private static final Method CRITERIA_TO_QUERY = criteriaToQuery();
+
+    private final MappingElasticsearchConverter converter;
+    private final Map<Class<?>, Map<String, FieldType>> mappings = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Stored>> indices = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> aliases = new ConcurrentHashMap<>();
+    private final Map<String, Pattern> wildcards = new ConcurrentHashMap<>();
+    private final Map<String, Long> dates = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> queryTerms = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> queryStringTerms = new ConcurrentHashMap<>();
+    private final Map<Method, Optional<Method>> dispatch = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ElasticsearchOperations operations;
+
+    public InMemoryElasticsearch() {
+        ElasticsearchCustomConversions conversions = new ElasticsearchCustomConversions(List.of());
+        SimpleElasticsearchMappingContext mappingContext = new SimpleElasticsearchMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter = new MappingElasticsearchConverter(mappingContext);
+        converter.setConversions(conversions);
+        converter.afterPropertiesSet();
+        operations = (ElasticsearchOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ElasticsearchOperations.class}, this::invoke);
+    }
+
+    public ElasticsearchOperations operations() {
+        return operations;
+    }
+
+    /** Points {@code alias} at {@code indices}; writes through it go to the first. */
+    public void alias(String alias, String... indices) {
+        aliases.put(alias, List.of(indices));
+    }
+
+    // Document operations
+
+    public <T> T save(T entity) {
+        return save(entity, getIndexCoordinatesFor(entity.getClass()));
+    }
+
+    public <T> T save(T entity, IndexCoordinates index) {
+        ElasticsearchPersistentEntity<?> persistentEntity = entity(entity.getClass());
+        PersistentPropertyAccessor<T> accessor = persistentEntity.getPropertyAccessor(entity);
+        ElasticsearchPersistentProperty idProperty = persistentEntity.getRequiredIdProperty();
+        Object id = accessor.getProperty(idProperty);
+        if (id == null) {
+            // Elasticsearch generates the id and Spring Data sets it on the entity
+            id = UUID.randomUUID().toString();
+            accessor.setProperty(idProperty, id);
+        }
+        Map<String, Object> source = written(entity);
+        Map<String, FieldType> mapping = mapping(entity.getClass());
+        String target = writeIndex(index);
+        indices.computeIfAbsent(target, name -> new ConcurrentHashMap<>())
+                .put(id.toString(), new Stored(target, id.toString(), sequence.getAndIncrement(),
+                        source, mapping, tokens(source, mapping), comparables(source, mapping)));
+        return accessor.getBean();
+    }
+
+    public <T> Iterable<T> save(Iterable<T> entities) {
+        List<T> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    public <T> Iterable<T> save(Iterable<T> entities, IndexCoordinates index) {
+        List<T> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity, index)));
+        return saved;
+    }
+
+    public <T> T get(String id, Class<T> clazz) {
+        return get(id, clazz, getIndexCoordinatesFor(clazz));
+    }
+
+    public <T> T get(String id, Class<T> clazz, IndexCoordinates index) {
+        for (String name : readIndices(index)) {
+            Stored stored = indices.getOrDefault(name, Map.of()).get(id);
+            if (stored != null) {
+                return read(clazz, stored, null);
+            }
+        }
+        return null;
+    }
+
+    public boolean exists(String id, Class<?> clazz) {
+        return get(id, clazz) != null;
+    }
+
+    public boolean exists(String id, IndexCoordinates index) {
+        return readIndices(index).stream().anyMatch(name -> indices.getOrDefault(name, Map.of()).containsKey(id));
+    }
+
+    public String delete(String id, Class<?> entityType) {
+        return delete(id, getIndexCoordinatesFor(entityType));
+    }
+
+    public String delete(String id, IndexCoordinates index) {
+        indices.getOrDefault(writeIndex(index), new HashMap<>()).remove(id);
+        return id;
+    }
+
+    // Search operations
+
+    public <T> SearchHits<T> search(Query query, Class<T> clazz) {
+        return search(query, clazz, getIndexCoordinatesFor(clazz));
+    }
+
+    public <T> SearchHits<T> search(Query query, Class<T> clazz, IndexCoordinates index) {
+        long start = System.nanoTime();
+        List<Match> matches = matches(query, clazz, index);
+
+        Sort sort = sort(query, clazz);
+        boolean scored = sort.isUnsorted() || query.getTrackScores()
+                || sort.stream().anyMatch(order -> order.getProperty().equals("_score"));
+        Comparator<Match> order = sort.isUnsorted()
+                ? Comparator.comparingDouble(Match::score).reversed()
+                : sort.stream().map(this::comparator).reduce(Comparator::thenComparing).orElseThrow();
+        matches.sort(order.thenComparingLong(match -> match.stored().sequence()));
+
+        Pageable pageable = query.getPageable();
+        long from = pageable.isPaged() ? pageable.getOffset() : 0;
+        int size = pageable.isPaged() ? pageable.getPageSize()
+                : query.getMaxResults() != null ? query.getMaxResults() : MAX_RESULT_WINDOW;
+        List<SearchHit<T>> hits = new ArrayList<>();
+        float maxScore = Float.NaN;
+        for (Match match : matches.stream().skip(from).limit(size).toList()) {
+            float score = scored ? (float) match.score() : Float.NaN;
+            maxScore = Float.isNaN(maxScore) || score > maxScore ? score : maxScore;
+            Object[] sortValues = sort.stream()
+                    .map(sortOrder -> sortOrder.getProperty().equals("_score")
+                            ? match.score() : first(values(match.stored().source(), sortOrder.getProperty())))
+                    .toArray();
+            hits.add(new SearchHit<>(match.stored().index(), match.stored().id(), null, score, sortValues,
+                    Map.of(), Map.of(), null, null, List.of(),
+                    read(clazz, match.stored(), query.getSourceFilter())));
+        }
+
+        long total = matches.size();
+        TotalHitsRelation relation = TotalHitsRelation.EQUAL_TO;
+        if (Boolean.FALSE.equals(query.getTrackTotalHits())) {
+            total = 0;
+            relation = TotalHitsRelation.OFF;
+        } else if (!Boolean.TRUE.equals(query.getTrackTotalHits())) {
+            int limit = query.getTrackTotalHitsUpTo() != null
+                    ? query.getTrackTotalHitsUpTo() : DEFAULT_TRACK_TOTAL_HITS;
+            if (total > limit) {
+                total = limit;
+                relation = TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+            }
+        }
+        return new SearchHitsImpl<>(total, relation, maxScore, Duration.ofNanos(System.nanoTime() - start),
+                null, null, hits, null, null, null);
+    }
+
+    public <T> List<SearchHits<T>> multiSearch(List<? extends Query> queries, Class<T> clazz) {
+        return queries.stream().map(query -> search(query, clazz)).toList();
+    }
+
+    public <T> List<SearchHits<T>> multiSearch(List<? extends Query> queries, Class<T> clazz, IndexCoordinates index) {
+        return queries.stream().map(query -> search(query, clazz, index)).toList();
+    }
+
+    public long count(Query query, Class<?> clazz) {
+        return count(query, clazz, getIndexCoordinatesFor(clazz));
+    }
+
+    public long count(Query query, Class<?> clazz, IndexCoordinates index) {
+        return matches(query, clazz, index).size();
+    }
+
+    // Configuration
+
+    public ElasticsearchConverter getElasticsearchConverter() {
+        return converter;
+    }
+
+    public IndexCoordinates getIndexCoordinatesFor(Class<?> clazz) {
+        return entity(clazz).getIndexCoordinates();
+    }
+
+    public ElasticsearchOperations withRouting(RoutingResolver routingResolver) {
+        return operations;
+    }
+
+    public ElasticsearchOperations withRefreshPolicy(RefreshPolicy refreshPolicy) {
+        return operations;
+    }
+
+    // Dispatch from ElasticsearchOperations to the public methods above
+
+    private Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "InMemoryElasticsearch" + indices.keySet();
+            };
+        }
+        Optional<Method> target = dispatch.computeIfAbsent(method, InMemoryElasticsearch::implementation);
+        if (target.isPresent()) {
+            try {
+                return target.get().invoke(this, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        if (method.isDefault()) {
+            return InvocationHandler.invokeDefault(proxy, method, args);
+        }
+        throw new UnsupportedOperationException(method.getName() + " is not supported by InMemoryElasticsearch");
+    }
+
+    private static Optional<Method> implementation(Method method) {
+        try {
+            return Optional.of(InMemoryElasticsearch.class.getMethod(method.getName(), method.getParameterTypes()));
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Storage
+
+    private record Stored(String index, String id, long sequence, Map<String, Object> source,
+                          Map<String, FieldType> mapping, Map<String, List<String>> tokens,
+                          Map<String, List<Object>> comparables) {
+    }
+
+    private record Match(Stored stored, double score) {
+    }
+
+    private ElasticsearchPersistentEntity<?> entity(Class<?> clazz) {
+        return converter.getMappingContext().getRequiredPersistentEntity(clazz);
+    }
+
+    private Map<String, FieldType> mapping(Class<?> clazz) {
+        return mappings.computeIfAbsent(clazz, type -> {
+            Map<String, FieldType> mapping = new HashMap<>();
+            entity(type).doWithProperties((PropertyHandler<ElasticsearchPersistentProperty>) property -> {
+                Field field = property.findAnnotation(Field.class);
+                if (field != null) {
+                    mapping.put(property.getFieldName(), field.type());
+                }
+            });
+            return Map.copyOf(mapping);
+        });
+    }
+
+    private Map<String, Object> written(Object entity) {
+        Document source = Document.create();
+        converter.write(entity, source);
+        return Map.copyOf(withoutNulls(source));
+    }
+
+    private static Map<String, Object> withoutNulls(Map<String, Object> source) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        source.forEach((key, value) -> {
+            if (value != null) {
+                copy.put(key, value);
+            }
+        });
+        return copy;
+    }
+
+    // Analyzed text fields are tokenized once, when written
+    private static Map<String, List<String>> tokens(Map<String, Object> source, Map<String, FieldType> mapping) {
+        Map<String, List<String>> tokens = new HashMap<>();
+        mapping.forEach((field, type) -> {
+            if (type == FieldType.Text) {
+                List<String> fieldTokens = new ArrayList<>();
+                values(source, field).forEach(value -> fieldTokens.addAll(analyze(value.toString())));
+                tokens.put(field, List.copyOf(fieldTokens));
+            }
+        });
+        return tokens;
+    }
+
+    // Other mapped fields keep their values in comparable form, for ranges, terms and sorts
+    private Map<String, List<Object>> comparables(Map<String, Object> source, Map<String, FieldType> mapping) {
+        Map<String, List<Object>> comparables = new HashMap<>();
+        mapping.forEach((field, type) -> {
+            if (type != FieldType.Text) {
+                comparables.put(field, values(source, field).stream()
+                        .map(value -> comparable(mapping, field, value)).toList());
+            }
+        });
+        return comparables;
+    }
+
+    private <T> T read(Class<T> clazz, Stored stored, SourceFilter filter) {
+        Document document = Document.create();
+        stored.source().forEach((field, value) -> {
+            if (included(field, filter)) {
+                document.put(field, value);
+            }
+        });
+        document.setId(stored.id());
+        document.setIndex(stored.index());
+        return converter.read(clazz, document);
+    }
+
+    private boolean included(String field, SourceFilter filter) {
+        if (filter == null) {
+            return true;
+        }
+        String[] includes = filter.getIncludes();
+        String[] excludes = filter.getExcludes();
+        return (includes == null || includes.length == 0
+                || Arrays.stream(includes).anyMatch(include -> wildcard(include).matcher(field).matches()))
+                && (excludes == null
+                || Arrays.stream(excludes).noneMatch(exclude -> wildcard(exclude).matcher(field).matches()));
+    }
+
+    private String writeIndex(IndexCoordinates index) {
+        String name = index.getIndexName();
+        List<String> targets = aliases.get(name);
+        return targets != null ? targets.get(0) : name;
+    }
+
+    private List<String> readIndices(IndexCoordinates index) {
+        List<String> names = new ArrayList<>();
+        for (String name : index.getIndexNames()) {
+            names.addAll(aliases.getOrDefault(name, List.of(name)));
+        }
+        return names;
+    }
+
+    // Search
+
+    private List<Match> matches(Query query, Class<?> clazz, IndexCoordinates index) {
+        if (clazz != null) {
+            // As the template does before sending: property names become field names, values take the field format
+            converter.updateQuery(query, clazz);
+        }
+        co.elastic.clients.elasticsearch._types.query_dsl.Query dsl = dsl(query);
+        List<Match> matches = new ArrayList<>();
+        for (String name : readIndices(index)) {
+            for (Stored stored : indices.getOrDefault(name, Map.of()).values()) {
+                double score = dsl == null ? 1 : score(dsl, stored);
+                if (score != NO_MATCH) {
+                    matches.add(new Match(stored, score));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static co.elastic.clients.elasticsearch._types.query_dsl.Query dsl(Query query) {
+        if (query instanceof NativeQuery nativeQuery) {
+            if (nativeQuery.getSpringDataQuery() != null || nativeQuery.getFilter() != null) {
+                throw new UnsupportedOperationException("Only the query part of a NativeQuery is supported");
+            }
+            return nativeQuery.getQuery();
+        }
+        if (query instanceof CriteriaQuery criteriaQuery) {
+            try {
+                return (co.elastic.clients.elasticsearch._types.query_dsl.Query)
+                        CRITERIA_TO_QUERY.invoke(null, criteriaQuery.getCriteria());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot convert " + criteriaQuery.getCriteria(), e);
+            }
+        }
+        throw new UnsupportedOperationException(query.getClass().getSimpleName() + " is not supported");
+    }
+
+    private Sort sort(Query query, Class<?> clazz) {
+        Sort sort = query.getSort() != null && query.getSort().isSorted()
+                ? query.getSort() : query.getPageable().getSort();
+        ElasticsearchPersistentEntity<?> persistentEntity = clazz != null ? entity(clazz) : null;
+        return Sort.by(sort.stream().map(order -> {
+            ElasticsearchPersistentProperty property = persistentEntity != null
+                    ? persistentEntity.getPersistentProperty(order.getProperty()) : null;
+            return property != null ? order.withProperty(property.getFieldName()) : order;
+        }).toList());
+    }
+
+    // Missing values sort last in either direction, as with Elasticsearch's default "_last"
+    private Comparator<Match> comparator(Sort.Order order) {
+        if (order.getProperty().equals("_score")) {
+            Comparator<Match> byScore = Comparator.comparingDouble(Match::score);
+            return order.isAscending() ? byScore : byScore.reversed();
+        }
+        return (left, right) -> {
+            Object a = first(comparables(left.stored(), order.getProperty()));
+            Object b = first(comparables(right.stored(), order.getProperty()));
+            if (a == null || b == null) {
+                return a == null ? (b == null ? 0 : 1) : -1;
+            }
+            int result = compare(a, b);
+            return order.isAscending() ? result : -result;
+        };
+    }
+
+    private double score(co.elastic.clients.elasticsearch._types.query_dsl.Query query, Stored stored) {
+        return switch (query._kind()) {
+            case MatchAll -> 1;
+            case Bool -> bool(query.bool(), stored);
+            case Match -> match(query.match(), stored);
+            case MultiMatch -> multiMatch(query.multiMatch(), stored);
+            case Term -> term(query.term(), stored);
+            case Terms -> query.terms().terms().value().stream()
+                    .anyMatch(value -> equalsValue(stored, query.terms().field(), value._get(), false)) ? 1 : NO_MATCH;
+            case Range -> range(query.range(), stored);
+            case Prefix -> prefix(query.prefix(), stored);
+            case Ids -> query.ids().values().contains(stored.id()) ? 1 : NO_MATCH;
+            case QueryString -> queryString(query.queryString(), stored);
+            default -> throw new UnsupportedOperationException(
+                    "Query type " + query._kind() + " is not supported by InMemoryElasticsearch");
+        };
+    }
+
+    private double bool(BoolQuery bool, Stored stored) {
+        double score = 0;
+        for (var clause : bool.must()) {
+            double clauseScore = score(clause, stored);
+            if (clauseScore == NO_MATCH) {
+                return NO_MATCH;
+            }
+            score += clauseScore;
+        }
+        for (var clause : bool.filter()) {
+            if (score(clause, stored) == NO_MATCH) {
+                return NO_MATCH;
+            }
+        }
+        for (var clause : bool.mustNot()) {
+            if (score(clause, stored) != NO_MATCH) {
+                return NO_MATCH;
+            }
+        }
+        int matched = 0;
+        for (var clause : bool.should()) {
+            double clauseScore = score(clause, stored);
+            if (clauseScore != NO_MATCH) {
+                matched++;
+                score += clauseScore;
+            }
+        }
+        // Without must or filter clauses, at least one should clause has to match; with them, none has to
+        int required = bool.should().isEmpty() || !bool.must().isEmpty() || !bool.filter().isEmpty() ? 0 : 1;
+        if (bool.minimumShouldMatch() != null) {
+            required = minimumShouldMatch(bool.minimumShouldMatch(), bool.should().size());
+        }
+        return matched >= required ? score : NO_MATCH;
+    }
+
+    private double match(MatchQuery match, Stored stored) {
+        return text(stored, match.field(), String.valueOf(match.query()._get()), match.operator(), match.fuzziness());
+    }
+
+    private double multiMatch(MultiMatchQuery multiMatch, Stored stored) {
+        List<String> fields = multiMatch.fields().isEmpty() ? List.copyOf(stored.tokens().keySet()) : multiMatch.fields();
+        boolean sum = multiMatch.type() == TextQueryType.MostFields;
+        double score = NO_MATCH;
+        for (String field : fields) {
+            String[] boosted = field.split("\\^", 2);
+            double fieldScore = text(stored, boosted[0], multiMatch.query(), multiMatch.operator(),
+                    multiMatch.fuzziness());
+            if (fieldScore != NO_MATCH) {
+                fieldScore *= boosted.length > 1 ? Double.parseDouble(boosted[1]) : 1;
+                score = score == NO_MATCH ? fieldScore : sum ? score + fieldScore : Math.max(score, fieldScore);
+            }
+        }
+        return score;
+    }
+
+    // A match query on one field: analyzed terms for text fields, the whole value otherwise
+    private double text(Stored stored, String field, String query, Operator operator, String fuzziness) {
+        List<String> fieldTokens = stored.tokens().get(field);
+        if (fieldTokens == null) {
+            return equalsValue(stored, field, query, false) ? 1 : NO_MATCH;
+        }
+        List<String> terms = analyzed(query);
+        if (terms.isEmpty()) {
+            return NO_MATCH;
+        }
+        double score = 0;
+        int matched = 0;
+        for (String term : terms) {
+            double termScore = bestMatch(term, fieldTokens, maxEdits(fuzziness, term.length()));
+            if (termScore != NO_MATCH) {
+                matched++;
+                score += termScore;
+            } else if (operator == Operator.And) {
+                return NO_MATCH;
+            }
+        }
+        return matched > 0 ? score : NO_MATCH;
+    }
+
+    private double term(TermQuery term, Stored stored) {
+        return equalsValue(stored, term.field(), term.value()._get(), Boolean.TRUE.equals(term.caseInsensitive()))
+                ? 1 : NO_MATCH;
+    }
+
+    private double range(RangeQuery range, Stored stored) {
+        String field;
+        Object gt;
+        Object gte;
+        Object lt;
+        Object lte;
+        switch (range._kind()) {
+            case Untyped -> {
+                var untyped = range.untyped();
+                field = untyped.field();
+                gt = json(untyped.gt());
+                gte = json(untyped.gte());
+                lt = json(untyped.lt());
+                lte = json(untyped.lte());
+            }
+            case Number -> {
+                var number = range.number();
+                field = number.field();
+                gt = number.gt();
+                gte = number.gte();
+                lt = number.lt();
+                lte = number.lte();
+            }
+            case Date -> {
+                var date = range.date();
+                field = date.field();
+                gt = date.gt();
+                gte = date.gte();
+                lt = date.lt();
+                lte = date.lte();
+            }
+            case Term -> {
+                var term = range.term();
+                field = term.field();
+                gt = term.gt();
+                gte = term.gte();
+                lt = term.lt();
+                lte = term.lte();
+            }
+            default -> throw new UnsupportedOperationException("Range type " + range._kind() + " is not supported");
+        }
+        for (Object value : comparables(stored, field)) {
+            if ((gt == null || compare(value, comparable(stored.mapping(), field, gt)) > 0)
+                    && (gte == null || compare(value, comparable(stored.mapping(), field, gte)) >= 0)
+                    && (lt == null || compare(value, comparable(stored.mapping(), field, lt)) < 0)
+                    && (lte == null || compare(value, comparable(stored.mapping(), field, lte)) <= 0)) {
+                return 1;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private double prefix(PrefixQuery prefix, Stored stored) {
+        boolean ignoreCase = Boolean.TRUE.equals(prefix.caseInsensitive());
+        String start = ignoreCase ? prefix.value().toLowerCase(Locale.ROOT) : prefix.value();
+        List<?> candidates = stored.tokens().containsKey(prefix.field())
+                ? stored.tokens().get(prefix.field()) : values(stored.source(), prefix.field());
+        for (Object candidate : candidates) {
+            String value = ignoreCase ? candidate.toString().toLowerCase(Locale.ROOT) : candidate.toString();
+            if (value.startsWith(start)) {
+                return 1;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    // Whitespace separated terms, each matched against any of the fields, combined with the default operator
+    private double queryString(QueryStringQuery queryString, Stored stored) {
+        List<String> fields = !queryString.fields().isEmpty() ? queryString.fields()
+                : queryString.defaultField() != null ? List.of(queryString.defaultField())
+                : List.copyOf(stored.tokens().keySet());
+        boolean all = queryString.defaultOperator() == Operator.And;
+        double score = 0;
+        int matched = 0;
+        for (String term : queryStringTerms.computeIfAbsent(queryString.query(),
+                query -> List.of(WHITESPACE.split(query.trim())))) {
+            double termScore = NO_MATCH;
+            for (String field : fields) {
+                termScore = Math.max(termScore, queryStringTerm(stored, field, term));
+            }
+            if (termScore != NO_MATCH) {
+                matched++;
+                score += termScore;
+            } else if (all) {
+                return NO_MATCH;
+            }
+        }
+        return matched > 0 ? score : NO_MATCH;
+    }
+
+    private double queryStringTerm(Stored stored, String field, String term) {
+        List<String> fieldTokens = stored.tokens().get(field);
+        boolean isWildcard = term.indexOf('*') >= 0 || term.indexOf('?') >= 0;
+        if (fieldTokens == null) {
+            if (isWildcard) {
+                Pattern pattern = wildcard(term);
+                return values(stored.source(), field).stream()
+                        .anyMatch(value -> pattern.matcher(value.toString()).matches()) ? 1 : NO_MATCH;
+            }
+            return equalsValue(stored, field, term, false) ? 1 : NO_MATCH;
+        }
+        if (isWildcard) {
+            // Wildcard terms on text fields are lower-cased rather than analyzed
+            Pattern pattern = wildcard(term.toLowerCase(Locale.ROOT));
+            return fieldTokens.stream().anyMatch(token -> pattern.matcher(token).matches()) ? 1 : NO_MATCH;
+        }
+        List<String> terms = analyzed(term);
+        return !terms.isEmpty() && fieldTokens.containsAll(terms) ? terms.size() : NO_MATCH;
+    }
+
+    // 1 for the exact term, less the more edits a fuzzy match needed
+    private static double bestMatch(String term, List<String> tokens, int maxEdits) {
+        double best = NO_MATCH;
+        for (String token : tokens) {
+            if (token.equals(term)) {
+                return 1;
+            }
+            if (maxEdits > 0 && Math.abs(token.length() - term.length()) <= maxEdits) {
+                int edits = editDistance(term, token);
+                if (edits <= maxEdits) {
+                    best = Math.max(best, 1 - (double) edits / Math.max(term.length(), token.length()));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int maxEdits(String fuzziness, int length) {
+        if (fuzziness == null) {
+            return 0;
+        }
+        String value = fuzziness.trim().toUpperCase(Locale.ROOT);
+        if (value.startsWith("AUTO")) {
+            int low = 3;
+            int high = 6;
+            if (value.startsWith("AUTO:")) {
+                String[] bounds = value.substring(5).split(",");
+                low = Integer.parseInt(bounds[0].trim());
+                high = Integer.parseInt(bounds[1].trim());
+            }
+            return length < low ? 0 : length < high ? 1 : 2;
+        }
+        return Math.min(2, (int) Double.parseDouble(value));
+    }
+
+    // Levenshtein distance counting an adjacent transposition as one edit, as fuzzy queries do by default
+    private static int editDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static int minimumShouldMatch(String spec, int clauses) {
+        String value = spec.trim();
+        int count = value.endsWith("%")
+                ? (int) (clauses * Math.abs(Integer.parseInt(value.substring(0, value.length() - 1))) / 100.0)
+                : Math.abs(Integer.parseInt(value));
+        return value.startsWith("-") ? clauses - count : count;
+    }
+
+    // Query text is the same for every document, so it is analyzed once
+    private List<String> analyzed(String text) {
+        return queryTerms.computeIfAbsent(text, InMemoryElasticsearch::analyze);
+    }
+
+    private static List<String> analyze(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private Pattern wildcard(String pattern) {
+        return wildcards.computeIfAbsent(pattern, glob -> {
+            StringBuilder regex = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                regex.append(c == '*' ? ".*" : c == '?' ? "." : Pattern.quote(String.valueOf(c)));
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        });
+    }
+
+    // Values
+
+    private static List<Object> values(Map<String, Object> source, String field) {
+        Object value = source;
+        for (String part : field.split("\\.")) {
+            if (!(value instanceof Map<?, ?> map)) {
+                return List.of();
+            }
+            value = map.get(part);
+        }
+        if (value == null) {
+            return List.of();
+        }
+        return value instanceof List<?> list ? new ArrayList<>(list) : List.of(value);
+    }
+
+    private List<Object> comparables(Stored stored, String field) {
+        List<Object> comparables = stored.comparables().get(field);
+        return comparables != null ? comparables : values(stored.source(), field).stream()
+                .map(value -> comparable(stored.mapping(), field, value)).toList();
+    }
+
+    private static Object first(List<Object> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private boolean equalsValue(Stored stored, String field, Object expected, boolean ignoreCase) {
+        List<String> fieldTokens = stored.tokens().get(field);
+        if (fieldTokens != null) {
+            // Terms are not analyzed: they only match a token spelled exactly the same
+            return fieldTokens.stream().anyMatch(token -> ignoreCase
+                    ? token.equalsIgnoreCase(expected.toString()) : token.equals(expected.toString()));
+        }
+        Object target = comparable(stored.mapping(), field, expected);
+        for (Object value : comparables(stored, field)) {
+            if (ignoreCase && value instanceof String string
+                    ? string.equalsIgnoreCase(target.toString()) : compare(value, target) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Numbers and dates compare as numbers, everything else as strings
+    private Object comparable(Map<String, FieldType> mapping, String field, Object value) {
+        if (value == null) {
+            return null;
+        }
+        FieldType type = mapping.get(field);
+        if (type == FieldType.Date || type == FieldType.Date_Nanos) {
+            // Query bounds arrive as formatted strings for every document; parse each once
+            return value instanceof String text
+                    ? (double) dates.computeIfAbsent(text, InMemoryElasticsearch::epochMillis)
+                    : (double) epochMillis(value);
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (type != null && type != FieldType.Keyword && type != FieldType.Text && type != FieldType.Boolean) {
+            try {
+                return Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                return value.toString();
+            }
+        }
+        return value.toString();
+    }
+
+    private static int compare(Object a, Object b) {
+        if (a instanceof Double x && b instanceof Double y) {
+            return Double.compare(x, y);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static long epochMillis(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof TemporalAccessor temporal) {
+            return Instant.from(temporal).toEpochMilli();
+        }
+        String text = value.toString();
+        try {
+            return Instant.from(DateTimeFormatter.ISO_DATE_TIME.parse(text)).toEpochMilli();
+        } catch (DateTimeException e) {
+            // No zone: UTC, as Elasticsearch assumes
+        }
+        try {
+            return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+    }
+
+    private static Object json(JsonData data) {
+        return data == null ? null : data.to(Object.class);
+    }
+
+    private static Method criteriaToQuery() {
+        try {
+            Method method = Class.forName("org.springframework.data.elasticsearch.client.elc.CriteriaQueryProcessor")
+                    .getMethod("createQuery", Criteria.class);
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
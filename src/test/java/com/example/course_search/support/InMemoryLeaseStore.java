@@ -0,0 +1,51 @@
+package com.example.course_search.support;
+
+import com.example.course_search.services.LeaseStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link LeaseStore} kept in memory, with the same compare-and-set
+ * behaviour as the Elasticsearch one: every write bumps the lease's
+ * sequence number, and a replace naming an older one fails. Share one
+ * instance between several coordinators to stand in for replicas talking
+ * to the same cluster.
+ */
+public final class InMemoryLeaseStore implements LeaseStore {
+
+    private static final long PRIMARY_TERM = 1;
+
+    private final Map<String, Versioned> leases = new HashMap<>();
+    private long seqNo;
+
+    @Override
+    public synchronized Optional<Versioned> read(String name) {
+        return Optional.ofNullable(leases.get(name));
+    }
+
+    @Override
+    public synchronized boolean create(String name, Lease lease) {
+        if (leases.containsKey(name)) {
+            return false;
+        }
+        leases.put(name, new Versioned(lease, new Version(seqNo++, PRIMARY_TERM)));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(String name, Lease lease, Version version) {
+        Versioned current = leases.get(name);
+        if (current == null || !current.version().equals(version)) {
+            return false;
+        }
+        leases.put(name, new Versioned(lease, new Version(seqNo++, PRIMARY_TERM)));
+        return true;
+    }
+
+    /** The lease as last written, for assertions. */
+    public synchronized Optional<Lease> lease(String name) {
+        return read(name).map(Versioned::lease);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.course_search.support;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * OpenTelemetry tracing that exports finished spans to memory, for tests
+ * that check which spans a call produces without running a collector.
+ * Hand {@link #observationRegistry()} to the code under test and read the
+ * result back with {@link #spans()}.
+ */
+public final class InMemoryTracing implements AutoCloseable {
+
+    private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+            .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+            .build();
+    private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    public InMemoryTracing() {
+        OtelTracer tracer = new OtelTracer(tracerProvider.get("course-search-test"),
+                new OtelCurrentTraceContext(), event -> { });
+        observationRegistry.observationConfig().observationHandler(new DefaultTracingObservationHandler(tracer));
+    }
+
+    public ObservationRegistry observationRegistry() {
+        return observationRegistry;
+    }
+
+    /** Finished spans, in the order they ended (children before parents). */
+    public List<SpanData> spans() {
+        return exporter.getFinishedSpanItems();
+    }
+
+    public List<SpanData> spans(String name) {
+        return spans().stream().filter(span -> span.getName().equals(name)).toList();
+    }
+
+    public SpanData span(String name) {
+        return spans(name).stream().findFirst()
+                .orElseThrow(() -> new AssertionError("No span named " + name + " in " + names()));
+    }
+
+    public static Optional<String> attribute(SpanData span, String key) {
+        return Optional.ofNullable(span.getAttributes().get(AttributeKey.stringKey(key)));
+    }
+
+    public List<String> names() {
+        return spans().stream().map(SpanData::getName).toList();
+    }
+
+    public void reset() {
+        exporter.reset();
+    }
+
+    @Override
+    public void close() {
+        tracerProvider.close();
+    }
+}